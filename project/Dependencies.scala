@@ -29,6 +29,7 @@ object Dependencies {
   val JUnitInterfaceVersion = "0.11"
   val JUnitJupiterVersion = "5.7.1"
   val SpringVersion = "2.7.4"
+  val OpenTelemetryVersion = "1.19.0"
 
   val CommonsIoVersion = "2.11.0"
   val MunitVersion = "0.7.29"
@@ -43,6 +44,9 @@ object Dependencies {
   val logbackJson = "ch.qos.logback.contrib" % "logback-json-classic" % LogbackContribVersion
   val logbackJackson = "ch.qos.logback.contrib" % "logback-jackson" % LogbackContribVersion
 
+  val openTelemetryApi = "io.opentelemetry" % "opentelemetry-api" % OpenTelemetryVersion
+  val openTelemetrySdkTesting = "io.opentelemetry" % "opentelemetry-sdk-testing" % OpenTelemetryVersion
+
   val protobufJava = "com.google.protobuf" % "protobuf-java" % ProtobufVersion
   val protobufJavaUtil = "com.google.protobuf" % "protobuf-java-util" % ProtobufVersion
 
@@ -80,12 +84,14 @@ object Dependencies {
     akkaHttpDependency("akka-http2-support"),
     akkaHttpDependency("akka-parsing"),
     protobufJavaUtil,
+    openTelemetryApi,
     kalixProxyProtocol % "protobuf-src",
     kalixSdkProtocol % "compile;protobuf-src",
     akkaDependency("akka-testkit") % Test,
     akkaDependency("akka-actor-testkit-typed") % Test,
     akkaDependency("akka-stream-testkit") % Test,
     akkaHttpDependency("akka-http-testkit") % Test,
+    openTelemetrySdkTesting % Test,
     scalaTest % Test,
     logback,
     logbackJson,
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk;
+
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Executes a number of {@link DeferredCall}s with a bounded number of calls in flight, instead of
+ * executing them one at a time or all at once.
+ *
+ * <p>The returned stage can be used to create an async reply in an {@link
+ * kalix.javasdk.action.Action} with {@code effects().asyncReply}, passing the materializer of the
+ * {@code actionContext()}.
+ */
+public final class DeferredCalls {
+
+  private DeferredCalls() {}
+
+  /**
+   * Execute the calls with at most {@code parallelism} of them in flight at the same time.
+   *
+   * @param calls The calls to execute.
+   * @param parallelism The maximum number of calls in flight.
+   * @param materializer The materializer to run the executions with.
+   * @return The results in the same order as the calls, or the first failure. No further calls are
+   *     started once a call has failed.
+   */
+  public static <O> CompletionStage<List<O>> executeAll(
+      Collection<? extends DeferredCall<?, O>> calls, int parallelism, Materializer materializer) {
+    return Source.from(calls)
+        .<O>mapAsync(parallelism, DeferredCall::execute)
+        .runWith(Sink.seq(), materializer);
+  }
+
+  /**
+   * Execute the calls with at most {@code parallelism} of them in flight at the same time, without
+   * keeping the order of the calls. A slow call does then not hold back the next ones.
+   *
+   * @param calls The calls to execute.
+   * @param parallelism The maximum number of calls in flight.
+   * @param materializer The materializer to run the executions with.
+   * @return The results in the order they completed, or the first failure. No further calls are
+   *     started once a call has failed.
+   */
+  public static <O> CompletionStage<List<O>> executeAllUnordered(
+      Collection<? extends DeferredCall<?, O>> calls, int parallelism, Materializer materializer) {
+    return Source.from(calls)
+        .<O>mapAsyncUnordered(parallelism, DeferredCall::execute)
+        .runWith(Sink.seq(), materializer);
+  }
+
+  /**
+   * Execute all the calls with at most {@code parallelism} of them in flight at the same time, a
+   * failed call does not stop the other ones.
+   *
+   * @param calls The calls to execute.
+   * @param parallelism The maximum number of calls in flight.
+   * @param materializer The materializer to run the executions with.
+   * @return The outcome of each call, in the same order as the calls.
+   */
+  public static <O> CompletionStage<List<Outcome<O>>> executeAllCollectingFailures(
+      Collection<? extends DeferredCall<?, O>> calls, int parallelism, Materializer materializer) {
+    return Source.from(calls)
+        .<Outcome<O>>mapAsync(parallelism, DeferredCalls::executeToOutcome)
+        .runWith(Sink.seq(), materializer);
+  }
+
+  private static <O> CompletionStage<Outcome<O>> executeToOutcome(DeferredCall<?, O> call) {
+    CompletionStage<O> result;
+    try {
+      result = call.execute();
+    } catch (RuntimeException e) {
+      return CompletableFuture.completedFuture(Outcome.failure(e));
+    }
+    return result.handle(
+        (value, error) -> {
+          if (error == null) return Outcome.success(value);
+          else if (error instanceof CompletionException && error.getCause() != null)
+            return Outcome.failure(error.getCause());
+          else return Outcome.failure(error);
+        });
+  }
+
+  /** The outcome of one of the calls executed with {@link #executeAllCollectingFailures}. */
+  public static final class Outcome<O> {
+    private final O result;
+    private final Throwable failure;
+
+    private Outcome(O result, Throwable failure) {
+      this.result = result;
+      this.failure = failure;
+    }
+
+    static <O> Outcome<O> success(O result) {
+      return new Outcome<>(result, null);
+    }
+
+    static <O> Outcome<O> failure(Throwable failure) {
+      return new Outcome<>(null, failure);
+    }
+
+    /** @return true if the call completed successfully. */
+    public boolean isSuccess() {
+      return failure == null;
+    }
+
+    /** @return The result of the call, if it completed successfully. */
+    public Optional<O> result() {
+      return Optional.ofNullable(result);
+    }
+
+    /** @return The reason the call failed, if it failed. */
+    public Optional<Throwable> failure() {
+      return Optional.ofNullable(failure);
+    }
+
+    @Override
+    public String toString() {
+      if (isSuccess()) return "Outcome.success(" + result + ")";
+      else return "Outcome.failure(" + failure + ")";
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * INTERNAL API
+ *
+ * <p>Emitted when a command has been handled by a component. Disabled by default, enable with a
+ * JFR setting for {@code kalix.CommandHandled}.
+ */
+@Name("kalix.CommandHandled")
+@Label("Command Handled")
+@Category({"Kalix", "Component"})
+@Description("A command handled by a component in the user function")
+@Enabled(false)
+@StackTrace(false)
+public final class CommandHandledEvent extends Event {
+
+  @Label("Component Type")
+  public String componentType;
+
+  @Label("Service")
+  public String serviceName;
+
+  @Label("Command")
+  public String commandName;
+
+  @Label("Events Emitted")
+  public int eventsEmitted;
+
+  @Label("Failed")
+  public boolean failed;
+
+  /**
+   * Starts timing a command, only a cheap allocation that can be eliminated when the event is
+   * disabled.
+   */
+  public static CommandHandledEvent start() {
+    CommandHandledEvent event = new CommandHandledEvent();
+    event.begin();
+    return event;
+  }
+
+  public void finish(
+      String componentType,
+      String serviceName,
+      String commandName,
+      int eventsEmitted,
+      boolean failed) {
+    end();
+    if (shouldCommit()) {
+      this.componentType = componentType;
+      this.serviceName = serviceName;
+      this.commandName = commandName;
+      this.eventsEmitted = eventsEmitted;
+      this.failed = failed;
+      commit();
+    }
+  }
+}
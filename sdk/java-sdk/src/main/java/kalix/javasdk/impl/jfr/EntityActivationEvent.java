@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * INTERNAL API
+ *
+ * <p>Emitted when an entity has been activated, covering the time from receiving its initial state
+ * until it is ready to handle the first command, including replaying events for event sourced
+ * entities. Disabled by default, enable with a JFR setting for {@code kalix.EntityActivation}.
+ */
+@Name("kalix.EntityActivation")
+@Label("Entity Activation")
+@Category({"Kalix", "Component"})
+@Description("An entity activated in the user function, with its recovery")
+@Enabled(false)
+@StackTrace(false)
+public final class EntityActivationEvent extends Event {
+
+  @Label("Entity Type")
+  public String entityType;
+
+  @Label("Entity Id Hash")
+  @Description("Hash code of the entity id, not the id itself, which may be sensitive")
+  public int entityIdHash;
+
+  @Label("Events Replayed")
+  public long eventsReplayed;
+
+  @Label("Snapshot Size")
+  @DataAmount
+  public long snapshotSize;
+
+  public static EntityActivationEvent start() {
+    EntityActivationEvent event = new EntityActivationEvent();
+    event.begin();
+    return event;
+  }
+
+  public void finish(String entityType, String entityId, long eventsReplayed, long snapshotSize) {
+    end();
+    if (shouldCommit()) {
+      this.entityType = entityType;
+      this.entityIdHash = entityId.hashCode();
+      this.eventsReplayed = eventsReplayed;
+      this.snapshotSize = snapshotSize;
+      commit();
+    }
+  }
+}
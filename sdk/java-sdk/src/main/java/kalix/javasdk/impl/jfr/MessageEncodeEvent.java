@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * INTERNAL API
+ *
+ * <p>Emitted when a message has been encoded by the message codec. Disabled by default, enable
+ * with a JFR setting for {@code kalix.MessageEncode}.
+ */
+@Name("kalix.MessageEncode")
+@Label("Message Encode")
+@Category({"Kalix", "Serialization"})
+@Description("A message encoded by the message codec")
+@Enabled(false)
+@StackTrace(false)
+public final class MessageEncodeEvent extends Event {
+
+  @Label("Type Url")
+  public String typeUrl;
+
+  @Label("Size")
+  @DataAmount
+  public long size;
+
+  @Label("Failed")
+  public boolean failed;
+
+  public static MessageEncodeEvent start() {
+    MessageEncodeEvent event = new MessageEncodeEvent();
+    event.begin();
+    return event;
+  }
+
+  public void finish(String typeUrl, long size, boolean failed) {
+    end();
+    if (shouldCommit()) {
+      this.typeUrl = typeUrl;
+      this.size = size;
+      this.failed = failed;
+      commit();
+    }
+  }
+}
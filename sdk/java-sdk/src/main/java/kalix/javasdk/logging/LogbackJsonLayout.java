@@ -16,27 +16,228 @@
 
 package kalix.javasdk.logging;
 
-import kalix.javasdk.impl.ErrorHandling;
-import kalix.javasdk.impl.ErrorHandling$;
+import ch.qos.logback.classic.pattern.ThrowableProxyConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.contrib.jackson.JacksonJsonFormatter;
+import ch.qos.logback.contrib.json.JsonFormatter;
+import ch.qos.logback.contrib.json.classic.JsonLayout;
+import ch.qos.logback.core.CoreConstants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * This Logback JSON layout uses the name `severity` (instead of `level`).
  *
  * <p>Eg. Stackdriver expects the log severity to be in a field called `severity`.
  *
+ * <p>The fields are written directly with a Jackson generator that is reused by each logging
+ * thread, instead of building a map per event like the `JsonLayout` it extends. The output is the
+ * same, and the same configuration properties are supported. A `jsonFormatter` is optional, when
+ * one is configured it must be a `JacksonJsonFormatter` for the streaming to be used, other
+ * formatters fall back to the map based formatting.
+ *
+ * <p>To keep logging off the calling threads, wrap the appender using this layout in an
+ * `AsyncAppender` with `neverBlock` enabled, as in the `logback.xml` of the project templates. A
+ * single appender thread then also means a single reused generator.
+ *
  * <p>IMPORTANT: This class depends on the "logback-json-classic" library (organization
  * "ch.qos.logback.contrib") and the Jackson layout support requires "logback-jackson" (organization
  * "ch.qos.logback.contrib") which need to be added as dependencies.
  */
-public final class LogbackJsonLayout extends ch.qos.logback.contrib.json.classic.JsonLayout {
+public final class LogbackJsonLayout extends JsonLayout {
+
+  private static final String SEVERITY_ATTR_NAME = "severity";
+
+  // buffers grown above this by an exceptionally large event are not kept around
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  private final ThrowableProxyConverter throwableConverter = new ThrowableProxyConverter();
+  private final ThreadLocal<EventWriter> eventWriters = new ThreadLocal<>();
+
+  private volatile boolean streaming = true;
+  private volatile boolean prettyPrint = false;
 
   public LogbackJsonLayout() {
     setIncludeLevel(false);
   }
 
   @Override
-  public void addCustomDataToJsonMap(
-      java.util.Map<String, Object> map, ch.qos.logback.classic.spi.ILoggingEvent event) {
-    add("severity", true, String.valueOf(event.getLevel()), map);
+  public void start() {
+    JsonFormatter formatter = getJsonFormatter();
+    if (formatter == null) {
+      streaming = true;
+      prettyPrint = false;
+    } else if (formatter instanceof JacksonJsonFormatter) {
+      streaming = true;
+      prettyPrint = ((JacksonJsonFormatter) formatter).isPrettyPrint();
+    } else {
+      streaming = false;
+    }
+    throwableConverter.setContext(getContext());
+    throwableConverter.start();
+    super.start();
+  }
+
+  @Override
+  public void stop() {
+    super.stop();
+    throwableConverter.stop();
+  }
+
+  @Override
+  public String doLayout(ILoggingEvent event) {
+    if (!streaming) return super.doLayout(event);
+
+    EventWriter writer = eventWriters.get();
+    try {
+      if (writer == null) {
+        writer = new EventWriter();
+        eventWriters.set(writer);
+      }
+      return writer.write(event);
+    } catch (IOException | RuntimeException e) {
+      // the generator may be in an inconsistent state, start over with a new one for the next event
+      eventWriters.remove();
+      addError("Failed to write logging event as JSON, falling back to the map formatting", e);
+      return super.doLayout(event);
+    }
+  }
+
+  @Override
+  public void addCustomDataToJsonMap(Map<String, Object> map, ILoggingEvent event) {
+    add(SEVERITY_ATTR_NAME, true, String.valueOf(event.getLevel()), map);
+  }
+
+  /** Per thread state, reused for each event logged by that thread. */
+  private final class EventWriter {
+    private final StringBuilderWriter buffer = new StringBuilderWriter();
+    private final JsonGenerator generator;
+    private final SimpleDateFormat dateFormat;
+    private final Date date = new Date();
+
+    EventWriter() throws IOException {
+      generator = jsonFactory.createGenerator(buffer);
+      if (prettyPrint) {
+        // no separator between the root values, each event starts from an empty buffer
+        generator.setPrettyPrinter(new DefaultPrettyPrinter((String) null));
+      } else {
+        generator.setRootValueSeparator(null);
+      }
+
+      String timestampFormat = getTimestampFormat();
+      if (timestampFormat == null) {
+        dateFormat = null;
+      } else {
+        dateFormat = new SimpleDateFormat(timestampFormat);
+        String timezoneId = getTimestampFormatTimezoneId();
+        if (timezoneId != null) dateFormat.setTimeZone(TimeZone.getTimeZone(timezoneId));
+      }
+    }
+
+    String write(ILoggingEvent event) throws IOException {
+      buffer.reset();
+
+      generator.writeStartObject();
+      if (isIncludeTimestamp()) {
+        generator.writeStringField(TIMESTAMP_ATTR_NAME, formattedTimestamp(event.getTimeStamp()));
+      }
+      if (isIncludeLevel()) {
+        generator.writeStringField(LEVEL_ATTR_NAME, String.valueOf(event.getLevel()));
+      }
+      writeField(THREAD_ATTR_NAME, isIncludeThreadName(), event.getThreadName());
+      if (isIncludeMDC()) {
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (mdc != null && !mdc.isEmpty()) {
+          generator.writeObjectFieldStart(MDC_ATTR_NAME);
+          for (Map.Entry<String, String> entry : mdc.entrySet()) {
+            generator.writeStringField(entry.getKey(), entry.getValue());
+          }
+          generator.writeEndObject();
+        }
+      }
+      writeField(LOGGER_ATTR_NAME, isIncludeLoggerName(), event.getLoggerName());
+      writeField(
+          FORMATTED_MESSAGE_ATTR_NAME, isIncludeFormattedMessage(), event.getFormattedMessage());
+      writeField(MESSAGE_ATTR_NAME, isIncludeMessage(), event.getMessage());
+      if (isIncludeContextName()) {
+        LoggerContextVO loggerContext = event.getLoggerContextVO();
+        if (loggerContext != null) writeField(CONTEXT_ATTR_NAME, true, loggerContext.getName());
+      }
+      if (isIncludeException() && event.getThrowableProxy() != null) {
+        String exception = throwableConverter.convert(event);
+        if (exception != null && !exception.isEmpty()) {
+          generator.writeStringField(EXCEPTION_ATTR_NAME, exception);
+        }
+      }
+      generator.writeStringField(SEVERITY_ATTR_NAME, String.valueOf(event.getLevel()));
+      generator.writeEndObject();
+      generator.flush();
+
+      if (isAppendLineSeparator()) buffer.append(CoreConstants.LINE_SEPARATOR);
+      return buffer.drain();
+    }
+
+    private void writeField(String name, boolean include, String value) throws IOException {
+      if (include && value != null) generator.writeStringField(name, value);
+    }
+
+    private String formattedTimestamp(long timestamp) {
+      if (dateFormat == null || timestamp < 0) return String.valueOf(timestamp);
+      date.setTime(timestamp);
+      return dateFormat.format(date);
+    }
+  }
+
+  /** A writer appending to a StringBuilder that is kept between events. */
+  private static final class StringBuilderWriter extends Writer {
+    private StringBuilder builder = new StringBuilder(512);
+
+    @Override
+    public void write(int c) {
+      builder.append((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+      builder.append(chars, offset, length);
+    }
+
+    @Override
+    public void write(String str, int offset, int length) {
+      builder.append(str, offset, offset + length);
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+      builder.append(csq);
+      return this;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+    void reset() {
+      if (builder.capacity() > MAX_RETAINED_BUFFER_SIZE) builder = new StringBuilder(512);
+      else builder.setLength(0);
+    }
+
+    String drain() {
+      String result = builder.toString();
+      reset();
+      return result;
+    }
   }
 }
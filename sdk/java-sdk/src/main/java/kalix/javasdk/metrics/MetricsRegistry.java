@@ -0,0 +1,188 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.metrics;
+
+import java.util.Map;
+
+/**
+ * Receives the measurements of the components of this service, for publishing them to a metrics
+ * backend such as Micrometer.
+ *
+ * <p>Enabled with {@code kalix.metrics.enabled = on}, a custom registry is configured with the
+ * fully qualified class name in {@code kalix.metrics.registry}, and must have a public constructor
+ * without parameters.
+ *
+ * <p>The methods are called from the threads handling the commands, concurrently, so
+ * implementations must be thread safe and must not block.
+ */
+public interface MetricsRegistry {
+
+  /**
+   * A command was handled by a component.
+   *
+   * @param componentType The type of component, one of "action", "event-sourced-entity",
+   *     "value-entity", "replicated-entity" or "view".
+   * @param serviceName The full name of the component service.
+   * @param commandName The name of the command.
+   * @param durationNanos The time spent handling the command in the user function, including
+   *     decoding the command and encoding the reply, and for actions until an asynchronous reply is
+   *     completed.
+   * @param failed Whether the command was replied to with an error, or failed with an exception.
+   */
+  void recordCommand(
+      String componentType,
+      String serviceName,
+      String commandName,
+      long durationNanos,
+      boolean failed);
+
+  /**
+   * A message was decoded, from the protobuf payload sent by Kalix.
+   *
+   * @param serviceName The full name of the component service.
+   * @param durationNanos The time spent decoding the message.
+   */
+  void recordDecode(String serviceName, long durationNanos);
+
+  /**
+   * A message was encoded, into the protobuf payload sent to Kalix.
+   *
+   * @param serviceName The full name of the component service.
+   * @param durationNanos The time spent encoding the message.
+   */
+  void recordEncode(String serviceName, long durationNanos);
+
+  /**
+   * The size of a message payload decoded by the message codec of a component.
+   *
+   * @param typeUrl The type url of the message.
+   * @param sizeBytes The size of the protobuf payload.
+   */
+  default void recordDecodedSize(String typeUrl, int sizeBytes) {}
+
+  /**
+   * The size of a message payload encoded by the message codec of a component, replies, events and
+   * states.
+   *
+   * @param typeUrl The type url of the message.
+   * @param sizeBytes The size of the protobuf payload.
+   */
+  default void recordEncodedSize(String typeUrl, int sizeBytes) {}
+
+  /**
+   * A GET call made through the KalixClient of the Spring SDK was looked up in its GET request
+   * cache, for the paths configured in {@code kalix.spring-sdk.kalix-client.get-cache.paths}.
+   *
+   * @param pathPattern The configured path pattern the call matched.
+   * @param outcome One of "hit" for a cached response, "coalesced" for a call sharing the response
+   *     of an identical call in flight, or "miss" for a call made to the service.
+   */
+  default void recordGetCacheLookup(String pathPattern, String outcome) {}
+
+  /**
+   * A hedge was sent for a call to a service, when hedging is configured for it in {@code
+   * akka.grpc.client."<service>".hedging}, because the earlier requests of the call had not
+   * completed within the hedging delay.
+   *
+   * @param service The name of the service, as used for getting the gRPC client.
+   */
+  default void hedgeSent(String service) {}
+
+  /**
+   * The response of a hedge rather than of the original request was used for a call to a service.
+   *
+   * @param service The name of the service, as used for getting the gRPC client.
+   */
+  default void hedgeWon(String service) {}
+
+  /**
+   * A call to a downstream target was failed right away without being made, when a circuit breaker
+   * or a maximum number of calls in flight is configured for it.
+   *
+   * @param target The name of the service or, for the Spring SDK KalixClient, the full name of the
+   *     component service called.
+   * @param reason One of "circuit-breaker" when the circuit breaker was open, or "bulkhead" when
+   *     the maximum number of calls were in flight.
+   */
+  default void downstreamCallRejected(String target, String reason) {}
+
+  /**
+   * The circuit breaker for a downstream target changed state.
+   *
+   * @param target The name of the service or, for the Spring SDK KalixClient, the full name of the
+   *     component service called.
+   * @param state The new state, one of "closed", "open" or "half-open".
+   */
+  default void circuitBreakerStateChanged(String target, String state) {}
+
+  /**
+   * The number of active entities of a service changed, when an entity was activated or
+   * passivated.
+   *
+   * @param serviceName The full name of the entity service.
+   * @param delta 1 when an entity was activated, -1 when an entity was passivated.
+   */
+  void activeEntitiesChanged(String serviceName, int delta);
+
+  /**
+   * The entities of an entity type that received the most commands during the last window, when
+   * hot key tracking is enabled with {@code kalix.hot-keys.enabled = on}. Called once per window
+   * and entity type, replacing the previous ones.
+   *
+   * @param entityType The entity type.
+   * @param commandsPerEntityId The estimated number of commands for each of the most frequent
+   *     entity ids, highest first. The estimates may be higher than the actual counts, but never
+   *     lower.
+   */
+  default void hotKeysObserved(String entityType, Map<String, Long> commandsPerEntityId) {}
+
+  /**
+   * A command handler has been running for longer than the threshold of the slow handler
+   * watchdog, when enabled with {@code kalix.slow-handler-watchdog.enabled = on}. Called once for
+   * each such command.
+   *
+   * @param componentType The type of component, one of "action", "event-sourced-entity",
+   *     "value-entity" or "replicated-entity".
+   * @param serviceName The full name of the component service.
+   * @param commandName The name of the command.
+   */
+  default void handlerStalled(String componentType, String serviceName, String commandName) {}
+
+  /**
+   * The inventory of the active entities of an entity type, when enabled with {@code
+   * kalix.entity-inventory.enabled = on}. Called once per {@code
+   * kalix.entity-inventory.rate-interval} and entity type. Each active entity uses one stream from
+   * Kalix, and the number of concurrently active entities per entity type is limited by {@code
+   * akka.http.server.http2.max-concurrent-streams}.
+   *
+   * @param componentType The type of component, one of "event-sourced-entity", "value-entity" or
+   *     "replicated-entity".
+   * @param entityType The entity type.
+   * @param activeEntities The number of currently active entities.
+   * @param maxActiveEntities The highest number of concurrently active entities so far.
+   * @param activationsPerSecond The entities activated per second during the last interval.
+   * @param meanLifetimeSeconds The mean time between the activation and passivation of the
+   *     entities.
+   */
+  default void entityInventoryUpdated(
+      String componentType,
+      String entityType,
+      long activeEntities,
+      long maxActiveEntities,
+      double activationsPerSecond,
+      double meanLifetimeSeconds) {}
+}
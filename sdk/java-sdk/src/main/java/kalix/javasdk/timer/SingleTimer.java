@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.timer;
+
+import kalix.javasdk.DeferredCall;
+
+import java.time.Duration;
+
+/** A single timer to start with {@link TimerScheduler#startSingleTimers}. */
+public final class SingleTimer {
+
+  private final String name;
+  private final Duration delay;
+  private final DeferredCall<?, ?> deferredCall;
+
+  private SingleTimer(String name, Duration delay, DeferredCall<?, ?> deferredCall) {
+    this.name = name;
+    this.delay = delay;
+    this.deferredCall = deferredCall;
+  }
+
+  /**
+   * Create a single timer.
+   *
+   * @param name unique name for the timer
+   * @param delay delay, starting from now, in which the timer should be triggered
+   * @param deferredCall a call to component that will be executed when the timer is triggered
+   * @return The timer.
+   */
+  public static SingleTimer of(String name, Duration delay, DeferredCall<?, ?> deferredCall) {
+    return new SingleTimer(name, delay, deferredCall);
+  }
+
+  /** @return The unique name of the timer. */
+  public String name() {
+    return name;
+  }
+
+  /** @return The delay, starting from now, in which the timer should be triggered. */
+  public Duration delay() {
+    return delay;
+  }
+
+  /** @return The call that will be executed when the timer is triggered. */
+  public DeferredCall<?, ?> deferredCall() {
+    return deferredCall;
+  }
+}
@@ -20,6 +20,7 @@ import akka.Done;
 import kalix.javasdk.DeferredCall;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.concurrent.CompletionStage;
 
 public interface TimerScheduler {
@@ -50,4 +51,21 @@ public interface TimerScheduler {
    * name.
    */
   CompletionStage<Done> cancel(String name);
+
+  /**
+   * Schedule a number of single timers in Kalix, see {@link #startSingleTimer} for the semantics of
+   * each timer.
+   *
+   * @param timers the timers to schedule
+   * @return A stage completed when all the timers are scheduled, or failed if any of them failed.
+   */
+  CompletionStage<Done> startSingleTimers(Collection<SingleTimer> timers);
+
+  /**
+   * Cancel a number of existing timers. Names for which no timer is registered are ignored.
+   *
+   * @param names the names of the timers to cancel
+   * @return A stage completed when all the timers are cancelled, or failed if any of them failed.
+   */
+  CompletionStage<Done> cancelAll(Collection<String> names);
 }
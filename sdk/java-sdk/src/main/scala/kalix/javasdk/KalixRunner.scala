@@ -27,7 +27,7 @@ import kalix.javasdk.impl.action.{ ActionService, ActionsImpl }
 import kalix.javasdk.impl.replicatedentity.{ ReplicatedEntitiesImpl, ReplicatedEntityService }
 import kalix.javasdk.impl.valueentity.{ ValueEntitiesImpl, ValueEntityService }
 import kalix.javasdk.impl.eventsourcedentity.{ EventSourcedEntitiesImpl, EventSourcedEntityService }
-import kalix.javasdk.impl.{ AbstractContext, DiscoveryImpl, Service }
+import kalix.javasdk.impl.{ AbstractContext, DiscoveryImpl, GrpcClients, Service }
 import kalix.protocol.action.ActionsHandler
 import kalix.protocol.discovery.DiscoveryHandler
 import kalix.protocol.event_sourced_entity.EventSourcedEntitiesHandler
@@ -166,6 +166,11 @@ final class KalixRunner private[javasdk] (
         case (route, (serviceClass, actionServices: Map[String, ActionService] @unchecked))
             if serviceClass == classOf[ActionService] =>
           val actionImpl = new ActionsImpl(system, actionServices, rootContext)
+          if (system.settings.config.getBoolean("kalix.local-action-calls")) {
+            // a default ACL applies to all components, and can only be enforced by the proxy
+            if (aclDescriptor.isEmpty) GrpcClients(system).setLocalActions(actionImpl)
+            else system.log.warning("Local action calls are disabled since a default ACL is defined")
+          }
           route.orElse(ActionsHandler.partial(actionImpl))
 
         case (route, (serviceClass, entityServices: Map[String, ValueEntityService] @unchecked))
@@ -35,6 +35,8 @@ import com.google.protobuf.{ Any => JavaPbAny }
 import kalix.javasdk.JsonSupport
 import kalix.javasdk.impl.AnySupport.Prefer.Java
 import kalix.javasdk.impl.AnySupport.Prefer.Scala
+import kalix.javasdk.impl.jfr.MessageDecodeEvent
+import kalix.javasdk.impl.jfr.MessageEncodeEvent
 import org.slf4j.LoggerFactory
 import scalapb.GeneratedMessage
 import scalapb.GeneratedMessageCompanion
@@ -343,7 +345,20 @@ class AnySupport(
       case _                      => ScalaPbAny.toJavaProto(encodeScala(value))
     }
 
-  def encodeScala(value: Any): ScalaPbAny =
+  def encodeScala(value: Any): ScalaPbAny = {
+    val event = MessageEncodeEvent.start()
+    var encoded: ScalaPbAny = null
+    try {
+      encoded = encode(value)
+      encoded
+    } finally {
+      // the type url is not known when the value could not be encoded
+      if (encoded eq null) event.finish(null, 0, true)
+      else event.finish(encoded.typeUrl, encoded.value.size, false)
+    }
+  }
+
+  private def encode(value: Any): ScalaPbAny =
     value match {
       case javaPbAny: JavaPbAny   => ScalaPbAny.fromJavaProto(javaPbAny)
       case scalaPbAny: ScalaPbAny => scalaPbAny
@@ -412,6 +427,18 @@ class AnySupport(
    * Other JavaPbAny wrapped primitives are not expected, but the wrapped value is passed through as it is.
    */
   def decodeMessage(any: ScalaPbAny): Any = {
+    val event = MessageDecodeEvent.start()
+    var failed = true
+    try {
+      val decoded = decode(any)
+      failed = false
+      decoded
+    } finally {
+      event.finish(any.typeUrl, any.value.size, failed)
+    }
+  }
+
+  private def decode(any: ScalaPbAny): Any = {
     val typeUrl = any.typeUrl
     if (typeUrl.equals(BytesPrimitive.fullName)) {
       // raw byte strings we turn into BytesValue and expect service method to accept
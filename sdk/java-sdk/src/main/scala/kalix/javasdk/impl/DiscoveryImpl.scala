@@ -36,6 +36,7 @@ import kalix.javasdk.EntityOptions
 import kalix.protocol.action.Actions
 import kalix.protocol.discovery.PassivationStrategy.Strategy
 import kalix.protocol.discovery._
+import kalix.timers.timers.TimerService
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
@@ -130,6 +131,8 @@ class DiscoveryImpl(
       }
       grpcClients.setProxyPort(in.proxyPort)
       grpcClients.setIdentificationInfo(in.identificationInfo)
+      if (system.settings.config.getBoolean("kalix.grpc-client.eager-proxy-clients"))
+        grpcClients.createProxyClients(Seq(classOf[TimerService]))
 
       if (unsupportedServices.nonEmpty) {
         log.error(
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl
+
+import java.util.concurrent.atomic.{ AtomicInteger, LongAdder }
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.duration.FiniteDuration
+import scala.jdk.DurationConverters._
+import scala.util.Try
+import scala.util.control.NonFatal
+
+import akka.actor.Scheduler
+import akka.pattern.{ CircuitBreaker, CircuitBreakerOpenException }
+import com.typesafe.config.Config
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+object DownstreamGuard {
+
+  /**
+   * @param circuitBreaker
+   *   fail calls right away after a number of consecutive failures, until a call succeeds after the reset timeout
+   * @param maxInFlight
+   *   the maximum number of concurrent calls, calls above it fail right away
+   */
+  final case class Settings(circuitBreaker: Option[CircuitBreakerSettings], maxInFlight: Option[Int]) {
+    def isEnabled: Boolean = circuitBreaker.isDefined || maxInFlight.isDefined
+  }
+
+  final case class CircuitBreakerSettings(maxFailures: Int, callTimeout: FiniteDuration, resetTimeout: FiniteDuration)
+
+  object Settings {
+    val Disabled: Settings = Settings(None, None)
+
+    /** Reads the optional `circuit-breaker` section and `max-in-flight` setting, neither are enabled if missing */
+    def fromConfig(config: Config): Settings = {
+      val circuitBreaker =
+        if (!config.hasPath("circuit-breaker")) None
+        else Some(circuitBreakerSettings(config.getConfig("circuit-breaker")))
+      val maxInFlight =
+        if (!config.hasPath("max-in-flight")) None
+        else Some(config.getInt("max-in-flight")).filter(_ > 0)
+      Settings(circuitBreaker, maxInFlight)
+    }
+
+    def circuitBreakerSettings(config: Config): CircuitBreakerSettings =
+      CircuitBreakerSettings(
+        config.getInt("max-failures"),
+        config.getDuration("call-timeout").toScala,
+        config.getDuration("reset-timeout").toScala)
+  }
+
+  /** The call was not made, because the circuit breaker is open or too many calls are in flight */
+  final class RejectedException(message: String) extends RuntimeException(message, null, false, false)
+
+  final class Metrics {
+    private[DownstreamGuard] val opened = new LongAdder
+    private[DownstreamGuard] val halfOpened = new LongAdder
+    private[DownstreamGuard] val rejectedOpen = new LongAdder
+    private[DownstreamGuard] val rejectedFull = new LongAdder
+    private[DownstreamGuard] val inFlightCalls = new AtomicInteger
+    @volatile private[DownstreamGuard] var currentState: String = "closed"
+
+    /** The state of the circuit breaker, one of "closed", "open" or "half-open" */
+    def state: String = currentState
+
+    /** The number of times the circuit breaker was opened */
+    def timesOpened: Long = opened.sum()
+
+    /** The number of times the circuit breaker went half-open, letting a call through to see if it succeeds */
+    def timesHalfOpened: Long = halfOpened.sum()
+
+    /** The number of calls failed right away because the circuit breaker was open */
+    def rejectedByCircuitBreaker: Long = rejectedOpen.sum()
+
+    /** The number of calls failed right away because too many calls were in flight */
+    def rejectedByBulkhead: Long = rejectedFull.sum()
+
+    /** The number of calls currently in flight */
+    def inFlight: Int = inFlightCalls.get()
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Isolates the calls to one downstream target, so that a slow or failing target makes its calls fail fast instead of
+ * piling up: a circuit breaker and a bulkhead limiting the number of calls in flight.
+ *
+ * @param componentMetrics
+ *   where the rejected calls and the circuit breaker state changes are published to, in addition to [[metrics]]
+ */
+final class DownstreamGuard(
+    name: String,
+    settings: DownstreamGuard.Settings,
+    scheduler: Scheduler,
+    componentMetrics: Option[ComponentMetrics] = None) {
+  import DownstreamGuard._
+
+  private val log = LoggerFactory.getLogger(classOf[DownstreamGuard])
+
+  val metrics = new Metrics
+
+  private val circuitBreaker: Option[CircuitBreaker] = settings.circuitBreaker.map { cb =>
+    CircuitBreaker(scheduler, cb.maxFailures, cb.callTimeout, cb.resetTimeout)
+      .onOpen {
+        log.warn("Circuit breaker for [{}] opened, calls will fail right away for [{}]", name, cb.resetTimeout)
+        metrics.opened.increment()
+        stateChanged("open")
+      }
+      .onHalfOpen {
+        metrics.halfOpened.increment()
+        stateChanged("half-open")
+      }
+      .onClose {
+        log.info("Circuit breaker for [{}] closed", name)
+        stateChanged("closed")
+      }
+      .onCallBreakerOpen {
+        metrics.rejectedOpen.increment()
+        componentMetrics.foreach(_.downstreamCallRejected(name, "circuit-breaker"))
+      }
+  }
+
+  private def stateChanged(state: String): Unit = {
+    metrics.currentState = state
+    componentMetrics.foreach(_.circuitBreakerStateChanged(name, state))
+  }
+
+  /**
+   * Runs the call unless it is rejected, in which case the returned future fails with a [[RejectedException]] and the
+   * call is never started.
+   *
+   * @param isFailure
+   *   whether the outcome counts as a failure for the circuit breaker, such as an unavailable target but not a "not
+   *   found" reply
+   */
+  def call[T](body: => Future[T], isFailure: Try[T] => Boolean): Future[T] =
+    if (!tryAcquire()) {
+      metrics.rejectedFull.increment()
+      componentMetrics.foreach(_.downstreamCallRejected(name, "bulkhead"))
+      Future.failed(new RejectedException(s"Too many calls in flight to [$name], max is [${settings.maxInFlight.get}]"))
+    } else {
+      var started = false
+      def startBody(): Future[T] = {
+        started = true
+        val result =
+          try body
+          catch { case NonFatal(ex) => Future.failed(ex) }
+        result.onComplete(_ => metrics.inFlightCalls.decrementAndGet())(ExecutionContext.parasitic)
+        result
+      }
+
+      circuitBreaker match {
+        case Some(breaker) =>
+          val result = breaker.withCircuitBreaker(startBody(), isFailure)
+          if (started) result
+          else {
+            metrics.inFlightCalls.decrementAndGet()
+            result.recoverWith { case _: CircuitBreakerOpenException =>
+              Future.failed(new RejectedException(s"Circuit breaker for [$name] is open"))
+            }(ExecutionContext.parasitic)
+          }
+        case None => startBody()
+      }
+    }
+
+  private def tryAcquire(): Boolean = settings.maxInFlight match {
+    case Some(max) =>
+      val current = metrics.inFlightCalls.get()
+      if (current >= max) false
+      else if (metrics.inFlightCalls.compareAndSet(current, current + 1)) true
+      else tryAcquire()
+    case None =>
+      metrics.inFlightCalls.incrementAndGet()
+      true
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{ AtomicInteger, LongAdder }
+
+import scala.jdk.DurationConverters._
+
+import akka.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import akka.actor.ExtensionIdProvider
+import kalix.javasdk.impl.EntityExceptions.EntityException
+import org.slf4j.Logger
+
+/**
+ * INTERNAL API
+ */
+object FailureLogging extends ExtensionId[FailureLogging] with ExtensionIdProvider {
+  override def get(system: ActorSystem): FailureLogging = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): FailureLogging = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): FailureLogging =
+    new FailureLogging(system)
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  private final case class FailureKey(
+      errorClass: String,
+      componentType: String,
+      serviceName: String,
+      commandName: String)
+
+  private final class Failures(val log: Logger) {
+    val logged = new AtomicInteger
+    val suppressed = new LongAdder
+    @volatile var lastCorrelationId: String = ""
+  }
+
+  // entity failures wrap the actual failure, if any, which is what identifies them
+  private def errorClass(error: Throwable): String = error match {
+    case EntityException(_, _, _, _, Some(cause)) => cause.getClass.getName
+    case _                                        => error.getClass.getName
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Logs the unexpected failures of the components, at most `max-logged-per-interval` of each kind of failure (the
+ * same exception class, component type, service and command) with their stack trace during an interval. Further
+ * failures of that kind are only counted and summarized in one line at the end of the interval, to the logger of the
+ * component that failed, so that a storm of failures, for example during an outage of a downstream service, doesn't
+ * make things worse by overloading the logging.
+ */
+final class FailureLogging(system: ExtendedActorSystem) extends Extension {
+  import FailureLogging._
+
+  private val config = system.settings.config.getConfig("kalix.failure-logging")
+  private val maxLoggedPerInterval = config.getInt("max-logged-per-interval")
+  private val interval = config.getDuration("interval").toScala
+  private val failures = new ConcurrentHashMap[FailureKey, Failures]()
+
+  if (maxLoggedPerInterval >= 0)
+    system.scheduler.scheduleWithFixedDelay(interval, interval)(() => logSummaries())(system.dispatcher)
+
+  /**
+   * Logs an unexpected failure of a component, the correlation id should be in the MDC already. The command name is
+   * taken from the failure for entities, `commandName` is used for other failures.
+   *
+   * @param componentType
+   *   one of the component type constants of [[kalix.javasdk.impl.metrics.ComponentMetrics]]
+   * @param serviceName
+   *   the full name of the service of the component, or empty when it is not known yet, such as for a failure before
+   *   the init message of an entity
+   */
+  def logFailure(
+      log: Logger,
+      componentType: String,
+      serviceName: String,
+      commandName: String,
+      error: Throwable,
+      correlationId: String,
+      message: String): Unit =
+    if (maxLoggedPerInterval < 0) log.error(message, error)
+    else {
+      val command = error match {
+        case entityException: EntityException if entityException.commandName.nonEmpty => entityException.commandName
+        case _                                                                         => commandName
+      }
+      val key = FailureKey(errorClass(error), componentType, serviceName, command)
+      val current = failures.get(key)
+      val entry = if (current ne null) current else failures.computeIfAbsent(key, _ => new Failures(log))
+      if (entry.logged.incrementAndGet() <= maxLoggedPerInterval) log.error(message, error)
+      else {
+        entry.suppressed.increment()
+        entry.lastCorrelationId = correlationId
+      }
+    }
+
+  private def logSummaries(): Unit =
+    failures.forEach { (key, entry) =>
+      val suppressed = entry.suppressed.sumThenReset()
+      val logged = entry.logged.getAndSet(0)
+      if (suppressed > 0) {
+        val component =
+          if (key.serviceName.isEmpty) s"[${key.componentType}]" else s"${key.componentType} [${key.serviceName}]"
+        val command = if (key.commandName.isEmpty) "" else s" for command [${key.commandName}]"
+        entry.log.error(
+          s"$suppressed more failures with [${key.errorClass}] in $component$command during the last " +
+          s"$interval were not logged individually, the last one with correlation id [${entry.lastCorrelationId}]")
+      } else if (logged == 0) {
+        // no failures of this kind during the interval
+        failures.remove(key, entry)
+      }
+    }
+}
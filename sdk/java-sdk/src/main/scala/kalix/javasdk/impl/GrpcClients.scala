@@ -23,19 +23,43 @@ import akka.actor.ExtendedActorSystem
 import akka.actor.Extension
 import akka.actor.ExtensionId
 import akka.actor.ExtensionIdProvider
-import akka.grpc.GrpcClientSettings
+import akka.grpc.{ GrpcClientSettings, ServiceDescription }
 import akka.grpc.javadsl.{ AkkaGrpcClient => AkkaGrpcJavaClient }
 import akka.grpc.scaladsl.{ AkkaGrpcClient => AkkaGrpcScalaClient }
 import org.slf4j.LoggerFactory
+import java.lang.reflect.{ InvocationHandler, InvocationTargetException, Method, Proxy }
 import java.util.concurrent.{ ConcurrentHashMap, Executor }
+import java.util.concurrent.atomic.{ AtomicInteger, LongAdder }
 
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration.FiniteDuration
 import scala.jdk.CollectionConverters._
+import scala.jdk.DurationConverters._
 import scala.jdk.FutureConverters._
+import scala.util.Try
+import scala.util.control.NonFatal
 import akka.actor.ActorSystem
-import io.grpc.{ CallCredentials, Metadata }
+import com.google.protobuf.DescriptorProtos.MethodOptions.IdempotencyLevel
+import com.google.protobuf.Descriptors
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener
+import io.grpc.{
+  CallCredentials,
+  CallOptions,
+  Channel,
+  ClientCall,
+  ClientInterceptor,
+  ClientStreamTracer,
+  Metadata,
+  MethodDescriptor,
+  Status
+}
 import kalix.javasdk.Principal
+import kalix.javasdk.impl.action.ActionsImpl
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.telemetry.Tracing
 import kalix.protocol.discovery.IdentificationInfo
 
 /**
@@ -50,7 +74,219 @@ object GrpcClients extends ExtensionId[GrpcClients] with ExtensionIdProvider {
     new GrpcClients(system)
   override def lookup: ExtensionId[_ <: Extension] = this
 
-  final private case class Key(serviceClass: Class[_], service: String, port: Int, addHeader: Option[(String, String)])
+  final private case class Key(
+      serviceClass: Class[_],
+      service: String,
+      port: Int,
+      addHeader: Option[(String, String)],
+      callSettings: Option[CallSettings])
+
+  /**
+   * Settings for the calls made by a client, either configured per service in `akka.grpc.client."<service>"` or passed
+   * when getting the client.
+   *
+   * @param deadline
+   *   default deadline for each call
+   * @param hedging
+   *   send a hedge for calls to idempotent methods that haven't completed after some delay, first response wins
+   */
+  final case class CallSettings(deadline: Option[FiniteDuration], hedging: Option[HedgingSettings]) {
+    def orElse(other: CallSettings): CallSettings =
+      CallSettings(deadline.orElse(other.deadline), hedging.orElse(other.hedging))
+  }
+
+  /**
+   * @param maxAttempts
+   *   the maximum number of requests sent for one call, including the original one
+   * @param delay
+   *   how long to wait for a response before sending the next hedge, typically around the p95 latency of the service
+   */
+  final case class HedgingSettings(maxAttempts: Int, delay: FiniteDuration)
+
+  final class HedgingMetrics {
+    private[GrpcClients] val sent = new LongAdder
+    private[GrpcClients] val won = new LongAdder
+
+    /** The number of hedges sent in addition to the original requests */
+    def hedgesSent: Long = sent.sum()
+
+    /** The number of calls where the response of a hedge was used */
+    def hedgesWon: Long = won.sum()
+  }
+
+  /**
+   * A number of clients for the same key, each with its own channel and so its own HTTP/2 connection, so that calls are
+   * not all multiplexed over a single connection.
+   */
+  private final class ClientPool(
+      serviceClass: Class[_],
+      val clients: Vector[AnyRef],
+      inFlight: Option[Vector[AtomicInteger]]) {
+    private val next = new AtomicInteger()
+
+    /**
+     * The client handed out for the key. With more than one pooled client, it implements the service interface by
+     * passing each call on to one of them, so that the channel is selected per call rather than per client lookup.
+     */
+    val client: AnyRef =
+      if (clients.size == 1) clients.head
+      else
+        Proxy.newProxyInstance(
+          serviceClass.getClassLoader,
+          Array(serviceClass),
+          new InvocationHandler {
+            override def invoke(proxy: AnyRef, method: Method, args: Array[AnyRef]): AnyRef =
+              try method.invoke(selectClient(), Option(args).getOrElse(Array.empty): _*)
+              catch {
+                case e: InvocationTargetException => throw e.getCause
+              }
+          })
+
+    private def selectClient(): AnyRef =
+      inFlight match {
+        case Some(counters) => clients(counters.indices.minBy(counters(_).get()))
+        case None           => clients(Math.floorMod(next.getAndIncrement(), clients.size))
+      }
+  }
+
+  private final class InFlightCallsInterceptor(inFlight: AtomicInteger) extends ClientInterceptor {
+    override def interceptCall[Req, Res](
+        method: MethodDescriptor[Req, Res],
+        callOptions: CallOptions,
+        next: Channel): ClientCall[Req, Res] =
+      new SimpleForwardingClientCall[Req, Res](next.newCall(method, callOptions)) {
+        override def start(responseListener: ClientCall.Listener[Res], headers: Metadata): Unit = {
+          inFlight.incrementAndGet()
+          super.start(
+            new SimpleForwardingClientCallListener[Res](responseListener) {
+              override def onClose(status: Status, trailers: Metadata): Unit = {
+                inFlight.decrementAndGet()
+                super.onClose(status, trailers)
+              }
+            },
+            headers)
+        }
+      }
+  }
+
+  // added by gRPC to the headers of a hedge, and to the response headers when it was not the first attempt that won
+  private val PreviousRpcAttempts = Metadata.Key.of("grpc-previous-rpc-attempts", Metadata.ASCII_STRING_MARSHALLER)
+
+  private final class HedgingMetricsInterceptor(
+      service: String,
+      metrics: HedgingMetrics,
+      componentMetrics: ComponentMetrics)
+      extends ClientInterceptor {
+
+    private val tracerFactory = new ClientStreamTracer.Factory {
+      override def newClientStreamTracer(info: ClientStreamTracer.StreamInfo, headers: Metadata): ClientStreamTracer = {
+        if (headers.containsKey(PreviousRpcAttempts)) {
+          metrics.sent.increment()
+          componentMetrics.hedgeSent(service)
+        }
+        new ClientStreamTracer {}
+      }
+    }
+
+    override def interceptCall[Req, Res](
+        method: MethodDescriptor[Req, Res],
+        callOptions: CallOptions,
+        next: Channel): ClientCall[Req, Res] =
+      new SimpleForwardingClientCall[Req, Res](
+        next.newCall(method, callOptions.withStreamTracerFactory(tracerFactory))) {
+        override def start(responseListener: ClientCall.Listener[Res], headers: Metadata): Unit =
+          super.start(
+            new SimpleForwardingClientCallListener[Res](responseListener) {
+              override def onHeaders(headers: Metadata): Unit = {
+                if (headers.containsKey(PreviousRpcAttempts)) {
+                  metrics.won.increment()
+                  componentMetrics.hedgeWon(service)
+                }
+                super.onHeaders(headers)
+              }
+            },
+            headers)
+      }
+  }
+
+  // statuses that tell that the service is unhealthy, rather than rejecting the particular request
+  private val FailureStatusCodes =
+    Set(Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED, Status.Code.RESOURCE_EXHAUSTED, Status.Code.UNKNOWN)
+
+  private def isFailure(result: Try[Status]): Boolean =
+    result.fold(_ => true, status => FailureStatusCodes.contains(status.getCode))
+
+  /**
+   * Runs unary calls through the guard of the service, rejected calls are closed right away with `UNAVAILABLE` without
+   * being sent. Streaming calls are long lived and are passed through as is.
+   */
+  private final class DownstreamGuardInterceptor(guard: DownstreamGuard, executor: ExecutionContext)
+      extends ClientInterceptor {
+    override def interceptCall[Req, Res](
+        method: MethodDescriptor[Req, Res],
+        callOptions: CallOptions,
+        next: Channel): ClientCall[Req, Res] =
+      if (method.getType != MethodDescriptor.MethodType.UNARY) next.newCall(method, callOptions)
+      else
+        new ClientCall[Req, Res] {
+          // only set if the call was let through
+          @volatile private var delegate: ClientCall[Req, Res] = _
+
+          override def start(responseListener: ClientCall.Listener[Res], headers: Metadata): Unit = {
+            val result = guard.call(
+              {
+                val closed = Promise[Status]()
+                val call = next.newCall(method, callOptions)
+                delegate = call
+                call.start(
+                  new SimpleForwardingClientCallListener[Res](responseListener) {
+                    override def onClose(status: Status, trailers: Metadata): Unit = {
+                      closed.success(status)
+                      super.onClose(status, trailers)
+                    }
+                  },
+                  headers)
+                closed.future
+              },
+              isFailure)
+
+            result.failed.foreach {
+              case rejected: DownstreamGuard.RejectedException =>
+                responseListener.onClose(Status.UNAVAILABLE.withDescription(rejected.getMessage), new Metadata)
+              case _ =>
+            }(executor)
+          }
+
+          override def request(numMessages: Int): Unit = if (delegate ne null) delegate.request(numMessages)
+          override def cancel(message: String, cause: Throwable): Unit =
+            if (delegate ne null) delegate.cancel(message, cause)
+          override def halfClose(): Unit = if (delegate ne null) delegate.halfClose()
+          override def sendMessage(message: Req): Unit = if (delegate ne null) delegate.sendMessage(message)
+          override def isReady: Boolean = (delegate ne null) && delegate.isReady
+        }
+  }
+
+  /**
+   * Propagates the trace context current when the call is created, typically the span of the command being handled,
+   * in the headers of the call.
+   */
+  private final class TracingInterceptor(tracing: Tracing) extends ClientInterceptor {
+    override def interceptCall[Req, Res](
+        method: MethodDescriptor[Req, Res],
+        callOptions: CallOptions,
+        next: Channel): ClientCall[Req, Res] = {
+      val traceHeaders = new Metadata
+      tracing.injectCurrentContext { (key, value) =>
+        traceHeaders.put(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER), value)
+      }
+      new SimpleForwardingClientCall[Req, Res](next.newCall(method, callOptions)) {
+        override def start(responseListener: ClientCall.Listener[Res], headers: Metadata): Unit = {
+          headers.merge(traceHeaders)
+          super.start(responseListener, headers)
+        }
+      }
+    }
+  }
 }
 
 /**
@@ -63,15 +299,27 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
   @volatile private var proxyHostname: Option[String] = None
   @volatile private var proxyPort: Option[Int] = None
   @volatile private var identificationInfo: Option[IdentificationInfo] = None
+  @volatile private var localActionClients: Option[LocalActionClients] = None
   private implicit val ec: ExecutionContext = system.dispatcher
-  private val clients = new ConcurrentHashMap[Key, AnyRef]()
+  private val clients = new ConcurrentHashMap[Key, ClientPool]()
+  private val hedgingMetrics = new ConcurrentHashMap[String, HedgingMetrics]()
+  private val downstreamGuards = new ConcurrentHashMap[String, DownstreamGuard]()
+  private val tracing = Tracing(system)
+  private val componentMetrics = ComponentMetrics(system)
+
+  private val channelsPerClient = system.settings.config.getInt("kalix.grpc-client.channels-per-client")
+  private val leastLoadedChannel = system.settings.config.getString("kalix.grpc-client.channel-selection") match {
+    case "round-robin"  => false
+    case "least-loaded" => true
+    case other =>
+      throw new IllegalArgumentException(
+        s"Unknown channel selection [$other] for kalix.grpc-client.channel-selection, " +
+        "must be one of [round-robin, least-loaded]")
+  }
 
   CoordinatedShutdown(system).addTask(CoordinatedShutdown.PhaseServiceStop, "stop-grpc-clients")(() =>
     Future
-      .traverse(clients.values().asScala) {
-        case javaClient: AkkaGrpcJavaClient   => javaClient.close().asScala
-        case scalaClient: AkkaGrpcScalaClient => scalaClient.close()
-      }
+      .traverse(clients.values().asScala.flatMap(_.clients))(close)
       .map(_ => Done))
 
   def setProxyHostname(hostname: String): Unit = {
@@ -84,14 +332,19 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
     identificationInfo = info
   }
 
+  /** Calls to these actions through component clients are handled in process instead of going through the proxy */
+  private[javasdk] def setLocalActions(actions: ActionsImpl): Unit = {
+    log.debug("Handling calls to actions of this service in process")
+    localActionClients = Some(new LocalActionClients(actions, this, tracing))
+  }
+
   def setProxyPort(port: Int): Unit = {
     log.debug("Setting port to: [{}]", port)
     proxyPort = Some(port)
   }
 
-  def getComponentGrpcClient[T](serviceClass: Class[T]): T = {
-    getProxyGrpcClient(serviceClass)
-  }
+  def getComponentGrpcClient[T](serviceClass: Class[T]): T =
+    localActionClients.flatMap(_.clientFor(serviceClass)).getOrElse(getProxyGrpcClient(serviceClass))
   def getProxyGrpcClient[T](serviceClass: Class[T]): T = {
     getLocalGrpcClient(serviceClass)
   }
@@ -108,6 +361,20 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
   def getGrpcClient[T](serviceClass: Class[T], service: String): T =
     getGrpcClient(serviceClass, service, port = 80, remoteAddHeader)
 
+  /**
+   * Same as above, with call settings that take precedence over the ones configured for the service.
+   */
+  def getGrpcClient[T](serviceClass: Class[T], service: String, callSettings: CallSettings): T =
+    getGrpcClient(serviceClass, service, port = 80, remoteAddHeader, Some(callSettings))
+
+  /** Metrics for the hedges sent to the given service, if hedging is enabled for any of its clients. */
+  def getHedgingMetrics(service: String): Option[HedgingMetrics] =
+    Option(hedgingMetrics.get(service))
+
+  /** Metrics for the circuit breaker and bulkhead of the given service, if any are configured for it. */
+  def getDownstreamGuardMetrics(service: String): Option[DownstreamGuard.Metrics] =
+    Option(downstreamGuards.get(service)).map(_.metrics)
+
   /** gRPC clients point to services (user components or Kalix services) in the same deployable */
   private def getLocalGrpcClient[T](serviceClass: Class[T]): T = {
     (proxyHostname, proxyPort) match {
@@ -151,12 +418,180 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
       serviceClass: Class[T],
       service: String,
       port: Int,
-      addHeader: Option[(String, String)]) = {
-    clients.computeIfAbsent(Key(serviceClass, service, port, addHeader), createClient(_)).asInstanceOf[T]
+      addHeader: Option[(String, String)],
+      callSettings: Option[CallSettings] = None) = {
+    clients
+      .computeIfAbsent(Key(serviceClass, service, port, addHeader, callSettings), createPool(_))
+      .client
+      .asInstanceOf[T]
+  }
+
+  /**
+   * Creates the clients for calls to the proxy right away, at discovery, rather than on the first call.
+   */
+  def createProxyClients(serviceClasses: Seq[Class[_]]): Unit =
+    serviceClasses.foreach { serviceClass =>
+      try getProxyGrpcClient(serviceClass)
+      catch {
+        case NonFatal(ex) =>
+          log.warn(s"Could not create gRPC client for [${serviceClass.getName}] at discovery", ex)
+      }
+    }
+
+  private def clientConfigPath(service: String): String = s"""akka.grpc.client."$service""""
+
+  private val CallSettingsKeys = Set("deadline", "hedging", "circuit-breaker", "max-in-flight")
+
+  // a client section only giving call settings doesn't make it an external service
+  private def isExternalService(service: String): Boolean = {
+    val config = system.settings.config
+    val path = clientConfigPath(service)
+    config.hasPath(path) &&
+    !config.getConfig(path).root().keySet().asScala.subsetOf(CallSettingsKeys)
   }
 
-  private def createClient(key: Key): AnyRef = {
-    val settings = if (!system.settings.config.hasPath(s"""akka.grpc.client."${key.service}"""")) {
+  private def configuredGuardSettings(service: String): DownstreamGuard.Settings = {
+    val config = system.settings.config
+    val path = clientConfigPath(service)
+    if (config.hasPath(path)) DownstreamGuard.Settings.fromConfig(config.getConfig(path))
+    else DownstreamGuard.Settings.Disabled
+  }
+
+  private def configuredCallSettings(service: String): CallSettings = {
+    val config = system.settings.config
+    val path = clientConfigPath(service)
+    val deadline =
+      if (!config.hasPath(s"$path.deadline") || config.getString(s"$path.deadline") == "infinite") None
+      else Some(config.getDuration(s"$path.deadline").toScala)
+    val hedging =
+      if (!config.hasPath(s"$path.hedging")) None
+      else
+        Some(
+          HedgingSettings(
+            config.getInt(s"$path.hedging.max-attempts"),
+            config.getDuration(s"$path.hedging.delay").toScala))
+    CallSettings(deadline, hedging)
+  }
+
+  private def withCallSettings(settings: GrpcClientSettings, key: Key): GrpcClientSettings = {
+    val configured = configuredCallSettings(key.service)
+    val callSettings = key.callSettings.fold(configured)(_.orElse(configured))
+
+    val withDeadline = callSettings.deadline.fold(settings)(settings.withDeadline)
+
+    val withHedging = callSettings.hedging match {
+      case Some(hedging) =>
+        idempotentMethods(key.serviceClass) match {
+          case Nil =>
+            log.warn(
+              "Hedging configured for service [{}], but none of the methods of [{}] are marked as idempotent, " +
+              "not hedging",
+              key.service,
+              key.serviceClass.getName)
+            withDeadline
+          case methods =>
+            log.debug("Hedging calls to [{}] for methods [{}]", key.service, methods.map(_.getName).mkString(", "))
+            val metrics = hedgingMetrics.computeIfAbsent(key.service, _ => new HedgingMetrics)
+            val serviceConfig = hedgingServiceConfig(methods, hedging)
+            withDeadline.withGrpcChannelBuilderOverrides(
+              _.defaultServiceConfig(serviceConfig)
+                .enableRetry()
+                .intercept(new HedgingMetricsInterceptor(key.service, metrics, componentMetrics)))
+        }
+      case None => withDeadline
+    }
+
+    // added last so that it sees the call as a whole, including any hedges
+    val guardSettings = configuredGuardSettings(key.service)
+    val withGuard =
+      if (guardSettings.isEnabled) {
+        val guard = downstreamGuards.computeIfAbsent(
+          key.service,
+          service => new DownstreamGuard(service, guardSettings, system.scheduler, Some(componentMetrics)))
+        val interceptor = new DownstreamGuardInterceptor(guard, ec)
+        val overrides = withHedging.grpcChannelBuilderOverrides.andThen(_.intercept(interceptor))
+        withHedging.withGrpcChannelBuilderOverrides(overrides)
+      } else withHedging
+
+    if (tracing.enabled) {
+      val interceptor = new TracingInterceptor(tracing)
+      withGuard.withGrpcChannelBuilderOverrides(withGuard.grpcChannelBuilderOverrides.andThen(_.intercept(interceptor)))
+    } else withGuard
+  }
+
+  /**
+   * Methods marked with `option idempotency_level = IDEMPOTENT` or `NO_SIDE_EFFECTS` in the proto service definition,
+   * only those are safe to send more than once.
+   */
+  private[impl] def idempotentMethods(serviceClass: Class[_]): List[Descriptors.MethodDescriptor] =
+    serviceDescriptor(serviceClass).toList.flatMap(_.getMethods.asScala).filter { method =>
+      method.getOptions.getIdempotencyLevel != IdempotencyLevel.IDEMPOTENCY_UNKNOWN
+    }
+
+  /** The descriptor of an Akka gRPC generated service interface */
+  private[impl] def serviceDescriptor(serviceClass: Class[_]): Option[Descriptors.ServiceDescriptor] = {
+    val javaService = Try {
+      // Java API - static name and description on the service interface
+      (
+        serviceClass.getField("name").get(null).asInstanceOf[String],
+        serviceClass.getField("description").get(null).asInstanceOf[Descriptors.FileDescriptor])
+    }
+    val scalaService = Try {
+      // Scala API - companion object is the service description
+      val companion = system.dynamicAccess.getObjectFor[ServiceDescription](serviceClass.getName).get
+      (companion.name, companion.descriptor)
+    }
+
+    javaService.orElse(scalaService).toOption.flatMap { case (name, file) =>
+      file.getServices.asScala.find(_.getFullName == name)
+    }
+  }
+
+  private[impl] def hedgingServiceConfig(
+      methods: Seq[Descriptors.MethodDescriptor],
+      hedging: HedgingSettings): java.util.Map[String, AnyRef] = {
+    val names = methods.map { method =>
+      Map[String, AnyRef]("service" -> method.getService.getFullName, "method" -> method.getName).asJava
+    }
+    val hedgingPolicy = Map[String, AnyRef](
+      "maxAttempts" -> Double.box(hedging.maxAttempts),
+      "hedgingDelay" -> s"${hedging.delay.toMillis / 1000.0}s").asJava
+    val methodConfig = Map[String, AnyRef]("name" -> names.asJava, "hedgingPolicy" -> hedgingPolicy).asJava
+    Map[String, AnyRef]("methodConfig" -> List(methodConfig).asJava).asJava
+  }
+
+  private def createPool(key: Key): ClientPool = {
+    val settings = createSettings(key)
+    val inFlight =
+      if (leastLoadedChannel && channelsPerClient > 1) Some(Vector.fill(channelsPerClient)(new AtomicInteger))
+      else None
+
+    val pooledClients = Vector.tabulate(channelsPerClient) { index =>
+      inFlight match {
+        case Some(counters) =>
+          val interceptor = new InFlightCallsInterceptor(counters(index))
+          val overrides = settings.grpcChannelBuilderOverrides.andThen(_.intercept(interceptor))
+          createClient(key, settings.withGrpcChannelBuilderOverrides(overrides))
+        case None => createClient(key, settings)
+      }
+    }
+    val pool = new ClientPool(key.serviceClass, pooledClients, inFlight)
+
+    pooledClients.foreach { client =>
+      closed(client).foreach { _ =>
+        // if one of the clients is closed, remove the pool and close the others as well
+        if (clients.remove(key, pool)) {
+          log.debug("gRPC client for service [{}] was closed", key.service)
+          pooledClients.foreach(close)
+        }
+      }
+    }
+
+    pool
+  }
+
+  private def createSettings(key: Key): GrpcClientSettings = {
+    val settings = if (!isExternalService(key.service)) {
       // "service" is not present in the config, treat it as an Akka gRPC inter-service call
       log.debug("Creating gRPC client for Kalix service [{}:{}]", key.service, key.port)
       GrpcClientSettings
@@ -169,11 +604,11 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
       GrpcClientSettings.fromConfig(key.service)(system)
     }
 
-    val settingsWithCallCredentials = key.addHeader match {
-      case Some((key, value)) =>
+    key.addHeader match {
+      case Some((headerName, headerValue)) =>
         val headers = new Metadata()
-        headers.put(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER), value)
-        settings.withCallCredentials(new CallCredentials {
+        headers.put(Metadata.Key.of(headerName, Metadata.ASCII_STRING_MARSHALLER), headerValue)
+        withCallSettings(settings, key).withCallCredentials(new CallCredentials {
           override def applyRequestMetadata(
               requestInfo: CallCredentials.RequestInfo,
               appExecutor: Executor,
@@ -182,39 +617,36 @@ final class GrpcClients(system: ExtendedActorSystem) extends Extension {
           }
           override def thisUsesUnstableApi(): Unit = ()
         })
-      case None => settings
+      case None => withCallSettings(settings, key)
     }
+  }
 
+  private def createClient(key: Key, settings: GrpcClientSettings): AnyRef = {
     // expected to have a ServiceNameClient generated in the same package, so look that up through reflection
     val clientClass = system.dynamicAccess.getClassFor[AnyRef](key.serviceClass.getName + "Client").get
-    val client =
-      if (classOf[AkkaGrpcJavaClient].isAssignableFrom(clientClass)) {
-        // Java API - static create
-        val create = clientClass.getMethod("create", classOf[GrpcClientSettings], classOf[ClassicActorSystemProvider])
-        create.invoke(null, settingsWithCallCredentials, system)
-      } else if (classOf[AkkaGrpcScalaClient].isAssignableFrom(clientClass)) {
-        // Scala API - companion object apply
-        val companion = system.dynamicAccess.getObjectFor[AnyRef](key.serviceClass.getName + "Client").get
-        val create =
-          companion.getClass.getMethod("apply", classOf[GrpcClientSettings], classOf[ClassicActorSystemProvider])
-        create.invoke(companion, settingsWithCallCredentials, system)
-      } else {
-        throw new IllegalArgumentException(s"Expected an AkkaGrpcClient but was [${clientClass.getName}]")
-      }
-
-    val closeDone = client match {
-      case javaClient: AkkaGrpcJavaClient =>
-        javaClient.closed().asScala
-      case scalaClient: AkkaGrpcScalaClient =>
-        scalaClient.closed
-    }
-    closeDone.foreach { _ =>
-      // if the client is closed, remove it from the pool
-      log.debug("gRPC client for service [{}] was closed", key.service)
-      clients.remove(key)
+    if (classOf[AkkaGrpcJavaClient].isAssignableFrom(clientClass)) {
+      // Java API - static create
+      val create = clientClass.getMethod("create", classOf[GrpcClientSettings], classOf[ClassicActorSystemProvider])
+      create.invoke(null, settings, system)
+    } else if (classOf[AkkaGrpcScalaClient].isAssignableFrom(clientClass)) {
+      // Scala API - companion object apply
+      val companion = system.dynamicAccess.getObjectFor[AnyRef](key.serviceClass.getName + "Client").get
+      val create =
+        companion.getClass.getMethod("apply", classOf[GrpcClientSettings], classOf[ClassicActorSystemProvider])
+      create.invoke(companion, settings, system)
+    } else {
+      throw new IllegalArgumentException(s"Expected an AkkaGrpcClient but was [${clientClass.getName}]")
     }
+  }
+
+  private def close(client: AnyRef): Future[Done] = client match {
+    case javaClient: AkkaGrpcJavaClient   => javaClient.close().asScala
+    case scalaClient: AkkaGrpcScalaClient => scalaClient.close()
+  }
 
-    client
+  private def closed(client: AnyRef): Future[Done] = client match {
+    case javaClient: AkkaGrpcJavaClient   => javaClient.closed().asScala
+    case scalaClient: AkkaGrpcScalaClient => scalaClient.closed
   }
 
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl
+
+import java.lang.reflect.{ InvocationHandler, InvocationTargetException, Method, Proxy }
+import java.util.concurrent.{ CompletionStage, ConcurrentHashMap }
+
+import scala.jdk.CollectionConverters._
+import scala.jdk.FutureConverters._
+
+import kalix.javasdk.impl.action.ActionsImpl
+import kalix.javasdk.impl.telemetry.Tracing
+import kalix.protocol.component.MetadataEntry
+
+/**
+ * INTERNAL API
+ *
+ * Clients for the actions of this same service, that handle unary calls by invoking the action directly with the
+ * message instead of sending it out to the proxy and having it come back in. Actions have no consistency
+ * requirements, so it doesn't matter where they run. Streamed calls, and calls to actions that have an ACL the proxy
+ * would need to enforce, still go through the proxy.
+ */
+private[impl] final class LocalActionClients(actions: ActionsImpl, grpcClients: GrpcClients, tracing: Tracing) {
+
+  private val clients = new ConcurrentHashMap[Class[_], Option[AnyRef]]()
+
+  def clientFor[T](serviceClass: Class[T]): Option[T] =
+    clients.computeIfAbsent(serviceClass, _ => createClient(serviceClass)).asInstanceOf[Option[T]]
+
+  private def createClient(serviceClass: Class[_]): Option[AnyRef] =
+    grpcClients.serviceDescriptor(serviceClass).filter(service => actions.canHandleLocally(service)).map { service =>
+      // grpc generated method names are the lower camel case version of the proto method names
+      val unaryMethods = service.getMethods.asScala.collect {
+        case method if !method.isClientStreaming && !method.isServerStreaming =>
+          normalized(method.getName) -> method.getName
+      }.toMap
+      val serviceName = service.getFullName
+
+      Proxy.newProxyInstance(
+        serviceClass.getClassLoader,
+        Array(serviceClass),
+        new InvocationHandler {
+          override def invoke(proxy: AnyRef, method: Method, args: Array[AnyRef]): AnyRef =
+            unaryMethods.get(normalized(method.getName)) match {
+              case Some(methodName) if args != null && args.length == 1 =>
+                val reply = actions.handleLocalUnary(serviceName, methodName, args(0), localMetadata())
+                if (classOf[CompletionStage[_]].isAssignableFrom(method.getReturnType)) reply.asJava
+                else reply
+
+              case _ =>
+                // streamed calls and Object methods
+                try method.invoke(grpcClients.getProxyGrpcClient(serviceClass), Option(args).getOrElse(Array.empty): _*)
+                catch {
+                  case e: InvocationTargetException => throw e.getCause
+                }
+            }
+        })
+    }
+
+  // the metadata the proxy would have passed on for a call from this same service: the principal, and the trace
+  // context of the calling command that is added to the headers of calls made through the gRPC clients
+  private[impl] def localMetadata(): MetadataImpl = {
+    val entries = Vector.newBuilder[MetadataEntry]
+    grpcClients.getIdentificationInfo.map(_.selfDeploymentName).filter(_.nonEmpty).foreach { serviceName =>
+      entries += MetadataEntry(MetadataImpl.PrincipalsService, MetadataEntry.Value.StringValue(serviceName))
+    }
+    tracing.injectCurrentContext { (key, value) =>
+      entries += MetadataEntry(key, MetadataEntry.Value.StringValue(value))
+    }
+    val result = entries.result()
+    if (result.isEmpty) MetadataImpl.Empty else new MetadataImpl(result)
+  }
+
+  private def normalized(methodName: String): String =
+    methodName.replace("_", "").toLowerCase
+}
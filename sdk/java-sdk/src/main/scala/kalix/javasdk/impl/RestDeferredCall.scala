@@ -22,13 +22,17 @@ import java.util.concurrent.CompletionStage
 
 /**
  * INTERNAL API
+ *
+ * The message is only needed when the call is handed over to the proxy (forward, side effect or timer), so it is built
+ * on first access rather than when the call is created. Calls that are just executed never pay for it.
  */
 final case class RestDeferredCall[I, O](
-    message: I,
+    messageFactory: () => I,
     metadata: MetadataImpl,
     fullServiceName: String,
     methodName: String,
     asyncCall: () => CompletionStage[O])
     extends DeferredCall[I, O] {
+  override lazy val message: I = messageFactory()
   override def execute(): CompletionStage[O] = asyncCall()
 }
@@ -18,20 +18,29 @@ package kalix.javasdk.impl.action
 
 import java.util.Optional
 import scala.collection.immutable.Seq
+import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
-import scala.jdk.CollectionConverters.SeqHasAsJava
+import scala.jdk.CollectionConverters.{ ListHasAsScala, SeqHasAsJava }
+import scala.jdk.FutureConverters.CompletionStageOps
 import scala.util.control.NonFatal
+import akka.Done
 import akka.NotUsed
 import akka.actor.ActorSystem
 import akka.stream.scaladsl.Sink
 import akka.stream.scaladsl.Source
 import com.google.protobuf.any.Any
 import com.google.protobuf.{ Descriptors, DynamicMessage }
+import io.grpc.{ Status, StatusRuntimeException }
 import kalix.javasdk._
 import kalix.javasdk.action._
 import kalix.javasdk.impl.ActionFactory
 import kalix.javasdk.impl._
 import kalix.javasdk.impl.effect.SideEffectImpl
+import kalix.javasdk.impl.jfr.CommandHandledEvent
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.metrics.PayloadSizes
+import kalix.javasdk.impl.metrics.SlowHandlerWatchdog
+import kalix.javasdk.impl.telemetry.Tracing
 import kalix.protocol.action.ActionCommand
 import kalix.protocol.action.ActionResponse
 import kalix.protocol.action.Actions
@@ -84,12 +93,6 @@ final class ActionService(
 private[javasdk] object ActionsImpl {
   private[action] val log = LoggerFactory.getLogger(classOf[ActionsImpl])
 
-  private def handleUnexpectedException(service: ActionService, command: ActionCommand, ex: Throwable): ActionResponse =
-    ErrorHandling.withCorrelationId { correlationId =>
-      service.log.error(s"Failure during handling of command ${command.serviceName}.${command.name}", ex)
-      protocolFailure(correlationId)
-    }
-
   private def protocolFailure(correlationId: String): ActionResponse = {
     ActionResponse(ActionResponse.Response.Failure(Failure(0, s"Unexpected error [$correlationId]")))
   }
@@ -103,9 +106,21 @@ private[javasdk] final class ActionsImpl(
     extends Actions {
 
   import ActionsImpl._
+  import ComponentMetrics.ActionComponent
   import _system.dispatcher
   implicit val system: ActorSystem = _system
 
+  private val metrics = ComponentMetrics(system)
+  private val watchdog = SlowHandlerWatchdog(system)
+  private val tracing = Tracing(system)
+  private val failureLogging = FailureLogging(system)
+  private val payloadSizes = PayloadSizes(system)
+  private val messageCodecs =
+    services.map { case (name, service) => name -> payloadSizes.measured(service.messageCodec) }
+
+  private def codecFor(service: ActionService): MessageCodec =
+    messageCodecs.getOrElse(service.descriptor.getFullName, service.messageCodec)
+
   private object creationContext extends AbstractContext(system) with ActionCreationContext {
     override def getGrpcClient[T](clientClass: Class[T], service: String): T =
       GrpcClients(system).getGrpcClient(clientClass, service)
@@ -119,8 +134,8 @@ private[javasdk] final class ActionsImpl(
     import ActionEffectImpl._
     effect match {
       case ReplyEffect(message, metadata, sideEffects) =>
-        val response =
-          component.Reply(Some(messageCodec.encodeScala(message)), metadata.flatMap(toProtocol))
+        val encoded = metrics.timeEncode(command.serviceName)(messageCodec.encodeScala(message))
+        val response = component.Reply(Some(encoded), metadata.flatMap(toProtocol))
         Future.successful(
           ActionResponse(ActionResponse.Response.Reply(response), toProtocol(messageCodec, sideEffects)))
       case ForwardEffect(forward: GrpcDeferredCall[_, _], sideEffects) =>
@@ -140,14 +155,16 @@ private[javasdk] final class ActionsImpl(
         Future.successful(
           ActionResponse(ActionResponse.Response.Forward(response), toProtocol(messageCodec, sideEffects)))
       case AsyncEffect(futureEffect, sideEffects) =>
+        // no user code runs in these continuations, only mapping of the effect to a response,
+        // so run them on the completing thread rather than hopping over to the dispatcher
         futureEffect
           .flatMap { effect =>
             val withSurroundingSideEffects = effect.addSideEffects(sideEffects.asJava)
             effectToResponse(service, command, withSurroundingSideEffects, messageCodec)
-          }
+          }(ExecutionContext.parasitic)
           .recover { case NonFatal(ex) =>
             handleUnexpectedException(service, command, ex)
-          }
+          }(ExecutionContext.parasitic)
       case ErrorEffect(description, status, sideEffects) =>
         Future.successful(
           ActionResponse(
@@ -188,19 +205,51 @@ private[javasdk] final class ActionsImpl(
   override def handleUnary(in: ActionCommand): Future[ActionResponse] =
     services.get(in.serviceName) match {
       case Some(service) =>
-        try {
-          val context = createContext(in, service.messageCodec)
-          val decodedPayload = service.messageCodec.decodeMessage(
-            in.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
-          val effect = service.factory
-            .create(creationContext)
-            .handleUnary(in.name, MessageEnvelope.of(decodedPayload, context.metadata()), context)
-          effectToResponse(service, in, effect, service.messageCodec)
-        } catch {
-          case NonFatal(ex) =>
-            // command handler threw an "unexpected" error
-            Future.successful(handleUnexpectedException(service, in, ex))
-        }
+        val startTime = metrics.startTime()
+        val commandEvent = CommandHandledEvent.start()
+        val span = tracing.startCommandSpan(ActionComponent, in.serviceName, in.name, in.metadata)
+        val response =
+          try {
+            val context = createContext(in, codecFor(service))
+            val decodedPayload = span.child("decode") {
+              metrics.timeDecode(in.serviceName) {
+                codecFor(service).decodeMessage(
+                  in.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
+              }
+            }
+            val runningHandler = watchdog.handlerStarted(ActionComponent, in.serviceName, null, in.name)
+            val effect =
+              try {
+                span.child("handle") {
+                  service.factory
+                    .create(creationContext)
+                    .handleUnary(in.name, MessageEnvelope.of(decodedPayload, context.metadata()), context)
+                }
+              } finally {
+                runningHandler.finished()
+              }
+            span.child("encode")(effectToResponse(service, in, effect, codecFor(service)))
+          } catch {
+            case NonFatal(ex) =>
+              // command handler threw an "unexpected" error
+              Future.successful(handleUnexpectedException(service, in, ex))
+          }
+        if (metrics.enabled || commandEvent.isEnabled || tracing.enabled)
+          response.foreach { reply =>
+            val failed = reply.response.isFailure
+            metrics.commandProcessed(ActionComponent, in.serviceName, in.name, startTime, failed)
+            commandEvent.finish(ActionComponent, in.serviceName, in.name, 0, failed)
+            span.end(failed)
+          }(ExecutionContext.parasitic)
+        if (!tracing.enabled) response
+        else
+          response.map { reply =>
+            val withForward = reply.response match {
+              case ActionResponse.Response.Forward(forward) => reply.withForward(span.injectInto(forward))
+              case _                                        => reply
+            }
+            withForward.withSideEffects(span.injectInto(reply.sideEffects))
+          }(ExecutionContext.parasitic)
       case None =>
         Future.successful(
           ActionResponse(ActionResponse.Response.Failure(Failure(0, "Unknown service: " + in.serviceName))))
@@ -234,12 +283,12 @@ private[javasdk] final class ActionsImpl(
                     call.name,
                     messages.map { message =>
                       val metadata = new MetadataImpl(message.metadata.map(_.entries.toVector).getOrElse(Nil))
-                      val decodedPayload = service.messageCodec.decodeMessage(
+                      val decodedPayload = codecFor(service).decodeMessage(
                         message.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
                       MessageEnvelope.of(decodedPayload, metadata)
                     }.asJava,
-                    createContext(call, service.messageCodec))
-                effectToResponse(service, call, effect, service.messageCodec)
+                    createContext(call, codecFor(service)))
+                effectToResponse(service, call, effect, codecFor(service))
               } catch {
                 case NonFatal(ex) =>
                   // command handler threw an "unexpected" error
@@ -262,14 +311,14 @@ private[javasdk] final class ActionsImpl(
     services.get(in.serviceName) match {
       case Some(service) =>
         try {
-          val context = createContext(in, service.messageCodec)
-          val decodedPayload = service.messageCodec.decodeMessage(
+          val context = createContext(in, codecFor(service))
+          val decodedPayload = codecFor(service).decodeMessage(
             in.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
           service.factory
             .create(creationContext)
             .handleStreamedOut(in.name, MessageEnvelope.of(decodedPayload, context.metadata()), context)
             .asScala
-            .mapAsync(1)(effect => effectToResponse(service, in, effect, service.messageCodec))
+            .mapAsync(1)(effect => effectToResponse(service, in, effect, codecFor(service)))
             .recover { case NonFatal(ex) =>
               // user stream failed with an "unexpected" error
               handleUnexpectedException(service, in, ex)
@@ -313,13 +362,13 @@ private[javasdk] final class ActionsImpl(
                     call.name,
                     messages.map { message =>
                       val metadata = new MetadataImpl(message.metadata.map(_.entries.toVector).getOrElse(Nil))
-                      val decodedPayload = service.messageCodec.decodeMessage(
+                      val decodedPayload = codecFor(service).decodeMessage(
                         message.payload.getOrElse(throw new IllegalArgumentException("No command payload")))
                       MessageEnvelope.of(decodedPayload, metadata)
                     }.asJava,
-                    createContext(call, service.messageCodec))
+                    createContext(call, codecFor(service)))
                   .asScala
-                  .mapAsync(1)(effect => effectToResponse(service, call, effect, service.messageCodec))
+                  .mapAsync(1)(effect => effectToResponse(service, call, effect, codecFor(service)))
                   .recover { case NonFatal(ex) =>
                     // user stream failed with an "unexpected" error
                     handleUnexpectedException(service, call, ex)
@@ -327,10 +376,7 @@ private[javasdk] final class ActionsImpl(
               } catch {
                 case NonFatal(ex) =>
                   // command handler threw an "unexpected" error
-                  ErrorHandling.withCorrelationId { correlationId =>
-                    service.log.error(s"Failure during handling of command ${call.serviceName}.${call.name}", ex)
-                    Source.single(protocolFailure(correlationId))
-                  }
+                  Source.single(handleUnexpectedException(service, call, ex))
               }
             case None =>
               Source.single(
@@ -338,6 +384,149 @@ private[javasdk] final class ActionsImpl(
           }
       }
 
+  /**
+   * Whether calls to the given service can be handled in process, that is if it is an action of this service without
+   * any ACL, since those are enforced by the proxy.
+   */
+  private[javasdk] def canHandleLocally(descriptor: Descriptors.ServiceDescriptor): Boolean =
+    services.get(descriptor.getFullName).exists { service =>
+      val serviceDescriptor = service.descriptor
+      !serviceDescriptor.getFile.getOptions.getExtension(kalix.Annotations.file).hasAcl &&
+      !serviceDescriptor.getOptions.getExtension(kalix.Annotations.service).hasAcl &&
+      !serviceDescriptor.getMethods.asScala.exists(_.getOptions.getExtension(kalix.Annotations.method).hasAcl)
+    }
+
+  /**
+   * Handle a unary call from another component of this service in process, with the message as is rather than encoded
+   * into a command. Replies with the message of the reply, or fails with a `StatusRuntimeException` like the call
+   * through the proxy would. Measured, traced and watched for slow handling like the commands coming from the proxy,
+   * without the decode and encode steps.
+   */
+  private[javasdk] def handleLocalUnary(
+      serviceName: String,
+      methodName: String,
+      message: scala.Any,
+      metadata: MetadataImpl): Future[scala.Any] =
+    services.get(serviceName) match {
+      case Some(service) =>
+        val startTime = metrics.startTime()
+        val commandEvent = CommandHandledEvent.start()
+        val span =
+          tracing.startCommandSpan(ActionComponent, serviceName, methodName, Some(component.Metadata(metadata.entries)))
+        val reply =
+          try {
+            val context = new ActionContextImpl(metadata, codecFor(service), system)
+            val runningHandler = watchdog.handlerStarted(ActionComponent, serviceName, null, methodName)
+            val effect =
+              try {
+                span.child("handle") {
+                  service.factory
+                    .create(creationContext)
+                    .handleUnary(methodName, MessageEnvelope.of(message, metadata), context)
+                }
+              } finally {
+                runningHandler.finished()
+              }
+            effectToLocalReply(service, serviceName, methodName, effect)
+          } catch {
+            case NonFatal(ex) =>
+              Future.failed(handleUnexpectedLocalException(service, serviceName, methodName, ex))
+          }
+        if (metrics.enabled || commandEvent.isEnabled || tracing.enabled)
+          reply.onComplete { result =>
+            val failed = result.isFailure
+            metrics.commandProcessed(ActionComponent, serviceName, methodName, startTime, failed)
+            commandEvent.finish(ActionComponent, serviceName, methodName, 0, failed)
+            span.end(failed)
+          }(ExecutionContext.parasitic)
+        reply
+      case None =>
+        Future.failed(new StatusRuntimeException(Status.NOT_FOUND.withDescription("Unknown service: " + serviceName)))
+    }
+
+  private def effectToLocalReply(
+      service: ActionService,
+      serviceName: String,
+      methodName: String,
+      effect: Action.Effect[_]): Future[scala.Any] = {
+    import ActionEffectImpl._
+    effect match {
+      case ReplyEffect(message, _, sideEffects) =>
+        runSideEffects(sideEffects).map(_ => message)
+      case ForwardEffect(forward, sideEffects) =>
+        runSideEffects(sideEffects).flatMap(_ => forward.execute().asScala)
+      case AsyncEffect(futureEffect, sideEffects) =>
+        // like for the proxy, only mapping of the effect runs in these continuations, not user code
+        futureEffect
+          .flatMap { effect =>
+            effectToLocalReply(service, serviceName, methodName, effect.addSideEffects(sideEffects.asJava))
+          }(ExecutionContext.parasitic)
+          .recoverWith {
+            case ex: StatusRuntimeException => Future.failed(ex)
+            case NonFatal(ex) =>
+              Future.failed(handleUnexpectedLocalException(service, serviceName, methodName, ex))
+          }(ExecutionContext.parasitic)
+      case ErrorEffect(description, status, sideEffects) =>
+        runSideEffects(sideEffects).flatMap { _ =>
+          val grpcStatus = Status.fromCode(status.getOrElse(Status.Code.UNKNOWN)).withDescription(description)
+          Future.failed(new StatusRuntimeException(grpcStatus))
+        }
+      case IgnoreEffect =>
+        // the proxy turns an ignore in reply to a regular call into a not found response
+        Future.failed(new StatusRuntimeException(Status.NOT_FOUND))
+      case unknown =>
+        val ex = new IllegalArgumentException(s"Unknown Action.Effect type ${unknown.getClass}")
+        Future.failed(handleUnexpectedLocalException(service, serviceName, methodName, ex))
+    }
+  }
+
+  // synchronous side effects are executed before replying and asynchronous ones after, as the proxy does
+  private def runSideEffects(sideEffects: Seq[SideEffect]): Future[Done] = {
+    val (synchronous, asynchronous) = sideEffects.partition(_.synchronous())
+    val synchronousDone = synchronous.foldLeft(Future.successful[scala.Any](Done)) { (previous, sideEffect) =>
+      previous.flatMap(_ => sideEffect.call().execute().asScala)
+    }
+    synchronousDone.map { _ =>
+      asynchronous.foreach { sideEffect =>
+        sideEffect.call().execute().asScala.failed.foreach { ex =>
+          log.warn(s"Side effect call to [${sideEffect.call()}] failed", ex)
+        }
+      }
+      Done
+    }
+  }
+
+  private def handleUnexpectedException(service: ActionService, command: ActionCommand, ex: Throwable): ActionResponse =
+    ErrorHandling.withCorrelationId { correlationId =>
+      logUnexpectedException(service, command.serviceName, command.name, ex, correlationId)
+      protocolFailure(correlationId)
+    }
+
+  private def handleUnexpectedLocalException(
+      service: ActionService,
+      serviceName: String,
+      methodName: String,
+      ex: Throwable): StatusRuntimeException =
+    ErrorHandling.withCorrelationId { correlationId =>
+      logUnexpectedException(service, serviceName, methodName, ex, correlationId)
+      new StatusRuntimeException(Status.UNKNOWN.withDescription(s"Unexpected error [$correlationId]"))
+    }
+
+  private def logUnexpectedException(
+      service: ActionService,
+      serviceName: String,
+      methodName: String,
+      ex: Throwable,
+      correlationId: String): Unit =
+    failureLogging.logFailure(
+      service.log,
+      ActionComponent,
+      serviceName,
+      methodName,
+      ex,
+      correlationId,
+      s"Failure during handling of command $serviceName.$methodName")
+
   private def createContext(in: ActionCommand, messageCodec: MessageCodec): ActionContext = {
     val metadata = new MetadataImpl(in.metadata.map(_.entries.toVector).getOrElse(Nil))
     new ActionContextImpl(metadata, messageCodec, system)
@@ -27,6 +27,14 @@ import kalix.javasdk.impl.effect.EffectSupport
 import kalix.javasdk.impl.effect.ErrorReplyImpl
 import kalix.javasdk.impl.effect.MessageReplyImpl
 import kalix.javasdk.impl.effect.SecondaryEffectImpl
+import kalix.javasdk.impl.jfr.CommandHandledEvent
+import kalix.javasdk.impl.jfr.EntityActivationEvent
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.metrics.EntityInventory
+import kalix.javasdk.impl.metrics.HotKeyTracker
+import kalix.javasdk.impl.metrics.PayloadSizes
+import kalix.javasdk.impl.metrics.SlowHandlerWatchdog
+import kalix.javasdk.impl.telemetry.Tracing
 import kalix.javasdk.impl.eventsourcedentity.EventSourcedEntityRouter.CommandResult
 import kalix.javasdk.Context
 import kalix.javasdk.Metadata
@@ -96,15 +104,26 @@ final class EventSourcedEntitiesImpl(
     _services: Map[String, EventSourcedEntityService],
     configuration: Configuration)
     extends EventSourcedEntities {
+  import ComponentMetrics.EventSourcedEntityComponent
   import EntityExceptions._
 
   private val log = LoggerFactory.getLogger(this.getClass)
+  private val metrics = ComponentMetrics(system)
+  private val hotKeys = HotKeyTracker(system)
+  private val entityInventory = EntityInventory(system)
+  private val watchdog = SlowHandlerWatchdog(system)
+  private val tracing = Tracing(system)
+  private val failureLogging = FailureLogging(system)
+  private val recoveryProfiler = RecoveryProfiler(system)
+  private val payloadSizes = PayloadSizes(system)
   private final val services = _services.iterator.map { case (name, service) =>
     if (service.snapshotEvery < 0)
       log.warn("Snapshotting disabled for entity [{}], this is not recommended.", service.entityType)
     // FIXME overlay configuration provided by _system
     (name, if (service.snapshotEvery == 0) service.withSnapshotEvery(configuration.snapshotEvery) else service)
   }.toMap
+  private val messageCodecs =
+    services.map { case (name, service) => name -> payloadSizes.measured(service.messageCodec) }
 
   /**
    * The stream. One stream will be established per active entity. Once established, the first message sent will be
@@ -133,107 +152,165 @@ final class EventSourcedEntitiesImpl(
       .recover { case error =>
         // only "unexpected" exceptions should end up here
         ErrorHandling.withCorrelationId { correlationId =>
-          log.error(failureMessageForLog(error), error)
+          val message = failureMessageForLog(error)
+          failureLogging.logFailure(log, EventSourcedEntityComponent, "", "", error, correlationId, message)
           EventSourcedStreamOut(OutFailure(Failure(description = s"Unexpected failure [$correlationId]")))
         }
       }
 
   private def runEntity(init: EventSourcedInit): Flow[EventSourcedStreamIn, EventSourcedStreamOut, NotUsed] = {
+    val recoveryStartTime = recoveryProfiler.startTime()
     val service =
       services.getOrElse(init.serviceName, throw ProtocolException(init, s"Service not found: ${init.serviceName}"))
+    val messageCodec = messageCodecs(init.serviceName)
     val handler = service.factory
       .create(new EventSourcedEntityContextImpl(init.entityId))
       .asInstanceOf[EventSourcedEntityRouter[Any, EventSourcedEntity[Any]]]
     val thisEntityId = init.entityId
+    // the recovery is completed when the first command arrives, once the snapshot and all events have been applied
+    var recovering = true
+    val activationEvent = EntityActivationEvent.start()
+    var eventsReplayed = 0L
+    val snapshotSize = init.snapshot.flatMap(_.snapshot).map(_.value.size.toLong).getOrElse(0L)
+    var bytesDecoded = snapshotSize
 
     val startingSequenceNumber = (for {
       snapshot <- init.snapshot
       any <- snapshot.snapshot
     } yield {
       val snapshotSequence = snapshot.snapshotSequence
-      handler._internalHandleSnapshot(service.messageCodec.decodeMessage(any))
+      handler._internalHandleSnapshot(messageCodec.decodeMessage(any))
       snapshotSequence
     }).getOrElse(0L)
 
-    Flow[EventSourcedStreamIn]
+    val entityFlow = Flow[EventSourcedStreamIn]
       .map(_.message)
       .scan[(Long, Option[EventSourcedStreamOut.Message])]((startingSequenceNumber, None)) {
         case (_, InEvent(event)) =>
           // Note that these only come on replay
           val context = new EventContextImpl(thisEntityId, event.sequence)
+          val payload = event.payload.get
           val ev =
-            service.messageCodec
-              .decodeMessage(event.payload.get)
+            messageCodec
+              .decodeMessage(payload)
               .asInstanceOf[AnyRef] // FIXME empty?
           handler._internalHandleEvent(ev, context)
+          eventsReplayed += 1
+          bytesDecoded += payload.value.size
           (event.sequence, None)
         case ((sequence, _), InCommand(command)) =>
           if (thisEntityId != command.entityId)
             throw ProtocolException(command, "Receiving entity is not the intended recipient of command")
+          if (recovering) {
+            recovering = false
+            activationEvent.finish(service.entityType, thisEntityId, eventsReplayed, snapshotSize)
+            recoveryProfiler
+              .recovered(service.entityType, thisEntityId, eventsReplayed, bytesDecoded, recoveryStartTime)
+          }
 
-          val cmd =
-            service.messageCodec.decodeMessage(
-              command.payload.getOrElse(throw ProtocolException(command, "No command payload")))
-          val metadata = new MetadataImpl(command.metadata.map(_.entries.toVector).getOrElse(Nil))
-          val context =
-            new CommandContextImpl(thisEntityId, sequence, command.name, command.id, metadata)
-
-          val CommandResult(
-            events: Vector[Any],
-            secondaryEffect: SecondaryEffectImpl,
-            snapshot: Option[Any],
-            endSequenceNumber) =
-            try {
-              handler._internalHandleCommand(
-                command.name,
-                cmd,
-                context,
-                service.snapshotEvery,
-                seqNr => new EventContextImpl(thisEntityId, seqNr))
-            } catch {
-              case e: EntityException => throw e
-              case NonFatal(error) =>
-                throw EntityException(command, s"Unexpected failure: $error", Some(error))
-            } finally {
-              context.deactivate() // Very important!
+          hotKeys.commandReceived(service.entityType, thisEntityId)
+          val startTime = metrics.startTime()
+          val commandEvent = CommandHandledEvent.start()
+          val span =
+            tracing.startCommandSpan(EventSourcedEntityComponent, init.serviceName, command.name, command.metadata)
+          // recorded once for the command, whether it replies or fails at any point of the processing
+          var processed = false
+          def commandProcessed(failed: Boolean, eventsEmitted: Int = 0): Unit =
+            if (!processed) {
+              processed = true
+              metrics.commandProcessed(EventSourcedEntityComponent, init.serviceName, command.name, startTime, failed)
+              commandEvent.finish(EventSourcedEntityComponent, init.serviceName, command.name, eventsEmitted, failed)
+              span.end(failed)
             }
+          try {
+            val cmd = span.child("decode") {
+              metrics.timeDecode(init.serviceName) {
+                messageCodec.decodeMessage(
+                  command.payload.getOrElse(throw ProtocolException(command, "No command payload")))
+              }
+            }
+            val metadata = new MetadataImpl(command.metadata.map(_.entries.toVector).getOrElse(Nil))
+            val context =
+              new CommandContextImpl(thisEntityId, sequence, command.name, command.id, metadata)
 
-          val serializedSecondaryEffect = secondaryEffect match {
-            case MessageReplyImpl(message, metadata, sideEffects) =>
-              MessageReplyImpl(service.messageCodec.encodeJava(message), metadata, sideEffects)
-            case other => other
-          }
+            val runningHandler =
+              watchdog.handlerStarted(EventSourcedEntityComponent, init.serviceName, thisEntityId, command.name)
+            val CommandResult(
+              events: Vector[Any],
+              secondaryEffect: SecondaryEffectImpl,
+              snapshot: Option[Any],
+              endSequenceNumber) =
+              try {
+                span.child("handle") {
+                  handler._internalHandleCommand(
+                    command.name,
+                    cmd,
+                    context,
+                    service.snapshotEvery,
+                    seqNr => new EventContextImpl(thisEntityId, seqNr))
+                }
+              } catch {
+                case e: EntityException =>
+                  throw e
+                case NonFatal(error) =>
+                  throw EntityException(command, s"Unexpected failure: $error", Some(error))
+              } finally {
+                runningHandler.finished()
+                context.deactivate() // Very important!
+              }
 
-          val clientAction =
-            serializedSecondaryEffect.replyToClientAction(service.messageCodec, command.id)
+            val serializedSecondaryEffect = secondaryEffect match {
+              case MessageReplyImpl(message, metadata, sideEffects) =>
+                val encoded = span.child("encode") {
+                  metrics.timeEncode(init.serviceName)(messageCodec.encodeJava(message))
+                }
+                MessageReplyImpl(encoded, metadata, sideEffects)
+              case other => other
+            }
+
+            val clientAction =
+              span.injectInto(serializedSecondaryEffect.replyToClientAction(messageCodec, command.id))
 
-          serializedSecondaryEffect match {
-            case error: ErrorReplyImpl[_] =>
-              (
-                endSequenceNumber,
-                Some(OutReply(EventSourcedReply(commandId = command.id, clientAction = clientAction))))
+            serializedSecondaryEffect match {
+              case error: ErrorReplyImpl[_] =>
+                commandProcessed(failed = true)
+                (
+                  endSequenceNumber,
+                  Some(OutReply(EventSourcedReply(commandId = command.id, clientAction = clientAction))))
 
-            case _ => // non-error
-              val serializedEvents =
-                events.map(event => ScalaPbAny.fromJavaProto(service.messageCodec.encodeJava(event)))
-              val serializedSnapshot =
-                snapshot.map(state => ScalaPbAny.fromJavaProto(service.messageCodec.encodeJava(state)))
-              (
-                endSequenceNumber,
-                Some(
+              case _ => // non-error
+                val serializedEvents = span.child("encode-events") {
+                  metrics.timeEncode(init.serviceName) {
+                    events.map(event => ScalaPbAny.fromJavaProto(messageCodec.encodeJava(event)))
+                  }
+                }
+                serializedEvents.foreach(
+                  payloadSizes.checkSize(PayloadSizes.EventPayload, service.entityType, thisEntityId, _))
+                val serializedSnapshot =
+                  snapshot.map(state => ScalaPbAny.fromJavaProto(messageCodec.encodeJava(state)))
+                serializedSnapshot.foreach(
+                  payloadSizes.checkSize(PayloadSizes.SnapshotPayload, service.entityType, thisEntityId, _))
+                val reply =
                   OutReply(
                     EventSourcedReply(
                       command.id,
                       clientAction,
-                      EffectSupport.sideEffectsFrom(service.messageCodec, serializedSecondaryEffect),
+                      span.injectInto(EffectSupport.sideEffectsFrom(messageCodec, serializedSecondaryEffect)),
                       serializedEvents,
-                      serializedSnapshot))))
+                      serializedSnapshot))
+                commandProcessed(failed = false, eventsEmitted = events.size)
+                (endSequenceNumber, Some(reply))
+            }
+          } catch {
+            case NonFatal(error) =>
+              commandProcessed(failed = true)
+              throw error
           }
         case ((sequence, _), InSnapshotRequest(request)) =>
           val reply =
             EventSourcedSnapshotReply(
               request.requestId,
-              Some(service.messageCodec.encodeScala(handler._stateOrEmpty())))
+              Some(messageCodec.encodeScala(handler._stateOrEmpty())))
           (sequence, Some(OutSnapshotReply(reply)))
         case (_, InInit(_)) =>
           throw ProtocolException(init, "Entity already inited")
@@ -246,11 +323,19 @@ final class EventSourcedEntitiesImpl(
       .recover { case error =>
         // only "unexpected" exceptions should end up here
         ErrorHandling.withCorrelationId { correlationId =>
-          LoggerFactory.getLogger(handler.entityClass).error(failureMessageForLog(error), error)
+          val entityLog = LoggerFactory.getLogger(handler.entityClass)
+          val message = failureMessageForLog(error)
+          failureLogging
+            .logFailure(entityLog, EventSourcedEntityComponent, init.serviceName, "", error, correlationId, message)
           EventSourcedStreamOut(OutFailure(Failure(description = s"Unexpected failure [$correlationId]")))
         }
       }
       .async
+
+    entityInventory.track(
+      EventSourcedEntityComponent,
+      service.entityType,
+      metrics.activeEntity(init.serviceName, entityFlow))
   }
 
   private class CommandContextImpl(
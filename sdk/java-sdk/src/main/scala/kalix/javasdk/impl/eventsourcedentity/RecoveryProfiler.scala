@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.eventsourcedentity
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{ AtomicLong, LongAdder }
+
+import javax.management.ObjectName
+
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+import scala.jdk.DurationConverters._
+import scala.util.control.NonFatal
+
+import akka.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import akka.actor.ExtensionIdProvider
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+object RecoveryProfiler extends ExtensionId[RecoveryProfiler] with ExtensionIdProvider {
+  override def get(system: ActorSystem): RecoveryProfiler = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): RecoveryProfiler = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): RecoveryProfiler =
+    new RecoveryProfiler(system)
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  // upper bounds of the buckets for the number of events replayed, the last bucket is for anything above
+  private val EventsBucketBounds: Array[Long] = Array(0, 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000)
+  // upper bounds of the buckets for the recovery time, in milliseconds
+  private val TimeBucketBoundsMillis: Array[Long] = Array(1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000)
+
+  final case class Recovery(entityId: String, eventsReplayed: Long, bytesDecoded: Long, durationNanos: Long) {
+    def durationMillis: Double = durationNanos / 1e6
+
+    override def toString: String =
+      f"[$entityId]: $eventsReplayed events, $bytesDecoded bytes, $durationMillis%.1f ms"
+  }
+
+  final class BucketHistogram(bounds: Array[Long]) {
+    private val buckets = Array.fill(bounds.length + 1)(new LongAdder)
+
+    def record(value: Long): Unit = {
+      var index = 0
+      while (index < bounds.length && value > bounds(index)) index += 1
+      buckets(index).increment()
+    }
+
+    /** The count of values in each bucket, keyed by the bucket upper bound */
+    def counts: java.util.Map[String, java.lang.Long] = {
+      val result = new java.util.LinkedHashMap[String, java.lang.Long]()
+      var index = 0
+      while (index < buckets.length) {
+        val label = if (index < bounds.length) "<=" + bounds(index) else ">" + bounds.last
+        result.put(label, buckets(index).sum())
+        index += 1
+      }
+      result
+    }
+  }
+
+  /**
+   * The attributes exposed over JMX for each event sourced entity type, registered as
+   * `kalix:type=EntityRecovery,entityType=<entity type>`.
+   */
+  trait EntityTypeRecoveryMXBean {
+    def getRecoveries: Long
+    def getEventsReplayed: Long
+    def getBytesDecoded: Long
+    def getMaxEventsReplayed: Long
+    def getMeanRecoveryTimeMillis: Double
+    def getMaxRecoveryTimeMillis: Double
+    def getEventsReplayedHistogram: java.util.Map[String, java.lang.Long]
+    def getRecoveryTimeMillisHistogram: java.util.Map[String, java.lang.Long]
+    def getWorstRecoveries: Array[String]
+  }
+
+  final class EntityTypeRecovery(topN: Int) extends EntityTypeRecoveryMXBean {
+    private val recoveries = new LongAdder
+    private val eventsReplayed = new LongAdder
+    private val bytesDecoded = new LongAdder
+    private val durationNanos = new LongAdder
+    private val maxEventsReplayed = new AtomicLong
+    private val maxDurationNanos = new AtomicLong
+    private val eventsHistogram = new BucketHistogram(EventsBucketBounds)
+    private val timeHistogram = new BucketHistogram(TimeBucketBoundsMillis)
+
+    // the slowest recoveries, slowest first, at most one per entity id
+    private var worst = Vector.empty[Recovery]
+    // the duration a recovery must exceed to make it into the worst ones, to avoid locking for most recoveries
+    @volatile private var worstThresholdNanos = -1L
+
+    def record(recovery: Recovery): Unit = {
+      recoveries.increment()
+      eventsReplayed.add(recovery.eventsReplayed)
+      bytesDecoded.add(recovery.bytesDecoded)
+      durationNanos.add(recovery.durationNanos)
+      maxEventsReplayed.accumulateAndGet(recovery.eventsReplayed, (a, b) => Math.max(a, b))
+      maxDurationNanos.accumulateAndGet(recovery.durationNanos, (a, b) => Math.max(a, b))
+      eventsHistogram.record(recovery.eventsReplayed)
+      timeHistogram.record(recovery.durationNanos / 1000000)
+      if (topN > 0 && recovery.durationNanos > worstThresholdNanos) updateWorst(recovery)
+    }
+
+    private def updateWorst(recovery: Recovery): Unit = synchronized {
+      val previous = worst.find(_.entityId == recovery.entityId)
+      if (previous.forall(_.durationNanos < recovery.durationNanos)) {
+        worst = (recovery +: worst.filterNot(_.entityId == recovery.entityId))
+          .sortBy(-_.durationNanos)
+          .take(topN)
+        if (worst.size == topN) worstThresholdNanos = worst.last.durationNanos
+      }
+    }
+
+    def worstRecoveries: Vector[Recovery] = synchronized(worst)
+
+    override def getRecoveries: Long = recoveries.sum()
+    override def getEventsReplayed: Long = eventsReplayed.sum()
+    override def getBytesDecoded: Long = bytesDecoded.sum()
+    override def getMaxEventsReplayed: Long = maxEventsReplayed.get()
+    override def getMeanRecoveryTimeMillis: Double = {
+      val count = recoveries.sum()
+      if (count == 0) 0.0 else durationNanos.sum() / 1e6 / count
+    }
+    override def getMaxRecoveryTimeMillis: Double = maxDurationNanos.get() / 1e6
+    override def getEventsReplayedHistogram: java.util.Map[String, java.lang.Long] = eventsHistogram.counts
+    override def getRecoveryTimeMillisHistogram: java.util.Map[String, java.lang.Long] = timeHistogram.counts
+    override def getWorstRecoveries: Array[String] = worstRecoveries.map(_.toString).toArray
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Measures the recovery of event sourced entities, from the init message until the first command, when enabled with
+ * `kalix.event-sourced-entity.recovery-profiler.enabled`. The number of events replayed, bytes decoded and the time
+ * it took are kept per entity type, along with the slowest recoveries, and exposed over JMX and in a periodic log
+ * summary, to help choosing `snapshot-every`.
+ */
+final class RecoveryProfiler(system: ExtendedActorSystem) extends Extension {
+  import RecoveryProfiler._
+
+  private val log = LoggerFactory.getLogger(classOf[RecoveryProfiler])
+  private val config = system.settings.config.getConfig("kalix.event-sourced-entity.recovery-profiler")
+
+  val enabled: Boolean = config.getBoolean("enabled")
+  private val topN = config.getInt("top-n")
+  private val logInterval = config.getDuration("log-interval").toScala
+
+  private val entityTypes = new ConcurrentHashMap[String, EntityTypeRecovery]()
+  private val registeredMBeans = new ConcurrentHashMap[String, ObjectName]()
+  private val recoveriesAtLastSummary = new ConcurrentHashMap[String, java.lang.Long]()
+
+  if (enabled) {
+    if (logInterval > Duration.Zero)
+      system.scheduler.scheduleWithFixedDelay(logInterval, logInterval)(() => logSummary())(system.dispatcher)
+    system.registerOnTermination(unregisterMBeans())
+  }
+
+  /** The start time to pass to [[recovered]] */
+  def startTime(): Long = if (enabled) System.nanoTime() else 0L
+
+  def recovered(entityType: String, entityId: String, eventsReplayed: Long, bytesDecoded: Long, startTime: Long): Unit =
+    if (enabled)
+      entityTypeRecovery(entityType).record(
+        Recovery(entityId, eventsReplayed, bytesDecoded, System.nanoTime() - startTime))
+
+  def stats(entityType: String): Option[EntityTypeRecovery] =
+    Option(entityTypes.get(entityType))
+
+  private def entityTypeRecovery(entityType: String): EntityTypeRecovery = {
+    val existing = entityTypes.get(entityType)
+    if (existing ne null) existing
+    else
+      entityTypes.computeIfAbsent(
+        entityType,
+        { key =>
+          val recovery = new EntityTypeRecovery(topN)
+          registerMBean(key, recovery)
+          recovery
+        })
+  }
+
+  private def registerMBean(entityType: String, recovery: EntityTypeRecovery): Unit =
+    try {
+      val name = new ObjectName(s"kalix:type=EntityRecovery,entityType=${ObjectName.quote(entityType)}")
+      ManagementFactory.getPlatformMBeanServer.registerMBean(recovery, name)
+      registeredMBeans.put(entityType, name)
+    } catch {
+      case NonFatal(ex) =>
+        log.warn("Failed to register the recovery profiler MBean for entity type [{}]: {}", entityType, ex.toString)
+    }
+
+  private def unregisterMBeans(): Unit =
+    registeredMBeans.values.asScala.foreach { name =>
+      try ManagementFactory.getPlatformMBeanServer.unregisterMBean(name)
+      catch {
+        case NonFatal(_) => // already gone
+      }
+    }
+
+  private def logSummary(): Unit =
+    entityTypes.asScala.foreach { case (entityType, recovery) =>
+      val recoveries = recovery.getRecoveries
+      val previous: Long = recoveriesAtLastSummary.getOrDefault(entityType, 0L)
+      if (recoveries != previous) {
+        recoveriesAtLastSummary.put(entityType, recoveries)
+        log.info(
+          f"Recovery of entity type [$entityType]: $recoveries recoveries, ${recovery.getEventsReplayed} events " +
+          f"replayed (max ${recovery.getMaxEventsReplayed}), ${recovery.getBytesDecoded} bytes decoded, " +
+          f"mean ${recovery.getMeanRecoveryTimeMillis}%.1f ms (max ${recovery.getMaxRecoveryTimeMillis}%.1f ms), " +
+          s"slowest ${recovery.worstRecoveries.mkString(", ")}")
+      }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.duration._
+import scala.util.{ Failure, Success }
+
+import akka.NotUsed
+import akka.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import akka.actor.ExtensionIdProvider
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.model._
+import akka.stream.scaladsl.Flow
+import kalix.javasdk.metrics.MetricsRegistry
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+object ComponentMetrics extends ExtensionId[ComponentMetrics] with ExtensionIdProvider {
+  override def get(system: ActorSystem): ComponentMetrics = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): ComponentMetrics = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): ComponentMetrics =
+    new ComponentMetrics(system)
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  val ActionComponent = "action"
+  val EventSourcedEntityComponent = "event-sourced-entity"
+  val ValueEntityComponent = "value-entity"
+  val ReplicatedEntityComponent = "replicated-entity"
+  val ViewComponent = "view"
+
+  private val PrometheusContentType = ContentType(
+    MediaType.customWithFixedCharset("text", "plain", HttpCharsets.`UTF-8`, params = Map("version" -> "0.0.4")))
+}
+
+/**
+ * INTERNAL API
+ *
+ * Measurements of the commands handled by the components, when enabled with `kalix.metrics.enabled`. When disabled,
+ * none of the methods do anything beyond checking the flag.
+ */
+final class ComponentMetrics(system: ExtendedActorSystem) extends Extension {
+  import ComponentMetrics._
+
+  private val log = LoggerFactory.getLogger(classOf[ComponentMetrics])
+  private val config = system.settings.config.getConfig("kalix.metrics")
+
+  val enabled: Boolean = config.getBoolean("enabled")
+
+  val registry: MetricsRegistry =
+    config.getString("registry") match {
+      case "" => new DefaultMetricsRegistry
+      case className =>
+        system.dynamicAccess.createInstanceFor[MetricsRegistry](className, Nil).get
+    }
+
+  if (enabled) bindPrometheusEndpoint()
+
+  /** The start time to pass to [[commandProcessed]] */
+  def startTime(): Long = if (enabled) System.nanoTime() else 0L
+
+  def commandProcessed(
+      componentType: String,
+      serviceName: String,
+      commandName: String,
+      startTime: Long,
+      failed: Boolean): Unit =
+    if (enabled) registry.recordCommand(componentType, serviceName, commandName, System.nanoTime() - startTime, failed)
+
+  def timeDecode[T](serviceName: String)(decode: => T): T =
+    if (!enabled) decode
+    else {
+      val start = System.nanoTime()
+      val decoded = decode
+      registry.recordDecode(serviceName, System.nanoTime() - start)
+      decoded
+    }
+
+  def timeEncode[T](serviceName: String)(encode: => T): T =
+    if (!enabled) encode
+    else {
+      val start = System.nanoTime()
+      val encoded = encode
+      registry.recordEncode(serviceName, System.nanoTime() - start)
+      encoded
+    }
+
+  /** A GET call through the Spring SDK KalixClient was looked up in its GET request cache */
+  def getCacheLookup(pathPattern: String, outcome: String): Unit =
+    if (enabled) registry.recordGetCacheLookup(pathPattern, outcome)
+
+  /** A hedge was sent for a call to the given service */
+  def hedgeSent(service: String): Unit =
+    if (enabled) registry.hedgeSent(service)
+
+  /** The response of a hedge was used for a call to the given service */
+  def hedgeWon(service: String): Unit =
+    if (enabled) registry.hedgeWon(service)
+
+  /** A call to a downstream target was rejected by its circuit breaker or bulkhead */
+  def downstreamCallRejected(target: String, reason: String): Unit =
+    if (enabled) registry.downstreamCallRejected(target, reason)
+
+  def circuitBreakerStateChanged(target: String, state: String): Unit =
+    if (enabled) registry.circuitBreakerStateChanged(target, state)
+
+  /** Counts the entity as active from now until the flow running it completes */
+  def activeEntity[In, Out](serviceName: String, entityFlow: Flow[In, Out, NotUsed]): Flow[In, Out, NotUsed] =
+    if (!enabled) entityFlow
+    else {
+      registry.activeEntitiesChanged(serviceName, 1)
+      entityFlow.watchTermination() { (_, done) =>
+        done.onComplete(_ => registry.activeEntitiesChanged(serviceName, -1))(ExecutionContext.parasitic)
+        NotUsed
+      }
+    }
+
+  private def bindPrometheusEndpoint(): Unit = {
+    val port = config.getInt("prometheus.port")
+    registry match {
+      case _ if port <= 0 => // not enabled
+      case default: DefaultMetricsRegistry =>
+        val interface = config.getString("prometheus.interface")
+        implicit val classicSystem: ActorSystem = system
+        Http()
+          .newServerAt(interface, port)
+          .bindSync {
+            case HttpRequest(HttpMethods.GET, Uri.Path("/metrics"), _, _, _) =>
+              HttpResponse(entity = HttpEntity(PrometheusContentType, default.prometheusText()))
+            case _ =>
+              HttpResponse(StatusCodes.NotFound)
+          }
+          .map(_.addToCoordinatedShutdown(hardTerminationDeadline = 5.seconds))(ExecutionContext.parasitic)
+          .onComplete {
+            case Success(binding) =>
+              log.info("Prometheus metrics available at http://{}/metrics", binding.localAddress)
+            case Failure(ex) =>
+              log.error(s"Failed to bind the Prometheus metrics endpoint to [$interface:$port]", ex)
+          }(ExecutionContext.parasitic)
+      case other =>
+        log.warn(
+          "Prometheus metrics endpoint is only available with the default registry, not with [{}]",
+          other.getClass.getName)
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * INTERNAL API
+ *
+ * A count-min sketch estimating how many times each key was added, with a fixed memory of `depth * width` counters.
+ * Estimates are never below the actual count, and over estimate it by at most `e / width` of the total count, with
+ * probability `1 - e^-depth`. Safe to update from concurrent threads.
+ */
+final class CountMinSketch(val depth: Int, val width: Int) {
+  require(depth > 0, "depth must be positive")
+  require(width > 0 && Integer.bitCount(width) == 1, "width must be a power of two")
+
+  private val mask = width - 1
+  private val counters = new AtomicLongArray(depth * width)
+
+  /** Adds one occurrence of the key, and returns the estimated count for it including this occurrence */
+  def add(key: String): Long = {
+    val hash1 = CountMinSketch.mix(key.hashCode)
+    val hash2 = CountMinSketch.mix(hash1) | 1
+    var estimate = Long.MaxValue
+    var row = 0
+    while (row < depth) {
+      val count = counters.incrementAndGet(row * width + ((hash1 + row * hash2) & mask))
+      if (count < estimate) estimate = count
+      row += 1
+    }
+    estimate
+  }
+
+  def estimate(key: String): Long = {
+    val hash1 = CountMinSketch.mix(key.hashCode)
+    val hash2 = CountMinSketch.mix(hash1) | 1
+    var estimate = Long.MaxValue
+    var row = 0
+    while (row < depth) {
+      val count = counters.get(row * width + ((hash1 + row * hash2) & mask))
+      if (count < estimate) estimate = count
+      row += 1
+    }
+    estimate
+  }
+}
+
+/**
+ * INTERNAL API
+ */
+object CountMinSketch {
+
+  // the murmur3 finalizer, spreading the bits of the string hash codes which are poor in the low bits
+  private def mix(hash: Int): Int = {
+    var h = hash
+    h ^= h >>> 16
+    h *= 0x85ebca6b
+    h ^= h >>> 13
+    h *= 0xc2b2ae35
+    h ^= h >>> 16
+    h
+  }
+}
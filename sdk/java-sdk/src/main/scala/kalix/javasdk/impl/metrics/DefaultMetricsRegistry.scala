@@ -0,0 +1,366 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{ AtomicLong, LongAdder }
+
+import scala.jdk.CollectionConverters._
+
+import kalix.javasdk.metrics.MetricsRegistry
+
+/**
+ * INTERNAL API
+ */
+object DefaultMetricsRegistry {
+
+  // upper bounds of the histogram buckets in seconds, from 100µs to 10s
+  private val BucketBounds: Array[String] =
+    Array("0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5",
+      "1", "2.5", "5", "10")
+  private val BucketBoundsNanos: Array[Long] = BucketBounds.map(seconds => (seconds.toDouble * 1e9).toLong)
+
+  // upper bounds of the payload size histogram buckets in bytes, from 64 bytes to 4MiB
+  private val SizeBucketBoundsBytes: Array[Long] =
+    Array(64, 256, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304)
+  private val SizeBucketBounds: Array[String] = SizeBucketBoundsBytes.map(_.toString)
+
+  /**
+   * A histogram with fixed buckets, updates are a couple of adder increments, so it can be recorded from concurrent
+   * threads without contention. Durations are recorded in nanoseconds unless other bounds are given.
+   */
+  final class Histogram(bounds: Array[Long]) {
+    def this() = this(BucketBoundsNanos)
+
+    // the last bucket is for values above the largest bound
+    private val buckets = Array.fill(bounds.length + 1)(new LongAdder)
+    private val sumValues = new LongAdder
+
+    def record(value: Long): Unit = {
+      var index = 0
+      while (index < bounds.length && value > bounds(index)) index += 1
+      buckets(index).increment()
+      sumValues.add(value)
+    }
+
+    /** The cumulative counts for each bucket bound, and the count of all values last */
+    def cumulativeCounts: Array[Long] = {
+      val counts = new Array[Long](buckets.length)
+      var total = 0L
+      var index = 0
+      while (index < buckets.length) {
+        total += buckets(index).sum()
+        counts(index) = total
+        index += 1
+      }
+      counts
+    }
+
+    def count: Long = buckets.iterator.map(_.sum()).sum
+
+    def sum: Long = sumValues.sum()
+
+    def sumSeconds: Double = sumValues.sum() / 1e9
+  }
+
+  private val CircuitBreakerStates = List("closed", "open", "half-open")
+
+  final case class CommandKey(componentType: String, serviceName: String, commandName: String)
+
+  final case class EntityInventorySnapshot(
+      activeEntities: Long,
+      maxActiveEntities: Long,
+      activationsPerSecond: Double,
+      meanLifetimeSeconds: Double)
+
+  final class CommandMetrics {
+    val duration = new Histogram
+    val errors = new LongAdder
+  }
+
+  private def escape(labelValue: String): String =
+    labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+}
+
+/**
+ * INTERNAL API
+ *
+ * The registry used unless a custom one is configured, keeping the metrics in memory for the Prometheus endpoint.
+ */
+final class DefaultMetricsRegistry extends MetricsRegistry {
+  import DefaultMetricsRegistry._
+
+  private val commands = new ConcurrentHashMap[CommandKey, CommandMetrics]()
+  private val decodes = new ConcurrentHashMap[String, Histogram]()
+  private val encodes = new ConcurrentHashMap[String, Histogram]()
+  private val activeEntities = new ConcurrentHashMap[String, AtomicLong]()
+  private val hotKeys = new ConcurrentHashMap[String, java.util.Map[String, java.lang.Long]]()
+  private val stalls = new ConcurrentHashMap[CommandKey, LongAdder]()
+  private val decodedSizeHistograms = new ConcurrentHashMap[String, Histogram]()
+  private val encodedSizeHistograms = new ConcurrentHashMap[String, Histogram]()
+  private val entityInventories = new ConcurrentHashMap[(String, String), EntityInventorySnapshot]()
+  private val getCacheLookupCounts = new ConcurrentHashMap[(String, String), LongAdder]()
+  private val hedgesSent = new ConcurrentHashMap[String, LongAdder]()
+  private val hedgesWon = new ConcurrentHashMap[String, LongAdder]()
+  private val rejectedCalls = new ConcurrentHashMap[(String, String), LongAdder]()
+  private val circuitBreakerStates = new ConcurrentHashMap[String, String]()
+
+  override def recordCommand(
+      componentType: String,
+      serviceName: String,
+      commandName: String,
+      durationNanos: Long,
+      failed: Boolean): Unit = {
+    val metrics =
+      commands.computeIfAbsent(CommandKey(componentType, serviceName, commandName), _ => new CommandMetrics)
+    metrics.duration.record(durationNanos)
+    if (failed) metrics.errors.increment()
+  }
+
+  override def recordDecode(serviceName: String, durationNanos: Long): Unit =
+    decodes.computeIfAbsent(serviceName, _ => new Histogram).record(durationNanos)
+
+  override def recordEncode(serviceName: String, durationNanos: Long): Unit =
+    encodes.computeIfAbsent(serviceName, _ => new Histogram).record(durationNanos)
+
+  override def recordDecodedSize(typeUrl: String, sizeBytes: Int): Unit =
+    decodedSizeHistograms.computeIfAbsent(typeUrl, _ => new Histogram(SizeBucketBoundsBytes)).record(sizeBytes)
+
+  override def recordEncodedSize(typeUrl: String, sizeBytes: Int): Unit =
+    encodedSizeHistograms.computeIfAbsent(typeUrl, _ => new Histogram(SizeBucketBoundsBytes)).record(sizeBytes)
+
+  override def recordGetCacheLookup(pathPattern: String, outcome: String): Unit =
+    getCacheLookupCounts.computeIfAbsent((pathPattern, outcome), _ => new LongAdder).increment()
+
+  override def hedgeSent(service: String): Unit =
+    hedgesSent.computeIfAbsent(service, _ => new LongAdder).increment()
+
+  override def hedgeWon(service: String): Unit =
+    hedgesWon.computeIfAbsent(service, _ => new LongAdder).increment()
+
+  override def downstreamCallRejected(target: String, reason: String): Unit =
+    rejectedCalls.computeIfAbsent((target, reason), _ => new LongAdder).increment()
+
+  override def circuitBreakerStateChanged(target: String, state: String): Unit =
+    circuitBreakerStates.put(target, state)
+
+  override def activeEntitiesChanged(serviceName: String, delta: Int): Unit =
+    activeEntities.computeIfAbsent(serviceName, _ => new AtomicLong).addAndGet(delta)
+
+  override def hotKeysObserved(entityType: String, commandsPerEntityId: java.util.Map[String, java.lang.Long]): Unit =
+    hotKeys.put(entityType, commandsPerEntityId)
+
+  override def handlerStalled(componentType: String, serviceName: String, commandName: String): Unit =
+    stalls.computeIfAbsent(CommandKey(componentType, serviceName, commandName), _ => new LongAdder).increment()
+
+  override def entityInventoryUpdated(
+      componentType: String,
+      entityType: String,
+      activeEntities: Long,
+      maxActiveEntities: Long,
+      activationsPerSecond: Double,
+      meanLifetimeSeconds: Double): Unit =
+    entityInventories.put(
+      (componentType, entityType),
+      EntityInventorySnapshot(activeEntities, maxActiveEntities, activationsPerSecond, meanLifetimeSeconds))
+
+  def commandMetrics(componentType: String, serviceName: String, commandName: String): Option[CommandMetrics] =
+    Option(commands.get(CommandKey(componentType, serviceName, commandName)))
+
+  def encodedSizes(typeUrl: String): Option[Histogram] =
+    Option(encodedSizeHistograms.get(typeUrl))
+
+  def decodedSizes(typeUrl: String): Option[Histogram] =
+    Option(decodedSizeHistograms.get(typeUrl))
+
+  def getCacheLookups(pathPattern: String, outcome: String): Long =
+    Option(getCacheLookupCounts.get((pathPattern, outcome))).fold(0L)(_.sum())
+
+  def rejectedCallCount(target: String, reason: String): Long =
+    Option(rejectedCalls.get((target, reason))).fold(0L)(_.sum())
+
+  def circuitBreakerState(target: String): Option[String] =
+    Option(circuitBreakerStates.get(target))
+
+  def activeEntityCount(serviceName: String): Long =
+    Option(activeEntities.get(serviceName)).fold(0L)(_.get())
+
+  /** The metrics in the Prometheus text exposition format */
+  def prometheusText(): String = {
+    val builder = new java.lang.StringBuilder(4096)
+
+    def appendHistogram(
+        name: String,
+        labels: String,
+        histogram: Histogram,
+        bounds: Array[String] = BucketBounds,
+        sizes: Boolean = false): Unit = {
+      val counts = histogram.cumulativeCounts
+      var index = 0
+      while (index < bounds.length) {
+        builder
+          .append(name)
+          .append("_bucket{")
+          .append(labels)
+          .append(",le=\"")
+          .append(bounds(index))
+          .append("\"} ")
+          .append(counts(index))
+          .append('\n')
+        index += 1
+      }
+      builder.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(counts(index)).append('\n')
+      builder.append(name).append("_sum{").append(labels).append("} ")
+      if (sizes) builder.append(histogram.sum) else builder.append(histogram.sumSeconds)
+      builder.append('\n')
+      builder.append(name).append("_count{").append(labels).append("} ").append(counts(index)).append('\n')
+    }
+
+    def commandLabels(key: CommandKey): String =
+      "component=\"" + escape(key.componentType) + "\",service=\"" + escape(key.serviceName) + "\",command=\"" +
+      escape(key.commandName) + "\""
+
+    val commandEntries = commands.asScala.toSeq
+    builder.append("# HELP kalix_command_duration_seconds Time spent handling commands in the user function\n")
+    builder.append("# TYPE kalix_command_duration_seconds histogram\n")
+    commandEntries.foreach { case (key, metrics) =>
+      appendHistogram("kalix_command_duration_seconds", commandLabels(key), metrics.duration)
+    }
+    builder.append("# HELP kalix_command_errors_total Commands replied to with an error or failed with an exception\n")
+    builder.append("# TYPE kalix_command_errors_total counter\n")
+    commandEntries.foreach { case (key, metrics) =>
+      builder
+        .append("kalix_command_errors_total{")
+        .append(commandLabels(key))
+        .append("} ")
+        .append(metrics.errors.sum())
+        .append('\n')
+    }
+
+    builder.append("# HELP kalix_handler_stalls_total Commands handled for longer than the slow handler threshold\n")
+    builder.append("# TYPE kalix_handler_stalls_total counter\n")
+    stalls.asScala.foreach { case (key, count) =>
+      builder.append("kalix_handler_stalls_total{").append(commandLabels(key)).append("} ")
+      builder.append(count.sum()).append('\n')
+    }
+
+    builder.append("# HELP kalix_message_codec_duration_seconds Time spent decoding and encoding messages\n")
+    builder.append("# TYPE kalix_message_codec_duration_seconds histogram\n")
+    decodes.asScala.foreach { case (serviceName, histogram) =>
+      appendHistogram(
+        "kalix_message_codec_duration_seconds",
+        s"""service="${escape(serviceName)}",operation="decode"""",
+        histogram)
+    }
+    encodes.asScala.foreach { case (serviceName, histogram) =>
+      appendHistogram(
+        "kalix_message_codec_duration_seconds",
+        s"""service="${escape(serviceName)}",operation="encode"""",
+        histogram)
+    }
+
+    builder.append("# HELP kalix_message_payload_size_bytes Size of the message payloads decoded and encoded\n")
+    builder.append("# TYPE kalix_message_payload_size_bytes histogram\n")
+    decodedSizeHistograms.asScala.foreach { case (typeUrl, histogram) =>
+      appendHistogram(
+        "kalix_message_payload_size_bytes",
+        s"""type_url="${escape(typeUrl)}",operation="decode"""",
+        histogram,
+        SizeBucketBounds,
+        sizes = true)
+    }
+    encodedSizeHistograms.asScala.foreach { case (typeUrl, histogram) =>
+      appendHistogram(
+        "kalix_message_payload_size_bytes",
+        s"""type_url="${escape(typeUrl)}",operation="encode"""",
+        histogram,
+        SizeBucketBounds,
+        sizes = true)
+    }
+
+    builder.append("# HELP kalix_active_entities Entities currently active in the user function\n")
+    builder.append("# TYPE kalix_active_entities gauge\n")
+    activeEntities.asScala.foreach { case (serviceName, count) =>
+      builder.append("kalix_active_entities{service=\"").append(escape(serviceName)).append("\"} ")
+      builder.append(count.get()).append('\n')
+    }
+
+    def appendEntityInventory(name: String, help: String)(value: EntityInventorySnapshot => Any): Unit = {
+      builder.append("# HELP ").append(name).append(' ').append(help).append('\n')
+      builder.append("# TYPE ").append(name).append(" gauge\n")
+      entityInventories.asScala.foreach { case ((componentType, entityType), snapshot) =>
+        builder.append(name).append("{component=\"").append(escape(componentType))
+        builder.append("\",entity_type=\"").append(escape(entityType)).append("\"} ")
+        builder.append(value(snapshot)).append('\n')
+      }
+    }
+    appendEntityInventory("kalix_entity_streams", "Streams of the active entities, per entity type")(
+      _.activeEntities)
+    appendEntityInventory("kalix_entity_streams_max", "Highest number of concurrent streams of active entities")(
+      _.maxActiveEntities)
+    appendEntityInventory("kalix_entity_activations_per_second", "Entities activated per second")(
+      _.activationsPerSecond)
+    appendEntityInventory("kalix_entity_lifetime_mean_seconds", "Mean time between activation and passivation")(
+      _.meanLifetimeSeconds)
+
+    builder.append("# HELP kalix_client_get_cache_lookups_total GET calls looked up in the KalixClient GET cache\n")
+    builder.append("# TYPE kalix_client_get_cache_lookups_total counter\n")
+    getCacheLookupCounts.asScala.foreach { case ((pathPattern, outcome), count) =>
+      builder.append("kalix_client_get_cache_lookups_total{path=\"").append(escape(pathPattern))
+      builder.append("\",outcome=\"").append(escape(outcome)).append("\"} ").append(count.sum()).append('\n')
+    }
+
+    def appendServiceCounter(name: String, help: String, counts: ConcurrentHashMap[String, LongAdder]): Unit = {
+      builder.append("# HELP ").append(name).append(' ').append(help).append('\n')
+      builder.append("# TYPE ").append(name).append(" counter\n")
+      counts.asScala.foreach { case (service, count) =>
+        builder.append(name).append("{service=\"").append(escape(service)).append("\"} ")
+        builder.append(count.sum()).append('\n')
+      }
+    }
+    appendServiceCounter("kalix_client_hedges_sent_total", "Hedges sent for calls to a service", hedgesSent)
+    appendServiceCounter("kalix_client_hedges_won_total", "Calls where the response of a hedge was used", hedgesWon)
+
+    builder.append("# HELP kalix_client_calls_rejected_total Calls failed by a circuit breaker or bulkhead\n")
+    builder.append("# TYPE kalix_client_calls_rejected_total counter\n")
+    rejectedCalls.asScala.foreach { case ((target, reason), count) =>
+      builder.append("kalix_client_calls_rejected_total{target=\"").append(escape(target))
+      builder.append("\",reason=\"").append(escape(reason)).append("\"} ").append(count.sum()).append('\n')
+    }
+
+    builder.append("# HELP kalix_client_circuit_breaker_state State of a circuit breaker, 1 for the current state\n")
+    builder.append("# TYPE kalix_client_circuit_breaker_state gauge\n")
+    circuitBreakerStates.asScala.foreach { case (target, current) =>
+      CircuitBreakerStates.foreach { state =>
+        builder.append("kalix_client_circuit_breaker_state{target=\"").append(escape(target))
+        builder.append("\",state=\"").append(state).append("\"} ").append(if (state == current) 1 else 0)
+        builder.append('\n')
+      }
+    }
+
+    builder.append("# HELP kalix_hot_key_commands Estimated commands to the most frequent entities per window\n")
+    builder.append("# TYPE kalix_hot_key_commands gauge\n")
+    hotKeys.asScala.foreach { case (entityType, counts) =>
+      counts.asScala.foreach { case (entityId, count) =>
+        builder.append("kalix_hot_key_commands{entity_type=\"").append(escape(entityType))
+        builder.append("\",entity_id=\"").append(escape(entityId)).append("\"} ").append(count).append('\n')
+      }
+    }
+
+    builder.toString
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{ AtomicLong, LongAdder }
+
+import javax.management.ObjectName
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+import scala.jdk.DurationConverters._
+import scala.util.control.NonFatal
+
+import akka.NotUsed
+import akka.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import akka.actor.ExtensionIdProvider
+import akka.stream.scaladsl.Flow
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+object EntityInventory extends ExtensionId[EntityInventory] with ExtensionIdProvider {
+  override def get(system: ActorSystem): EntityInventory = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): EntityInventory = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): EntityInventory =
+    new EntityInventory(system)
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  private val MaxConcurrentStreamsPath = "akka.http.server.http2.max-concurrent-streams"
+
+  final case class EntityTypeKey(componentType: String, entityType: String)
+
+  /**
+   * The attributes exposed over JMX for each entity type, registered as
+   * `kalix:type=ActiveEntities,componentType=<component type>,entityType=<entity type>`.
+   */
+  trait EntityTypeInventoryMXBean {
+    def getActiveEntities: Long
+    def getMaxActiveEntities: Long
+    def getMaxConcurrentStreams: Long
+    def getActivations: Long
+    def getPassivations: Long
+    def getMeanLifetimeMillis: Double
+    def getActivationsPerSecond: Double
+    def resetMaxActiveEntities(): Unit
+  }
+
+  /**
+   * The entity streams of one entity type, each active entity is one stream from the proxy. Activating and
+   * passivating are a couple of atomic updates, the rate is computed by [[updateRate]] on each rate interval.
+   */
+  final class EntityTypeInventory(maxConcurrentStreams: Long) extends EntityTypeInventoryMXBean {
+    private val active = new AtomicLong
+    private val maxActive = new AtomicLong
+    private val activations = new LongAdder
+    private val passivations = new LongAdder
+    private val lifetimeNanos = new LongAdder
+    @volatile private var activationsAtLastRate = 0L
+    @volatile private var activationsPerSecond = 0.0
+
+    /** The activation time to pass to [[passivated]] */
+    def activated(): Long = {
+      activations.increment()
+      val count = active.incrementAndGet()
+      if (count > maxActive.get()) maxActive.accumulateAndGet(count, (a, b) => Math.max(a, b))
+      System.nanoTime()
+    }
+
+    def passivated(activatedAt: Long): Unit = {
+      active.decrementAndGet()
+      passivations.increment()
+      lifetimeNanos.add(System.nanoTime() - activatedAt)
+    }
+
+    def updateRate(interval: FiniteDuration): Unit = {
+      val total = activations.sum()
+      activationsPerSecond = (total - activationsAtLastRate) / (interval.toNanos / 1e9)
+      activationsAtLastRate = total
+    }
+
+    override def getActiveEntities: Long = active.get()
+    override def getMaxActiveEntities: Long = maxActive.get()
+    override def getMaxConcurrentStreams: Long = maxConcurrentStreams
+    override def getActivations: Long = activations.sum()
+    override def getPassivations: Long = passivations.sum()
+    override def getMeanLifetimeMillis: Double = {
+      val count = passivations.sum()
+      if (count == 0) 0.0 else lifetimeNanos.sum() / 1e6 / count
+    }
+    override def getActivationsPerSecond: Double = activationsPerSecond
+    override def resetMaxActiveEntities(): Unit = maxActive.set(active.get())
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Keeps track of the streams run for the active entities, per component type and entity type, when enabled with
+ * `kalix.entity-inventory.enabled`. The number of concurrently active entities of an entity type is capped by
+ * `http2.max-concurrent-streams`, the inventory shows how close to that each entity type is: the current count, the
+ * high-water mark, the mean lifetime of the entities and the activation rate, exposed over JMX and reported to the
+ * metrics registry when `kalix.metrics` is enabled. A warning is logged when an entity type gets close to the limit.
+ */
+final class EntityInventory(system: ExtendedActorSystem) extends Extension {
+  import EntityInventory._
+
+  private val log = LoggerFactory.getLogger(classOf[EntityInventory])
+  private val config = system.settings.config.getConfig("kalix.entity-inventory")
+
+  val enabled: Boolean = config.getBoolean("enabled")
+  private val rateInterval = config.getDuration("rate-interval").toScala
+  private val maxConcurrentStreams: Long =
+    if (system.settings.config.hasPath(MaxConcurrentStreamsPath))
+      system.settings.config.getLong(MaxConcurrentStreamsPath)
+    else 0L
+  private val warnThreshold: Long = (maxConcurrentStreams * config.getDouble("warn-ratio")).toLong
+
+  private val metrics = ComponentMetrics(system)
+  private val entityTypes = new ConcurrentHashMap[EntityTypeKey, EntityTypeInventory]()
+  private val registeredMBeans = new ConcurrentHashMap[EntityTypeKey, ObjectName]()
+  private val warned = ConcurrentHashMap.newKeySet[EntityTypeKey]()
+
+  if (enabled) {
+    system.scheduler.scheduleWithFixedDelay(rateInterval, rateInterval)(() => update())(system.dispatcher)
+    system.registerOnTermination(unregisterMBeans())
+  }
+
+  /** Counts the entity as active from when the flow running it is materialized until it completes */
+  def track[In, Out](
+      componentType: String,
+      entityType: String,
+      entityFlow: Flow[In, Out, NotUsed]): Flow[In, Out, NotUsed] =
+    if (!enabled) entityFlow
+    else {
+      val key = EntityTypeKey(componentType, entityType)
+      val inventory = entityTypeInventory(key)
+      entityFlow.watchTermination() { (_, done) =>
+        val activatedAt = inventory.activated()
+        if (warnThreshold > 0 && inventory.getActiveEntities >= warnThreshold) warnCloseToLimit(key, inventory)
+        done.onComplete(_ => inventory.passivated(activatedAt))(ExecutionContext.parasitic)
+        NotUsed
+      }
+    }
+
+  def stats(componentType: String, entityType: String): Option[EntityTypeInventory] =
+    Option(entityTypes.get(EntityTypeKey(componentType, entityType)))
+
+  private def entityTypeInventory(key: EntityTypeKey): EntityTypeInventory = {
+    val existing = entityTypes.get(key)
+    if (existing ne null) existing
+    else
+      entityTypes.computeIfAbsent(
+        key,
+        { key =>
+          val inventory = new EntityTypeInventory(maxConcurrentStreams)
+          registerMBean(key, inventory)
+          inventory
+        })
+  }
+
+  private def warnCloseToLimit(key: EntityTypeKey, inventory: EntityTypeInventory): Unit =
+    if (warned.add(key))
+      log.warn(
+        s"[${inventory.getActiveEntities}] active entities of ${key.componentType} [${key.entityType}], close to the " +
+        s"limit of [$maxConcurrentStreams] concurrently active entities per entity type, " +
+        s"see $MaxConcurrentStreamsPath")
+
+  private def update(): Unit =
+    entityTypes.asScala.foreach { case (key, inventory) =>
+      inventory.updateRate(rateInterval)
+      // warn again next time the threshold is reached, once well below it
+      if (inventory.getActiveEntities < warnThreshold * 0.9) warned.remove(key)
+      if (metrics.enabled)
+        metrics.registry.entityInventoryUpdated(
+          key.componentType,
+          key.entityType,
+          inventory.getActiveEntities,
+          inventory.getMaxActiveEntities,
+          inventory.getActivationsPerSecond,
+          inventory.getMeanLifetimeMillis / 1000)
+    }
+
+  private def registerMBean(key: EntityTypeKey, inventory: EntityTypeInventory): Unit =
+    try {
+      val name = new ObjectName(
+        s"kalix:type=ActiveEntities,componentType=${ObjectName.quote(key.componentType)}," +
+        s"entityType=${ObjectName.quote(key.entityType)}")
+      ManagementFactory.getPlatformMBeanServer.registerMBean(inventory, name)
+      registeredMBeans.put(key, name)
+    } catch {
+      case NonFatal(ex) =>
+        log.warn("Failed to register the entity inventory MBean for entity type [{}]: {}", key.entityType, ex.toString)
+    }
+
+  private def unregisterMBeans(): Unit =
+    registeredMBeans.values.asScala.foreach { name =>
+      try ManagementFactory.getPlatformMBeanServer.unregisterMBean(name)
+      catch {
+        case NonFatal(_) => // already gone
+      }
+    }
+}
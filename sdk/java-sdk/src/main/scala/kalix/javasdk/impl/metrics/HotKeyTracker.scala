@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import scala.collection.mutable
+import scala.jdk.CollectionConverters._
+import scala.jdk.DurationConverters._
+
+import akka.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import akka.actor.ExtensionIdProvider
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+object HotKeyTracker extends ExtensionId[HotKeyTracker] with ExtensionIdProvider {
+  override def get(system: ActorSystem): HotKeyTracker = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): HotKeyTracker = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): HotKeyTracker =
+    new HotKeyTracker(system)
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  /**
+   * The commands to the entities of one entity type during one window, counted in a sketch, and the entity ids with
+   * the highest estimated counts.
+   */
+  final class Window(topK: Int, sketchDepth: Int, sketchWidth: Int) {
+    private val sketch = new CountMinSketch(sketchDepth, sketchWidth)
+    private val commands = new LongAdder
+    private val top = mutable.HashMap.empty[String, Long]
+    // the smallest count in the top once it is full, only counts above it need to take the lock
+    @volatile private var threshold = 0L
+
+    def add(entityId: String): Unit = {
+      commands.increment()
+      val estimate = sketch.add(entityId)
+      if (estimate > threshold) updateTop(entityId, estimate)
+    }
+
+    private def updateTop(entityId: String, estimate: Long): Unit = synchronized {
+      top.update(entityId, estimate)
+      if (top.size > topK) top.remove(top.minBy(_._2)._1)
+      if (top.size == topK) threshold = top.valuesIterator.min
+    }
+
+    def totalCommands: Long = commands.sum()
+
+    /** The entity ids with the highest estimated counts, highest first */
+    def topKeys: Seq[(String, Long)] = synchronized(top.toSeq).sortBy(-_._2)
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Tracks which entity ids receive the most commands, per entity type, when enabled with `kalix.hot-keys.enabled`.
+ * The counts are estimated with a count-min sketch so that the memory used is bounded regardless of the number of
+ * entities. They are reset after each window, when the top entity ids of the window are logged and reported to the
+ * metrics registry.
+ */
+final class HotKeyTracker(system: ExtendedActorSystem) extends Extension {
+  import HotKeyTracker._
+
+  private val log = LoggerFactory.getLogger(classOf[HotKeyTracker])
+  private val config = system.settings.config.getConfig("kalix.hot-keys")
+
+  val enabled: Boolean = config.getBoolean("enabled")
+  private val topK = config.getInt("top-k")
+  private val sketchDepth = config.getInt("sketch-depth")
+  private val sketchWidth = config.getInt("sketch-width")
+  private val window = config.getDuration("window").toScala
+
+  private val windows = new ConcurrentHashMap[String, Window]()
+  private lazy val metrics = ComponentMetrics(system)
+
+  if (enabled)
+    system.scheduler.scheduleWithFixedDelay(window, window)(() => completeWindows())(system.dispatcher)
+
+  /** A command was received by an entity */
+  def commandReceived(entityType: String, entityId: String): Unit =
+    if (enabled) {
+      val current = windows.get(entityType)
+      val entityTypeWindow =
+        if (current ne null) current
+        else windows.computeIfAbsent(entityType, _ => new Window(topK, sketchDepth, sketchWidth))
+      entityTypeWindow.add(entityId)
+    }
+
+  /** The top entity ids of the current window, highest first */
+  def topKeys(entityType: String): Seq[(String, Long)] =
+    Option(windows.get(entityType)).fold(Seq.empty[(String, Long)])(_.topKeys)
+
+  private def completeWindows(): Unit =
+    windows.keys.asScala.toList.foreach { entityType =>
+      // commands counted in the old window while replacing it are lost, which is fine for finding the hot ones
+      val completed = windows.put(entityType, new Window(topK, sketchDepth, sketchWidth))
+      val topKeys = completed.topKeys
+      if (topKeys.nonEmpty) {
+        val total = completed.totalCommands
+        if (log.isInfoEnabled) {
+          val keys = topKeys
+            .map { case (entityId, count) => f"[$entityId]: $count (${count * 100.0 / total}%.1f%%)" }
+            .mkString(", ")
+          log.info(s"Most frequent entities of type [$entityType] in the last $window, of $total commands: $keys")
+        }
+        if (metrics.enabled) {
+          val counts = new java.util.LinkedHashMap[String, java.lang.Long]()
+          topKeys.foreach { case (entityId, count) => counts.put(entityId, count) }
+          metrics.registry.hotKeysObserved(entityType, counts)
+        }
+      }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{ AtomicLong, LongAdder }
+
+import scala.jdk.DurationConverters._
+
+import akka.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import akka.actor.ExtensionIdProvider
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import com.google.protobuf.{ Any => JavaPbAny }
+import kalix.javasdk.impl.MessageCodec
+import kalix.javasdk.metrics.MetricsRegistry
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+object PayloadSizes extends ExtensionId[PayloadSizes] with ExtensionIdProvider {
+  override def get(system: ActorSystem): PayloadSizes = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): PayloadSizes = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): PayloadSizes =
+    new PayloadSizes(system)
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  val StatePayload = "state"
+  val SnapshotPayload = "snapshot"
+  val EventPayload = "event"
+
+  /**
+   * Records the size of the payloads decoded and encoded by the wrapped codec, per type url, whatever the codec and
+   * serialization format.
+   */
+  final class MeasuredMessageCodec(codec: MessageCodec, registry: MetricsRegistry) extends MessageCodec {
+    override def decodeMessage(any: ScalaPbAny): Any = {
+      registry.recordDecodedSize(any.typeUrl, any.value.size)
+      codec.decodeMessage(any)
+    }
+
+    override def encodeScala(value: Any): ScalaPbAny = {
+      val encoded = codec.encodeScala(value)
+      registry.recordEncodedSize(encoded.typeUrl, encoded.value.size)
+      encoded
+    }
+
+    override def encodeJava(value: Any): JavaPbAny = {
+      val encoded = codec.encodeJava(value)
+      registry.recordEncodedSize(encoded.getTypeUrl, encoded.getValue.size)
+      encoded
+    }
+  }
+
+  private final case class WarningKey(payloadKind: String, entityType: String)
+
+  private final class Warnings {
+    val lastLoggedNanos = new AtomicLong(Long.MinValue)
+    val suppressed = new LongAdder
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * The sizes of the message payloads. When `kalix.metrics` is enabled, the message codecs of the components are wrapped
+ * to record the size of each payload they decode and encode, per type url. Independently of the metrics, a warning is
+ * logged when an entity state, snapshot or event is larger than the limits in `kalix.payload-sizes`, at most once per
+ * `warn-interval` for each kind of payload and entity type.
+ */
+final class PayloadSizes(system: ExtendedActorSystem) extends Extension {
+  import PayloadSizes._
+
+  private val log = LoggerFactory.getLogger(classOf[PayloadSizes])
+  private val config = system.settings.config.getConfig("kalix.payload-sizes")
+  private val metrics = ComponentMetrics(system)
+
+  private val maxStateSize = config.getBytes("max-state-size").longValue
+  private val maxSnapshotSize = config.getBytes("max-snapshot-size").longValue
+  private val maxEventSize = config.getBytes("max-event-size").longValue
+  private val warnIntervalNanos = config.getDuration("warn-interval").toScala.toNanos
+
+  private val warnings = new ConcurrentHashMap[WarningKey, Warnings]()
+
+  /** The codec to use for the payloads of a component, recording their sizes when the metrics are enabled */
+  def measured(codec: MessageCodec): MessageCodec =
+    if (metrics.enabled) new MeasuredMessageCodec(codec, metrics.registry) else codec
+
+  /** Logs a warning if the encoded entity state, snapshot or event is larger than its limit */
+  def checkSize(payloadKind: String, entityType: String, entityId: String, payload: ScalaPbAny): Unit = {
+    val maxSize = payloadKind match {
+      case StatePayload    => maxStateSize
+      case SnapshotPayload => maxSnapshotSize
+      case EventPayload    => maxEventSize
+      case _               => 0L
+    }
+    val size = payload.value.size
+    if (maxSize > 0 && size > maxSize) oversized(payloadKind, entityType, entityId, payload.typeUrl, size, maxSize)
+  }
+
+  private def oversized(
+      payloadKind: String,
+      entityType: String,
+      entityId: String,
+      typeUrl: String,
+      size: Int,
+      maxSize: Long): Unit = {
+    val state = warnings.computeIfAbsent(WarningKey(payloadKind, entityType), _ => new Warnings)
+    val now = System.nanoTime()
+    val last = state.lastLoggedNanos.get()
+    if ((last == Long.MinValue || now - last >= warnIntervalNanos) && state.lastLoggedNanos.compareAndSet(last, now)) {
+      val suppressed = state.suppressed.sumThenReset()
+      val suppressedInfo =
+        if (suppressed > 0) s", and $suppressed more oversized ${payloadKind}s since the last warning" else ""
+      log.warn(
+        s"Large $payloadKind of [$size] bytes for entity [$entityId] of entity type [$entityType], " +
+        s"type [$typeUrl], above the limit of [$maxSize] bytes in kalix.payload-sizes$suppressedInfo. " +
+        "Large payloads increase the latency and the storage costs.")
+    } else state.suppressed.increment()
+  }
+}
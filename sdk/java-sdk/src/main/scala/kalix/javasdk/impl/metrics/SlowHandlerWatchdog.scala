@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import scala.jdk.CollectionConverters._
+import scala.jdk.DurationConverters._
+
+import akka.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import akka.actor.ExtensionIdProvider
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+object SlowHandlerWatchdog extends ExtensionId[SlowHandlerWatchdog] with ExtensionIdProvider {
+  override def get(system: ActorSystem): SlowHandlerWatchdog = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): SlowHandlerWatchdog = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): SlowHandlerWatchdog =
+    new SlowHandlerWatchdog(system)
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  /** A command handler running, to be marked as finished when it returns or throws */
+  sealed trait RunningHandler {
+    def finished(): Unit
+  }
+
+  private object NotWatched extends RunningHandler {
+    override def finished(): Unit = ()
+  }
+
+  final case class HandlerKey(componentType: String, serviceName: String, commandName: String)
+}
+
+/**
+ * INTERNAL API
+ *
+ * Watches the command handlers of the components, when enabled with `kalix.slow-handler-watchdog.enabled`, and logs
+ * the stack trace of the thread running a handler once it has been running for longer than the threshold. A handler
+ * blocking, for example on a synchronous database call, stalls the stream of its entity and holds on to a dispatcher
+ * thread, the stack trace shows where it is blocked. The stalls are counted per handler and reported to the metrics
+ * registry when `kalix.metrics` is enabled.
+ */
+final class SlowHandlerWatchdog(system: ExtendedActorSystem) extends Extension {
+  import SlowHandlerWatchdog._
+
+  private val log = LoggerFactory.getLogger(classOf[SlowHandlerWatchdog])
+  private val config = system.settings.config.getConfig("kalix.slow-handler-watchdog")
+
+  val enabled: Boolean = config.getBoolean("enabled")
+  private val thresholdNanos = config.getDuration("threshold").toNanos
+  private val checkInterval = config.getDuration("check-interval").toScala
+
+  private val running = ConcurrentHashMap.newKeySet[Handler]()
+  private val stalls = new ConcurrentHashMap[HandlerKey, LongAdder]()
+  private lazy val metrics = ComponentMetrics(system)
+
+  private final class Handler(
+      val componentType: String,
+      val serviceName: String,
+      val entityId: String,
+      val commandName: String,
+      val thread: Thread,
+      val startNanos: Long)
+      extends RunningHandler {
+    // only accessed by the watchdog
+    var reported = false
+
+    override def finished(): Unit = running.remove(this)
+  }
+
+  if (enabled)
+    system.scheduler.scheduleWithFixedDelay(checkInterval, checkInterval)(() => checkRunning())(system.dispatcher)
+
+  /**
+   * A command handler is starting on the current thread, `entityId` is null for components that are not entities.
+   */
+  def handlerStarted(
+      componentType: String,
+      serviceName: String,
+      entityId: String,
+      commandName: String): RunningHandler =
+    if (!enabled) NotWatched
+    else {
+      val handler =
+        new Handler(componentType, serviceName, entityId, commandName, Thread.currentThread(), System.nanoTime())
+      running.add(handler)
+      handler
+    }
+
+  /** How many times the handler stalled */
+  def stallCount(componentType: String, serviceName: String, commandName: String): Long =
+    Option(stalls.get(HandlerKey(componentType, serviceName, commandName))).fold(0L)(_.sum())
+
+  private def checkRunning(): Unit = {
+    val now = System.nanoTime()
+    running.asScala.foreach { handler =>
+      if (!handler.reported && now - handler.startNanos > thresholdNanos) {
+        handler.reported = true
+        // the handler may have finished since, then the stack trace is not from it
+        val stackTrace = handler.thread.getStackTrace
+        if (running.contains(handler)) stalled(handler, (now - handler.startNanos) / 1000000, stackTrace)
+      }
+    }
+  }
+
+  private def stalled(handler: Handler, runningMillis: Long, stackTrace: Array[StackTraceElement]): Unit = {
+    val key = HandlerKey(handler.componentType, handler.serviceName, handler.commandName)
+    val counter = stalls.computeIfAbsent(key, _ => new LongAdder)
+    counter.increment()
+    if (metrics.enabled)
+      metrics.registry.handlerStalled(handler.componentType, handler.serviceName, handler.commandName)
+
+    val entity = if (handler.entityId eq null) "" else s" for entity [${handler.entityId}]"
+    log.warn(
+      s"Command handler [${handler.commandName}] of [${handler.serviceName}]$entity has been running for " +
+      s"$runningMillis ms, blocking thread [${handler.thread.getName}] (stalled ${counter.sum()} times so far):" +
+      stackTrace.mkString("\n\tat ", "\n\tat ", ""))
+  }
+}
@@ -21,6 +21,13 @@ import akka.actor.ActorSystem
 import akka.stream.scaladsl.{ Flow, Source }
 import kalix.javasdk.impl._
 import kalix.javasdk.impl.effect.{ EffectSupport, ErrorReplyImpl, MessageReplyImpl }
+import kalix.javasdk.impl.jfr.CommandHandledEvent
+import kalix.javasdk.impl.jfr.EntityActivationEvent
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.metrics.EntityInventory
+import kalix.javasdk.impl.metrics.HotKeyTracker
+import kalix.javasdk.impl.metrics.SlowHandlerWatchdog
+import kalix.javasdk.impl.telemetry.Tracing
 import kalix.javasdk.impl.replicatedentity.ReplicatedEntityEffectImpl.DeleteEntity
 import kalix.javasdk.impl.replicatedentity.ReplicatedEntityRouter.CommandResult
 import kalix.javasdk.replicatedentity._
@@ -73,6 +80,12 @@ final class ReplicatedEntitiesImpl(system: ActorSystem, services: Map[String, Re
   import EntityExceptions._
 
   private val log = LoggerFactory.getLogger(this.getClass)
+  private val metrics = ComponentMetrics(system)
+  private val hotKeys = HotKeyTracker(system)
+  private val entityInventory = EntityInventory(system)
+  private val watchdog = SlowHandlerWatchdog(system)
+  private val tracing = Tracing(system)
+  private val failureLogging = FailureLogging(system)
 
   /**
    * After invoking handle, the first message sent will always be a ReplicatedEntityInit message, containing the entity
@@ -96,7 +109,9 @@ final class ReplicatedEntitiesImpl(system: ActorSystem, services: Map[String, Re
       }
       .recover { case error =>
         ErrorHandling.withCorrelationId { correlationId =>
-          log.error(failureMessageForLog(error), error)
+          val message = failureMessageForLog(error)
+          failureLogging
+            .logFailure(log, ComponentMetrics.ReplicatedEntityComponent, "", "", error, correlationId, message)
           ReplicatedEntityStreamOut(Out.Failure(Failure(description = s"Unexpected error [$correlationId]")))
         }
       }
@@ -107,13 +122,15 @@ final class ReplicatedEntitiesImpl(system: ActorSystem, services: Map[String, Re
     val service =
       services.getOrElse(init.serviceName, throw ProtocolException(init, s"Service not found: ${init.serviceName}"))
 
+    val activationEvent = EntityActivationEvent.start()
     val initialData = init.delta.map { delta =>
       ReplicatedEntityDeltaTransformer.create(delta, service.anySupport)
     }
 
-    val runner = new EntityRunner(service, init.entityId, initialData, system)
+    val runner = new EntityRunner(service, init.entityId, initialData, system, metrics, hotKeys, watchdog, tracing)
+    activationEvent.finish(service.entityType, init.entityId, 0, init.delta.map(_.serializedSize).getOrElse(0))
 
-    Flow[ReplicatedEntityStreamIn]
+    val entityFlow = Flow[ReplicatedEntityStreamIn]
       .mapConcat { in =>
         in.message match {
           case In.Command(command) =>
@@ -132,21 +149,41 @@ final class ReplicatedEntitiesImpl(system: ActorSystem, services: Map[String, Re
       }
       .recover { case error =>
         ErrorHandling.withCorrelationId { correlationId =>
-          LoggerFactory.getLogger(runner.handler.entityClass).error(failureMessageForLog(error), error)
+          val entityLog = LoggerFactory.getLogger(runner.handler.entityClass)
+          failureLogging.logFailure(
+            entityLog,
+            ComponentMetrics.ReplicatedEntityComponent,
+            init.serviceName,
+            "",
+            error,
+            correlationId,
+            failureMessageForLog(error))
           ReplicatedEntityStreamOut(Out.Failure(Failure(description = s"Unexpected error [$correlationId]")))
         }
       }
+
+    entityInventory.track(
+      ComponentMetrics.ReplicatedEntityComponent,
+      service.entityType,
+      metrics.activeEntity(init.serviceName, entityFlow))
   }
 }
 
 object ReplicatedEntitiesImpl {
+  import ComponentMetrics.ReplicatedEntityComponent
   import EntityExceptions._
 
   private class EntityRunner(
       service: ReplicatedEntityService,
       entityId: String,
       initialData: Option[InternalReplicatedData],
-      system: ActorSystem) {
+      system: ActorSystem,
+      metrics: ComponentMetrics,
+      hotKeys: HotKeyTracker,
+      watchdog: SlowHandlerWatchdog,
+      tracing: Tracing) {
+
+    private val serviceName = service.descriptor.getFullName
 
     val handler = {
       val context = new ReplicatedEntityCreationContext(entityId, system)
@@ -167,57 +204,87 @@ object ReplicatedEntitiesImpl {
       if (entityId != command.entityId)
         throw ProtocolException(command, "Entity is not the intended recipient of command")
 
-      val context = new ReplicatedEntityCommandContext(entityId, command, system)
-      val payload = command.payload.getOrElse(throw ProtocolException(command, "No command payload"))
-      val cmd = service.anySupport.decodeMessage(payload)
-
-      val CommandResult(effect: ReplicatedEntityEffectImpl[_, _]) =
-        try {
-          handler._internalHandleCommand(command.name, cmd, context)
-        } catch {
-          case e: EntityException => throw e
-          case NonFatal(error)    => throw EntityException(command, s"Unexpected failure: $error", Some(error))
-        } finally {
-          context.deactivate()
+      hotKeys.commandReceived(service.entityType, entityId)
+      val startTime = metrics.startTime()
+      val commandEvent = CommandHandledEvent.start()
+      val span = tracing.startCommandSpan(ReplicatedEntityComponent, serviceName, command.name, command.metadata)
+      // recorded once for the command, whether it replies or fails at any point of the processing
+      var processed = false
+      def commandProcessed(failed: Boolean): Unit =
+        if (!processed) {
+          processed = true
+          metrics.commandProcessed(ReplicatedEntityComponent, serviceName, command.name, startTime, failed)
+          commandEvent.finish(ReplicatedEntityComponent, serviceName, command.name, 0, failed)
+          span.end(failed)
         }
+      try {
+        val context = new ReplicatedEntityCommandContext(entityId, command, system)
+        val payload = command.payload.getOrElse(throw ProtocolException(command, "No command payload"))
+        val cmd = span.child("decode")(metrics.timeDecode(serviceName)(service.anySupport.decodeMessage(payload)))
+
+        val runningHandler = watchdog.handlerStarted(ReplicatedEntityComponent, serviceName, entityId, command.name)
+        val CommandResult(effect: ReplicatedEntityEffectImpl[_, _]) =
+          try {
+            span.child("handle")(handler._internalHandleCommand(command.name, cmd, context))
+          } catch {
+            case e: EntityException =>
+              throw e
+            case NonFatal(error) =>
+              throw EntityException(command, s"Unexpected failure: $error", Some(error))
+          } finally {
+            runningHandler.finished()
+            context.deactivate()
+          }
 
-      val serializedSecondaryEffect = effect.secondaryEffect match {
-        case MessageReplyImpl(message, metadata, sideEffects) =>
-          MessageReplyImpl(service.anySupport.encodeJava(message), metadata, sideEffects)
-        case other => other
-      }
+        val serializedSecondaryEffect = effect.secondaryEffect match {
+          case MessageReplyImpl(message, metadata, sideEffects) =>
+            val encoded = span.child("encode")(metrics.timeEncode(serviceName)(service.anySupport.encodeJava(message)))
+            MessageReplyImpl(encoded, metadata, sideEffects)
+          case other => other
+        }
 
-      val clientAction =
-        serializedSecondaryEffect.replyToClientAction(service.anySupport, command.id)
-
-      serializedSecondaryEffect match {
-        case error: ErrorReplyImpl[_] =>
-          if (handler._internalHasDelta)
-            throw EntityException(command, s"Replicated entity was changed for a failed command, this is not allowed.")
-          ReplicatedEntityStreamOut(
-            ReplicatedEntityStreamOut.Message.Reply(
-              ReplicatedEntityReply(commandId = command.id, clientAction = clientAction)))
-
-        case _ => // non-error
-          val stateAction: Option[ReplicatedEntityStateAction] = effect.primaryEffect match {
-            case DeleteEntity =>
-              Some(ReplicatedEntityStateAction(ReplicatedEntityStateAction.Action.Delete(ReplicatedEntityDelete())))
-            case _ =>
-              if (handler._internalHasDelta) {
-                val delta = handler._internalGetAndResetDelta
-                Some(
-                  ReplicatedEntityStateAction(ReplicatedEntityStateAction.Action.Update(ReplicatedEntityDelta(delta))))
-              } else {
-                None
-              }
-          }
-          ReplicatedEntityStreamOut(
-            ReplicatedEntityStreamOut.Message.Reply(
-              ReplicatedEntityReply(
-                command.id,
-                clientAction,
-                EffectSupport.sideEffectsFrom(service.anySupport, serializedSecondaryEffect),
-                stateAction)))
+        val clientAction =
+          span.injectInto(serializedSecondaryEffect.replyToClientAction(service.anySupport, command.id))
+
+        serializedSecondaryEffect match {
+          case error: ErrorReplyImpl[_] =>
+            if (handler._internalHasDelta)
+              throw EntityException(
+                command,
+                s"Replicated entity was changed for a failed command, this is not allowed.")
+            commandProcessed(failed = true)
+            ReplicatedEntityStreamOut(
+              ReplicatedEntityStreamOut.Message.Reply(
+                ReplicatedEntityReply(commandId = command.id, clientAction = clientAction)))
+
+          case _ => // non-error
+            val stateAction: Option[ReplicatedEntityStateAction] = effect.primaryEffect match {
+              case DeleteEntity =>
+                Some(ReplicatedEntityStateAction(ReplicatedEntityStateAction.Action.Delete(ReplicatedEntityDelete())))
+              case _ =>
+                if (handler._internalHasDelta) {
+                  val delta = handler._internalGetAndResetDelta
+                  Some(
+                    ReplicatedEntityStateAction(
+                      ReplicatedEntityStateAction.Action.Update(ReplicatedEntityDelta(delta))))
+                } else {
+                  None
+                }
+            }
+            val reply = ReplicatedEntityStreamOut(
+              ReplicatedEntityStreamOut.Message.Reply(
+                ReplicatedEntityReply(
+                  command.id,
+                  clientAction,
+                  span.injectInto(EffectSupport.sideEffectsFrom(service.anySupport, serializedSecondaryEffect)),
+                  stateAction)))
+            commandProcessed(failed = false)
+            reply
+        }
+      } catch {
+        case NonFatal(error) =>
+          commandProcessed(failed = true)
+          throw error
       }
     }
   }
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.telemetry
+
+import scala.collection.mutable
+import scala.jdk.CollectionConverters._
+import scala.util.control.NonFatal
+
+import akka.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import akka.actor.ExtensionIdProvider
+import io.opentelemetry.api.{ GlobalOpenTelemetry, OpenTelemetry }
+import io.opentelemetry.api.trace.{ Span, SpanKind, StatusCode, Tracer }
+import io.opentelemetry.context.Context
+import io.opentelemetry.context.propagation.{ TextMapGetter, TextMapPropagator, TextMapSetter }
+import kalix.protocol.component.{ ClientAction, Forward, Metadata, MetadataEntry, SideEffect }
+
+/**
+ * INTERNAL API
+ */
+object Tracing extends ExtensionId[Tracing] with ExtensionIdProvider {
+  override def get(system: ActorSystem): Tracing = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): Tracing = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): Tracing =
+    new Tracing(system)
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  private val InstrumentationName = "kalix-java-sdk"
+
+  /**
+   * The span of a command handled by a component, to be ended once the command has been processed.
+   */
+  sealed trait CommandSpan {
+
+    /** Runs `body` in a child span, which is the current span while it runs */
+    def child[T](name: String)(body: => T): T
+
+    def end(failed: Boolean): Unit
+
+    /** Adds the trace context of this span to the metadata of the forward, if it is one */
+    def injectInto(clientAction: Option[ClientAction]): Option[ClientAction]
+
+    /** Adds the trace context of this span to the metadata of the forward */
+    def injectInto(forward: Forward): Forward
+
+    /** Adds the trace context of this span to the metadata of the side effects */
+    def injectInto(sideEffects: Seq[SideEffect]): Seq[SideEffect]
+  }
+
+  private object NoSpan extends CommandSpan {
+    override def child[T](name: String)(body: => T): T = body
+    override def end(failed: Boolean): Unit = ()
+    override def injectInto(clientAction: Option[ClientAction]): Option[ClientAction] = clientAction
+    override def injectInto(forward: Forward): Forward = forward
+    override def injectInto(sideEffects: Seq[SideEffect]): Seq[SideEffect] = sideEffects
+  }
+
+  private final class OpenTelemetrySpan(tracer: Tracer, propagator: TextMapPropagator, span: Span)
+      extends CommandSpan {
+    private val context = span.storeInContext(Context.root())
+
+    override def child[T](name: String)(body: => T): T = {
+      val child = tracer.spanBuilder(name).setParent(context).startSpan()
+      val scope = child.storeInContext(context).makeCurrent()
+      try body
+      catch {
+        case NonFatal(ex) =>
+          child.recordException(ex)
+          child.setStatus(StatusCode.ERROR)
+          throw ex
+      } finally {
+        scope.close()
+        child.end()
+      }
+    }
+
+    override def end(failed: Boolean): Unit = {
+      if (failed) span.setStatus(StatusCode.ERROR)
+      span.end()
+    }
+
+    override def injectInto(clientAction: Option[ClientAction]): Option[ClientAction] =
+      clientAction.map { action =>
+        action.action match {
+          case ClientAction.Action.Forward(forward) => action.withForward(injectInto(forward))
+          case _                                    => action
+        }
+      }
+
+    override def injectInto(forward: Forward): Forward =
+      forward.withMetadata(inject(forward.metadata))
+
+    override def injectInto(sideEffects: Seq[SideEffect]): Seq[SideEffect] =
+      sideEffects.map(sideEffect => sideEffect.withMetadata(inject(sideEffect.metadata)))
+
+    private def inject(metadata: Option[Metadata]): Metadata = {
+      val traceEntries = mutable.ArrayBuffer.empty[MetadataEntry]
+      propagator.inject(context, traceEntries, MetadataEntrySetter)
+      val existing = metadata.fold(Seq.empty[MetadataEntry])(_.entries)
+      val withoutTraceEntries = existing.filterNot(entry => traceEntries.exists(_.key.equalsIgnoreCase(entry.key)))
+      Metadata(withoutTraceEntries ++ traceEntries)
+    }
+  }
+
+  private object MetadataEntryGetter extends TextMapGetter[Seq[MetadataEntry]] {
+    override def keys(carrier: Seq[MetadataEntry]): java.lang.Iterable[String] =
+      carrier.map(_.key).asJava
+
+    override def get(carrier: Seq[MetadataEntry], key: String): String =
+      if (carrier eq null) null
+      else carrier.find(_.key.equalsIgnoreCase(key)).flatMap(_.value.stringValue).orNull
+  }
+
+  private object HeaderSetter extends TextMapSetter[(String, String) => Unit] {
+    override def set(carrier: (String, String) => Unit, key: String, value: String): Unit =
+      if (carrier ne null) carrier(key, value)
+  }
+
+  private object MetadataEntrySetter extends TextMapSetter[mutable.ArrayBuffer[MetadataEntry]] {
+    override def set(carrier: mutable.ArrayBuffer[MetadataEntry], key: String, value: String): Unit =
+      if (carrier ne null) carrier += MetadataEntry(key, MetadataEntry.Value.StringValue(value))
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Spans for the commands handled by the components, when enabled with `kalix.telemetry.tracing.enabled`, through
+ * the OpenTelemetry API. The spans continue the trace of the `traceparent` and `tracestate` metadata of the command,
+ * and are only recorded when an OpenTelemetry SDK or agent is installed as the global OpenTelemetry, otherwise the
+ * API is a no-op.
+ *
+ * @param openTelemetry
+ *   looked up on first use, so that an agent or SDK installed after the actor system was started is picked up
+ */
+final class Tracing private[impl] (val enabled: Boolean, openTelemetry: () => OpenTelemetry) extends Extension {
+  import Tracing._
+
+  def this(system: ExtendedActorSystem) =
+    this(system.settings.config.getBoolean("kalix.telemetry.tracing.enabled"), () => GlobalOpenTelemetry.get())
+
+  private lazy val tracer = openTelemetry().getTracer(InstrumentationName)
+  private lazy val propagator = openTelemetry().getPropagators.getTextMapPropagator
+
+  /** Starts the span for a command, continuing the trace from the command metadata if any */
+  def startCommandSpan(
+      componentType: String,
+      serviceName: String,
+      commandName: String,
+      metadata: Option[Metadata]): CommandSpan =
+    if (!enabled) NoSpan
+    else {
+      val entries = metadata.fold(Seq.empty[MetadataEntry])(_.entries)
+      val parent = propagator.extract(Context.root(), entries, MetadataEntryGetter)
+      val span = tracer
+        .spanBuilder(serviceName + "/" + commandName)
+        .setParent(parent)
+        .setSpanKind(SpanKind.SERVER)
+        .setAttribute("kalix.component.type", componentType)
+        .setAttribute("rpc.service", serviceName)
+        .setAttribute("rpc.method", commandName)
+        .startSpan()
+      new OpenTelemetrySpan(tracer, propagator, span)
+    }
+
+  /**
+   * Passes the headers propagating the current trace context, if any, to `addHeader`, for calls made while handling a
+   * command.
+   */
+  def injectCurrentContext(addHeader: (String, String) => Unit): Unit =
+    if (enabled) {
+      val current = Context.current()
+      if (Span.fromContext(current).getSpanContext.isValid)
+        propagator.inject[(String, String) => Unit](current, addHeader, HeaderSetter)
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.timer
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.jdk.DurationConverters._
+
+import akka.Done
+import akka.actor.{
+  ActorSystem,
+  ClassicActorSystemProvider,
+  ExtendedActorSystem,
+  Extension,
+  ExtensionId,
+  ExtensionIdProvider
+}
+import akka.stream.{ Materializer, QueueOfferResult }
+import akka.stream.scaladsl.{ Sink, Source }
+import com.google.protobuf.wrappers.StringValue
+import kalix.javasdk.impl.GrpcClients
+import kalix.timers.timers.{ SingleTimer, TimerService }
+import org.slf4j.LoggerFactory
+
+/**
+ * INTERNAL API
+ */
+private[kalix] object TimerOperations extends ExtensionId[TimerOperations] with ExtensionIdProvider {
+  override def get(system: ActorSystem): TimerOperations = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): TimerOperations = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): TimerOperations =
+    new TimerOperations(system, () => GrpcClients(system).getProxyGrpcClient(classOf[TimerService]))
+  override def lookup: ExtensionId[_ <: Extension] = this
+
+  private sealed trait Operation {
+    def name: String
+    def done: Promise[Done]
+  }
+  private final case class Start(timer: SingleTimer, done: Promise[Done]) extends Operation {
+    override def name: String = timer.name
+  }
+  private final case class Cancel(name: String, done: Promise[Done]) extends Operation
+}
+
+/**
+ * INTERNAL API
+ *
+ * Timer operations shared by all the timer schedulers of a service, so that, when a batch window is configured,
+ * operations happening at about the same time are sent together. Within a batch only the last operation for each timer
+ * name is sent to the proxy, since it replaces the earlier ones.
+ *
+ * @param timerServiceClient
+ *   looks up the proxy client for each operation, it can only be created once discovery has happened and is replaced
+ *   by GrpcClients if it gets closed
+ */
+private[kalix] final class TimerOperations(system: ExtendedActorSystem, timerServiceClient: () => TimerService)
+    extends Extension {
+  import TimerOperations._
+
+  private val log = LoggerFactory.getLogger(classOf[TimerOperations])
+
+  private val batchWindow = system.settings.config.getDuration("kalix.timers.batch-window").toScala
+  private val maxBatchSize = system.settings.config.getInt("kalix.timers.max-batch-size")
+
+  private val batchQueue =
+    if (batchWindow.length == 0) None
+    else {
+      val queue = Source
+        .queue[Operation](maxBatchSize * 10)
+        .groupedWithin(maxBatchSize, batchWindow)
+        // one batch at a time, so that operations on the same timer are kept in order
+        .mapAsync(1)(executeBatch)
+        .to(Sink.ignore)
+        .run()(Materializer(system))
+      Some(queue)
+    }
+
+  def startSingleTimer(timer: SingleTimer): Future[Done] =
+    batchQueue match {
+      case Some(_) => enqueue(Start(timer, Promise()))
+      case None    => execute(timer)
+    }
+
+  def cancel(name: String): Future[Done] =
+    batchQueue match {
+      case Some(_) => enqueue(Cancel(name, Promise()))
+      case None    => remove(name)
+    }
+
+  private def enqueue(operation: Operation): Future[Done] =
+    batchQueue.get.offer(operation) match {
+      case QueueOfferResult.Enqueued => operation.done.future
+      case other =>
+        // too many operations waiting or shutting down, don't hold this one back
+        log.debug("Could not batch operation on timer [{}]: {}", operation.name, other)
+        run(operation)
+    }
+
+  private def executeBatch(batch: Seq[Operation]): Future[Done] = {
+    implicit val ec: ExecutionContext = ExecutionContext.parasitic
+    val lastByName = batch.groupMapReduce(_.name)(identity)((_, last) => last)
+    val results = lastByName.values.map { last => last.name -> run(last) }.toMap
+    batch.foreach { operation =>
+      if (!(lastByName(operation.name) eq operation)) operation.done.completeWith(results(operation.name))
+    }
+    Future.sequence(results.values).map(_ => Done).recover { case _ => Done }
+  }
+
+  private def run(operation: Operation): Future[Done] = {
+    val result = operation match {
+      case Start(timer, _) => execute(timer)
+      case Cancel(name, _) => remove(name)
+    }
+    operation.done.completeWith(result)
+    result
+  }
+
+  // Future.delegate so that a missing proxy client fails the returned future rather than the batch stream
+  private def execute(timer: SingleTimer): Future[Done] =
+    Future
+      .delegate(timerServiceClient().addSingle(timer))(ExecutionContext.parasitic)
+      .map(_ => Done)(ExecutionContext.parasitic)
+
+  private def remove(name: String): Future[Done] =
+    Future
+      .delegate(timerServiceClient().remove(StringValue(name)))(ExecutionContext.parasitic)
+      .map(_ => Done)(ExecutionContext.parasitic)
+}
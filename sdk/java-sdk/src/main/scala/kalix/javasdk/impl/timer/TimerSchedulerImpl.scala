@@ -17,53 +17,66 @@
 package kalix.javasdk.impl.timer
 
 import java.time.Duration
+import java.util
 import java.util.concurrent.CompletionStage
 
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.jdk.CollectionConverters._
 import scala.jdk.FutureConverters.FutureOps
 
 import akka.Done
 import akka.actor.ActorSystem
 import com.google.protobuf.duration.{ Duration => ProtoDuration }
-import com.google.protobuf.wrappers.StringValue
 import com.google.protobuf.any.{ Any => ScalaPbAny }
 import kalix.javasdk.DeferredCall
-import kalix.javasdk.impl.{ GrpcClients, GrpcDeferredCall, MessageCodec, RestDeferredCall }
-import kalix.javasdk.timer.TimerScheduler
+import kalix.javasdk.impl.{ GrpcDeferredCall, MessageCodec, RestDeferredCall }
+import kalix.javasdk.timer.{ SingleTimer => JavaSingleTimer, TimerScheduler }
 import kalix.timers.timers.Call
 import kalix.timers.timers.SingleTimer
-import kalix.timers.timers.TimerService
 
 /** INTERNAL API */
-private[kalix] final class TimerSchedulerImpl(messageCodec: MessageCodec, system: ActorSystem) extends TimerScheduler {
+private[kalix] final class TimerSchedulerImpl(messageCodec: MessageCodec, timerOperations: TimerOperations)
+    extends TimerScheduler {
+
+  def this(messageCodec: MessageCodec, system: ActorSystem) = this(messageCodec, TimerOperations(system))
 
   override def startSingleTimer[I, O](
       name: String,
       delay: Duration,
-      deferredCall: DeferredCall[I, O]): CompletionStage[Done] = {
+      deferredCall: DeferredCall[I, O]): CompletionStage[Done] =
+    timerOperations.startSingleTimer(toSingleTimer(name, delay, deferredCall)).asJava
+
+  def cancel(name: String): CompletionStage[Done] =
+    timerOperations.cancel(name).asJava
 
-    val timerServiceClient = GrpcClients(system).getProxyGrpcClient(classOf[TimerService])
+  override def startSingleTimers(timers: util.Collection[JavaSingleTimer]): CompletionStage[Done] = {
+    val singleTimers = timers.asScala.map(timer => toSingleTimer(timer.name, timer.delay, timer.deferredCall)).toList
+    allDone(singleTimers.map(timerOperations.startSingleTimer))
+  }
 
+  override def cancelAll(names: util.Collection[String]): CompletionStage[Done] =
+    allDone(names.asScala.toList.map(timerOperations.cancel))
+
+  private def allDone(results: List[Future[Done]]): CompletionStage[Done] = {
+    implicit val ec: ExecutionContext = ExecutionContext.parasitic
+    Future.sequence(results).map(_ => Done).asJava
+  }
+
+  private def toSingleTimer(name: String, delay: Duration, deferredCall: DeferredCall[_, _]): SingleTimer = {
     val call = deferredCall match {
-      case grpcDeferredCall: GrpcDeferredCall[I, O] =>
+      case grpcDeferredCall: GrpcDeferredCall[_, _] =>
         Call(
           grpcDeferredCall.fullServiceName,
           grpcDeferredCall.methodName,
           Some(messageCodec.encodeScala(grpcDeferredCall.message)))
-      case restDeferredCall: RestDeferredCall[I, O] =>
+      case restDeferredCall: RestDeferredCall[_, _] =>
         Call(
           restDeferredCall.fullServiceName,
           restDeferredCall.methodName,
           Some(restDeferredCall.message.asInstanceOf[ScalaPbAny]))
     }
 
-    val singleTimer = SingleTimer(name, Some(call), Some(ProtoDuration(delay)))
-
-    timerServiceClient.addSingle(singleTimer).asJava.thenApply(_ => Done)
-  }
-
-  def cancel(name: String): CompletionStage[Done] = {
-    val timerServiceClient = GrpcClients(system).getProxyGrpcClient(classOf[TimerService])
-    timerServiceClient.remove(StringValue(name)).asJava.thenApply(_ => Done)
+    SingleTimer(name, Some(call), Some(ProtoDuration(delay)))
   }
 
 }
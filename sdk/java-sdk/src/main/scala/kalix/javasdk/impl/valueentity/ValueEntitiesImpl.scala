@@ -34,6 +34,14 @@ import kalix.javasdk.impl._
 import kalix.javasdk.impl.effect.EffectSupport
 import kalix.javasdk.impl.effect.ErrorReplyImpl
 import kalix.javasdk.impl.effect.MessageReplyImpl
+import kalix.javasdk.impl.jfr.CommandHandledEvent
+import kalix.javasdk.impl.jfr.EntityActivationEvent
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.metrics.EntityInventory
+import kalix.javasdk.impl.metrics.HotKeyTracker
+import kalix.javasdk.impl.metrics.PayloadSizes
+import kalix.javasdk.impl.metrics.SlowHandlerWatchdog
+import kalix.javasdk.impl.telemetry.Tracing
 import kalix.javasdk.impl.valueentity.ValueEntityEffectImpl.DeleteState
 import kalix.javasdk.impl.valueentity.ValueEntityEffectImpl.UpdateState
 import kalix.javasdk.impl.valueentity.ValueEntityRouter.CommandResult
@@ -79,10 +87,20 @@ final class ValueEntityService(
 final class ValueEntitiesImpl(system: ActorSystem, val services: Map[String, ValueEntityService])
     extends ValueEntities {
 
+  import ComponentMetrics.ValueEntityComponent
   import EntityExceptions._
 
   private implicit val ec: ExecutionContext = system.dispatcher
   private final val log = LoggerFactory.getLogger(this.getClass)
+  private val metrics = ComponentMetrics(system)
+  private val hotKeys = HotKeyTracker(system)
+  private val entityInventory = EntityInventory(system)
+  private val watchdog = SlowHandlerWatchdog(system)
+  private val tracing = Tracing(system)
+  private val failureLogging = FailureLogging(system)
+  private val payloadSizes = PayloadSizes(system)
+  private val messageCodecs =
+    services.map { case (name, service) => name -> payloadSizes.measured(service.messageCodec) }
 
   /**
    * One stream will be established per active entity. Once established, the first message sent will be Init, which
@@ -107,7 +125,8 @@ final class ValueEntitiesImpl(system: ActorSystem, val services: Map[String, Val
       }
       .recover { case error =>
         ErrorHandling.withCorrelationId { correlationId =>
-          log.error(failureMessageForLog(error), error)
+          val message = failureMessageForLog(error)
+          failureLogging.logFailure(log, ValueEntityComponent, "", "", error, correlationId, message)
           ValueEntityStreamOut(OutFailure(Failure(description = s"Unexpected error [$correlationId]")))
         }
       }
@@ -116,23 +135,27 @@ final class ValueEntitiesImpl(system: ActorSystem, val services: Map[String, Val
   private def runEntity(init: ValueEntityInit): Flow[ValueEntityStreamIn, ValueEntityStreamOut, NotUsed] = {
     val service =
       services.getOrElse(init.serviceName, throw ProtocolException(init, s"Service not found: ${init.serviceName}"))
+    val messageCodec = messageCodecs(init.serviceName)
     val handler =
       service.factory.create(new ValueEntityContextImpl(init.entityId, system))
     val thisEntityId = init.entityId
 
+    val activationEvent = EntityActivationEvent.start()
     init.state match {
       case Some(ValueEntityInitState(stateOpt, _)) =>
         stateOpt match {
           case Some(state) =>
-            val decoded = service.messageCodec.decodeMessage(state)
+            val decoded = messageCodec.decodeMessage(state)
             handler._internalSetInitState(decoded)
+            activationEvent.finish(service.entityType, thisEntityId, 0, state.value.size)
           case None => // no initial state
+            activationEvent.finish(service.entityType, thisEntityId, 0, 0)
         }
       case None =>
         throw new IllegalStateException("ValueEntityInitState is mandatory")
     }
 
-    Flow[ValueEntityStreamIn]
+    val entityFlow = Flow[ValueEntityStreamIn]
       .map(_.message)
       .map {
         case InCommand(command) if thisEntityId != command.entityId =>
@@ -145,55 +168,90 @@ final class ValueEntitiesImpl(system: ActorSystem, val services: Map[String, Val
           if (thisEntityId != command.entityId)
             throw ProtocolException(command, "Receiving entity is not the intended recipient of command")
 
-          val metadata = new MetadataImpl(command.metadata.map(_.entries.toVector).getOrElse(Nil))
-          val cmd =
-            service.messageCodec.decodeMessage(
-              command.payload.getOrElse(throw ProtocolException(command, "No command payload")))
-          val context =
-            new CommandContextImpl(thisEntityId, command.name, command.id, metadata, system)
-
-          val CommandResult(effect: ValueEntityEffectImpl[_]) =
-            try {
-              handler._internalHandleCommand(command.name, cmd, context)
-            } catch {
-              case e: EntityException => throw e
-              case NonFatal(error) =>
-                throw EntityException(command, s"Unexpected failure: $error", Some(error))
-            } finally {
-              context.deactivate() // Very important!
+          hotKeys.commandReceived(service.entityType, thisEntityId)
+          val startTime = metrics.startTime()
+          val commandEvent = CommandHandledEvent.start()
+          val span = tracing.startCommandSpan(ValueEntityComponent, init.serviceName, command.name, command.metadata)
+          // recorded once for the command, whether it replies or fails at any point of the processing
+          var processed = false
+          def commandProcessed(failed: Boolean): Unit =
+            if (!processed) {
+              processed = true
+              metrics.commandProcessed(ValueEntityComponent, init.serviceName, command.name, startTime, failed)
+              commandEvent.finish(ValueEntityComponent, init.serviceName, command.name, 0, failed)
+              span.end(failed)
             }
+          try {
+            val metadata = new MetadataImpl(command.metadata.map(_.entries.toVector).getOrElse(Nil))
+            val cmd = span.child("decode") {
+              metrics.timeDecode(init.serviceName) {
+                messageCodec.decodeMessage(
+                  command.payload.getOrElse(throw ProtocolException(command, "No command payload")))
+              }
+            }
+            val context =
+              new CommandContextImpl(thisEntityId, command.name, command.id, metadata, system)
 
-          val serializedSecondaryEffect = effect.secondaryEffect match {
-            case MessageReplyImpl(message, metadata, sideEffects) =>
-              MessageReplyImpl(service.messageCodec.encodeJava(message), metadata, sideEffects)
-            case other => other
-          }
-
-          val clientAction =
-            serializedSecondaryEffect.replyToClientAction(service.messageCodec, command.id)
-
-          serializedSecondaryEffect match {
-            case error: ErrorReplyImpl[_] =>
-              ValueEntityStreamOut(OutReply(ValueEntityReply(commandId = command.id, clientAction = clientAction)))
-
-            case _ => // non-error
-              val action: Option[ValueEntityAction] = effect.primaryEffect match {
-                case DeleteState =>
-                  Some(ValueEntityAction(Delete(ValueEntityDelete())))
-                case UpdateState(newState) =>
-                  val newStateScalaPbAny = service.messageCodec.encodeScala(newState)
-                  Some(ValueEntityAction(Update(ValueEntityUpdate(Some(newStateScalaPbAny)))))
-                case _ =>
-                  None
+            val runningHandler =
+              watchdog.handlerStarted(ValueEntityComponent, init.serviceName, thisEntityId, command.name)
+            val CommandResult(effect: ValueEntityEffectImpl[_]) =
+              try {
+                span.child("handle")(handler._internalHandleCommand(command.name, cmd, context))
+              } catch {
+                case e: EntityException =>
+                  throw e
+                case NonFatal(error) =>
+                  throw EntityException(command, s"Unexpected failure: $error", Some(error))
+              } finally {
+                runningHandler.finished()
+                context.deactivate() // Very important!
               }
 
-              ValueEntityStreamOut(
-                OutReply(
-                  ValueEntityReply(
-                    command.id,
-                    clientAction,
-                    EffectSupport.sideEffectsFrom(service.messageCodec, serializedSecondaryEffect),
-                    action)))
+            val serializedSecondaryEffect = effect.secondaryEffect match {
+              case MessageReplyImpl(message, metadata, sideEffects) =>
+                val encoded = span.child("encode") {
+                  metrics.timeEncode(init.serviceName)(messageCodec.encodeJava(message))
+                }
+                MessageReplyImpl(encoded, metadata, sideEffects)
+              case other => other
+            }
+
+            val clientAction =
+              span.injectInto(serializedSecondaryEffect.replyToClientAction(messageCodec, command.id))
+
+            serializedSecondaryEffect match {
+              case error: ErrorReplyImpl[_] =>
+                commandProcessed(failed = true)
+                ValueEntityStreamOut(OutReply(ValueEntityReply(commandId = command.id, clientAction = clientAction)))
+
+              case _ => // non-error
+                val action: Option[ValueEntityAction] = effect.primaryEffect match {
+                  case DeleteState =>
+                    Some(ValueEntityAction(Delete(ValueEntityDelete())))
+                  case UpdateState(newState) =>
+                    val newStateScalaPbAny = span.child("encode-state") {
+                      metrics.timeEncode(init.serviceName)(messageCodec.encodeScala(newState))
+                    }
+                    payloadSizes
+                      .checkSize(PayloadSizes.StatePayload, service.entityType, thisEntityId, newStateScalaPbAny)
+                    Some(ValueEntityAction(Update(ValueEntityUpdate(Some(newStateScalaPbAny)))))
+                  case _ =>
+                    None
+                }
+                val reply = ValueEntityStreamOut(
+                  OutReply(
+                    ValueEntityReply(
+                      command.id,
+                      clientAction,
+                      span.injectInto(EffectSupport.sideEffectsFrom(messageCodec, serializedSecondaryEffect)),
+                      action)))
+                commandProcessed(failed = false)
+                reply
+            }
+          } catch {
+            case NonFatal(error) =>
+              commandProcessed(failed = true)
+              throw error
           }
 
         case InInit(_) =>
@@ -204,10 +262,15 @@ final class ValueEntitiesImpl(system: ActorSystem, val services: Map[String, Val
       }
       .recover { case error =>
         ErrorHandling.withCorrelationId { correlationId =>
-          LoggerFactory.getLogger(handler.entityClass).error(failureMessageForLog(error), error)
+          val entityLog = LoggerFactory.getLogger(handler.entityClass)
+          val message = failureMessageForLog(error)
+          failureLogging
+            .logFailure(entityLog, ValueEntityComponent, init.serviceName, "", error, correlationId, message)
           ValueEntityStreamOut(OutFailure(Failure(description = s"Unexpected error [$correlationId]")))
         }
       }
+
+    entityInventory.track(ValueEntityComponent, service.entityType, metrics.activeEntity(init.serviceName, entityFlow))
   }
 
 }
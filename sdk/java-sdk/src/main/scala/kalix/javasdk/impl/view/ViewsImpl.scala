@@ -24,6 +24,10 @@ import akka.stream.scaladsl.Source
 import kalix.javasdk.impl.{ Service, ViewFactory }
 import kalix.javasdk.{ Context, Metadata }
 import kalix.javasdk.impl._
+import kalix.javasdk.impl.jfr.CommandHandledEvent
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.metrics.PayloadSizes
+import kalix.javasdk.impl.telemetry.Tracing
 import kalix.javasdk.view.{ UpdateContext, View, ViewContext, ViewCreationContext, ViewOptions }
 import kalix.protocol.{ view => pv }
 import com.google.protobuf.Descriptors
@@ -67,9 +71,16 @@ object ViewsImpl {
 
 /** INTERNAL API */
 final class ViewsImpl(system: ActorSystem, _services: Map[String, ViewService], rootContext: Context) extends pv.Views {
+  import ComponentMetrics.ViewComponent
   import ViewsImpl.log
 
   private final val services = _services.iterator.toMap
+  private val metrics = ComponentMetrics(system)
+  private val tracing = Tracing(system)
+  private val failureLogging = FailureLogging(system)
+  private val payloadSizes = PayloadSizes(system)
+  private val messageCodecs =
+    services.map { case (name, service) => name -> payloadSizes.measured(service.messageCodec) }
 
   /**
    * Handle a full duplex streamed session. One stream will be established per incoming message to the view service.
@@ -99,50 +110,92 @@ final class ViewsImpl(system: ActorSystem, _services: Map[String, ViewService],
               val handler = service.factory.get
                 .create(new ViewContextImpl(service.viewId))
                 .asInstanceOf[ViewRouter[Any, View[Any]]]
+              val messageCodec = messageCodecs(receiveEvent.serviceName)
 
-              val state: Option[Any] =
-                receiveEvent.bySubjectLookupResult.flatMap(row =>
-                  row.value.map(scalaPb => service.messageCodec.decodeMessage(scalaPb)))
-
+              val startTime = metrics.startTime()
+              val commandEvent = CommandHandledEvent.start()
               val commandName = receiveEvent.commandName
-              val msg = service.messageCodec.decodeMessage(receiveEvent.payload.get)
-              val metadata = new MetadataImpl(receiveEvent.metadata.map(_.entries.toVector).getOrElse(Nil))
-              val context = new UpdateContextImpl(service.viewId, commandName, metadata)
-
-              val effect =
-                try {
-                  handler._internalHandleUpdate(state, msg, context)
-                } catch {
-                  case e: ViewException => throw e
-                  case NonFatal(error) =>
-                    throw ViewException(context, s"View unexpected failure: ${error.getMessage}", Some(error))
+              val span =
+                tracing.startCommandSpan(ViewComponent, receiveEvent.serviceName, commandName, receiveEvent.metadata)
+              // recorded once for the update, whether it succeeds or fails at any point of the processing
+              var processed = false
+              def commandProcessed(failed: Boolean): Unit =
+                if (!processed) {
+                  processed = true
+                  metrics.commandProcessed(ViewComponent, receiveEvent.serviceName, commandName, startTime, failed)
+                  commandEvent.finish(ViewComponent, receiveEvent.serviceName, commandName, 0, failed)
+                  span.end(failed)
                 }
-
-              effect match {
-                case ViewUpdateEffectImpl.Update(newState) =>
-                  if (newState == null)
-                    throw ViewException(context, "updateState with null state is not allowed.", None)
-                  val serializedState = ScalaPbAny.fromJavaProto(service.messageCodec.encodeJava(newState))
-                  val upsert = pv.Upsert(Some(pv.Row(value = Some(serializedState))))
-                  val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(upsert))
-                  Source.single(out)
-                case ViewUpdateEffectImpl.Delete =>
-                  val delete = pv.Delete()
-                  val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Delete(delete))
-                  Source.single(out)
-                case ViewUpdateEffectImpl.Ignore =>
-                  // ignore incoming event
-                  val upsert = pv.Upsert(None)
-                  val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(upsert))
-                  Source.single(out)
-                case ViewUpdateEffectImpl.Error(e) =>
-                  Source.failed(new RuntimeException(e))
+              try {
+                val state: Option[Any] =
+                  receiveEvent.bySubjectLookupResult.flatMap(row =>
+                    row.value.map(scalaPb => messageCodec.decodeMessage(scalaPb)))
+                val msg = span.child("decode") {
+                  metrics.timeDecode(receiveEvent.serviceName) {
+                    messageCodec.decodeMessage(receiveEvent.payload.get)
+                  }
+                }
+                val metadata = new MetadataImpl(receiveEvent.metadata.map(_.entries.toVector).getOrElse(Nil))
+                val context = new UpdateContextImpl(service.viewId, commandName, metadata)
+
+                val effect =
+                  try {
+                    span.child("handle")(handler._internalHandleUpdate(state, msg, context))
+                  } catch {
+                    case e: ViewException =>
+                      throw e
+                    case NonFatal(error) =>
+                      throw ViewException(context, s"View unexpected failure: ${error.getMessage}", Some(error))
+                  }
+
+                effect match {
+                  case ViewUpdateEffectImpl.Update(newState) =>
+                    if (newState == null)
+                      throw ViewException(context, "updateState with null state is not allowed.", None)
+                    val serializedState = span.child("encode") {
+                      metrics.timeEncode(receiveEvent.serviceName) {
+                        ScalaPbAny.fromJavaProto(messageCodec.encodeJava(newState))
+                      }
+                    }
+                    commandProcessed(failed = false)
+                    val upsert = pv.Upsert(Some(pv.Row(value = Some(serializedState))))
+                    val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(upsert))
+                    Source.single(out)
+                  case ViewUpdateEffectImpl.Delete =>
+                    commandProcessed(failed = false)
+                    val delete = pv.Delete()
+                    val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Delete(delete))
+                    Source.single(out)
+                  case ViewUpdateEffectImpl.Ignore =>
+                    // ignore incoming event
+                    commandProcessed(failed = false)
+                    val upsert = pv.Upsert(None)
+                    val out = pv.ViewStreamOut(pv.ViewStreamOut.Message.Upsert(upsert))
+                    Source.single(out)
+                  case ViewUpdateEffectImpl.Error(e) =>
+                    commandProcessed(failed = true)
+                    Source.failed(new RuntimeException(e))
+                }
+              } catch {
+                case NonFatal(error) =>
+                  commandProcessed(failed = true)
+                  throw error
               }
 
             case None =>
-              val errMsg = s"Unknown service: ${receiveEvent.serviceName}"
-              log.error(errMsg)
-              Source.failed(new RuntimeException(errMsg))
+              val error = new RuntimeException(s"Unknown service: ${receiveEvent.serviceName}")
+              ErrorHandling.withCorrelationId { correlationId =>
+                failureLogging
+                  .logFailure(
+                    log,
+                    ViewComponent,
+                    receiveEvent.serviceName,
+                    receiveEvent.commandName,
+                    error,
+                    correlationId,
+                    error.getMessage)
+              }
+              Source.failed(error)
           }
 
         case (Seq(), _) =>
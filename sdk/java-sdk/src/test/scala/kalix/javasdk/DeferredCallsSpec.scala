@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk
+
+import java.util.concurrent.{ CompletableFuture, CompletionStage }
+import java.util.concurrent.atomic.AtomicInteger
+
+import scala.jdk.CollectionConverters._
+import scala.jdk.FutureConverters.CompletionStageOps
+
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.stream.Materializer
+import kalix.javasdk.impl.MetadataImpl
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class DeferredCallsSpec extends ScalaTestWithActorTestKit with AnyWordSpecLike with Matchers {
+
+  private val materializer = Materializer(system)
+
+  private def deferredCall(result: => CompletionStage[String]): DeferredCall[String, String] =
+    new DeferredCall[String, String] {
+      override def message(): String = ""
+      override def metadata(): Metadata = MetadataImpl.Empty
+      override def execute(): CompletionStage[String] = result
+    }
+
+  private def failed(message: String): CompletionStage[String] = {
+    val future = new CompletableFuture[String]()
+    future.completeExceptionally(new RuntimeException(message))
+    future
+  }
+
+  "DeferredCalls" should {
+
+    "execute the calls keeping their order" in {
+      val slow = new CompletableFuture[String]()
+      val calls = List(deferredCall(slow), deferredCall(CompletableFuture.completedFuture("b")))
+
+      val result = DeferredCalls.executeAll(calls.asJava, 2, materializer)
+      slow.complete("a")
+
+      result.asScala.futureValue.asScala shouldBe Seq("a", "b")
+    }
+
+    "not have more calls than the parallelism in flight" in {
+      val inFlight = new AtomicInteger()
+      val maxInFlight = new AtomicInteger()
+      val pending = (1 to 10).map(_ => new CompletableFuture[String]())
+      val calls = pending.map { future =>
+        deferredCall {
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), (a, b) => Math.max(a, b))
+          future.whenComplete((_, _) => inFlight.decrementAndGet())
+        }
+      }
+
+      val result = DeferredCalls.executeAllUnordered(calls.asJava, 3, materializer)
+      pending.foreach(_.complete("done"))
+
+      result.asScala.futureValue.size shouldBe 10
+      maxInFlight.get() should be <= 3
+    }
+
+    "fail on the first failed call" in {
+      val calls = List(deferredCall(failed("boom")), deferredCall(CompletableFuture.completedFuture("b")))
+
+      val error = DeferredCalls.executeAll(calls.asJava, 1, materializer).asScala.failed.futureValue
+      error.getMessage shouldBe "boom"
+    }
+
+    "collect the outcome of all calls" in {
+      val calls = List(
+        deferredCall(CompletableFuture.completedFuture("a")),
+        deferredCall(failed("boom")),
+        deferredCall(throw new IllegalStateException("not even started")),
+        deferredCall(CompletableFuture.completedFuture("d")))
+
+      val outcomes =
+        DeferredCalls.executeAllCollectingFailures(calls.asJava, 2, materializer).asScala.futureValue.asScala
+
+      outcomes.map(_.isSuccess) shouldBe Seq(true, false, false, true)
+      outcomes.head.result().get() shouldBe "a"
+      outcomes(1).failure().get().getMessage shouldBe "boom"
+      outcomes(2).failure().get().getMessage shouldBe "not even started"
+      outcomes(3).result().get() shouldBe "d"
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl
+
+import scala.concurrent.{ Future, Promise }
+import scala.concurrent.duration._
+import scala.util.Try
+
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.typed.scaladsl.adapter._
+import kalix.javasdk.impl.metrics.{ ComponentMetrics, DefaultMetricsRegistry }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class DownstreamGuardSpec
+    extends ScalaTestWithActorTestKit("kalix.metrics.enabled = on")
+    with AnyWordSpecLike
+    with Matchers {
+
+  private val allFailures: Try[String] => Boolean = _.isFailure
+
+  "The DownstreamGuard" should {
+    "reject calls above the max in flight" in {
+      val guard = new DownstreamGuard("bulkhead", DownstreamGuard.Settings(None, Some(2)), system.toClassic.scheduler)
+      val first = Promise[String]()
+      val second = Promise[String]()
+      guard.call(first.future, allFailures)
+      guard.call(second.future, allFailures)
+      guard.metrics.inFlight should ===(2)
+
+      var started = false
+      val rejected = guard.call({ started = true; Future.successful("third") }, allFailures)
+      rejected.failed.futureValue shouldBe a[DownstreamGuard.RejectedException]
+      started shouldBe false
+      guard.metrics.rejectedByBulkhead should ===(1L)
+
+      first.success("first")
+      eventually {
+        guard.metrics.inFlight should ===(1)
+      }
+      guard.call(Future.successful("third"), allFailures).futureValue should ===("third")
+    }
+
+    "fail calls right away once the circuit breaker is open" in {
+      val settings =
+        DownstreamGuard.Settings(Some(DownstreamGuard.CircuitBreakerSettings(2, 10.seconds, 1.minute)), None)
+      val guard = new DownstreamGuard("breaker", settings, system.toClassic.scheduler)
+
+      (1 to 2).foreach { _ =>
+        guard.call(Future.failed[String](new RuntimeException("boom")), allFailures).failed.futureValue
+      }
+      eventually {
+        guard.metrics.state should ===("open")
+      }
+      guard.metrics.timesOpened should ===(1L)
+
+      var started = false
+      val rejected = guard.call({ started = true; Future.successful("ok") }, allFailures)
+      rejected.failed.futureValue shouldBe a[DownstreamGuard.RejectedException]
+      started shouldBe false
+      guard.metrics.rejectedByCircuitBreaker should ===(1L)
+      guard.metrics.inFlight should ===(0)
+    }
+
+    "not count outcomes that are not failures towards opening the circuit breaker" in {
+      val settings =
+        DownstreamGuard.Settings(Some(DownstreamGuard.CircuitBreakerSettings(1, 10.seconds, 1.minute)), None)
+      val guard = new DownstreamGuard("not-failures", settings, system.toClassic.scheduler)
+
+      guard.call(Future.successful("not found"), (result: Try[String]) => result.isFailure).futureValue
+      guard.metrics.state should ===("closed")
+    }
+
+    "publish the rejected calls and circuit breaker states to the metrics registry" in {
+      val componentMetrics = ComponentMetrics(system.toClassic)
+      val registry = componentMetrics.registry.asInstanceOf[DefaultMetricsRegistry]
+      val settings =
+        DownstreamGuard.Settings(Some(DownstreamGuard.CircuitBreakerSettings(1, 10.seconds, 1.minute)), Some(1))
+      val guard = new DownstreamGuard("published", settings, system.toClassic.scheduler, Some(componentMetrics))
+
+      val first = Promise[String]()
+      guard.call(first.future, allFailures)
+      guard.call(Future.successful("second"), allFailures).failed.futureValue
+      registry.rejectedCallCount("published", "bulkhead") should ===(1L)
+
+      first.failure(new RuntimeException("boom"))
+      eventually {
+        registry.circuitBreakerState("published") shouldBe Some("open")
+      }
+      guard.call(Future.successful("third"), allFailures).failed.futureValue
+      eventually {
+        registry.rejectedCallCount("published", "circuit-breaker") should ===(1L)
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl
+
+import akka.actor.testkit.typed.scaladsl.LoggingTestKit
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.typed.scaladsl.adapter._
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+import org.slf4j.LoggerFactory
+
+class FailureLoggingSpec
+    extends ScalaTestWithActorTestKit("""
+      kalix.failure-logging {
+        max-logged-per-interval = 2
+        interval = 500ms
+      }
+      """)
+    with AnyWordSpecLike
+    with Matchers {
+
+  private val failureLogging = FailureLogging(system.toClassic)
+  private val log = LoggerFactory.getLogger(classOf[FailureLoggingSpec])
+
+  "The failure logging" should {
+    "log the first failures of a kind and summarize the others" in {
+      val error = new RuntimeException("boom")
+      LoggingTestKit.error("Failure during handling of command Cmd").withOccurrences(2).expect {
+        (1 to 5).foreach { n =>
+          failureLogging
+            .logFailure(
+              log,
+              "action",
+              "com.example.Echo",
+              "Cmd",
+              error,
+              s"id-$n",
+              "Failure during handling of command Cmd")
+        }
+      }
+      LoggingTestKit
+        .error("3 more failures with [java.lang.RuntimeException] in action [com.example.Echo] for command [Cmd]")
+        .expect(())
+    }
+
+    "log different kinds of failures separately" in {
+      LoggingTestKit.error("Failure during handling of command Other").withOccurrences(2).expect {
+        failureLogging.logFailure(
+          log,
+          "action",
+          "com.example.Echo",
+          "Other",
+          new IllegalArgumentException("boom"),
+          "id-1",
+          "Failure during handling of command Other")
+        failureLogging.logFailure(
+          log,
+          "action",
+          "com.example.Echo",
+          "Other",
+          new IllegalStateException("boom"),
+          "id-2",
+          "Failure during handling of command Other")
+      }
+    }
+
+    "log the same failure of different services separately, to the logger of each" in {
+      val error = new RuntimeException("boom")
+      val logA = LoggerFactory.getLogger("com.example.A")
+      val logB = LoggerFactory.getLogger("com.example.B")
+      val message = "Failure during handling of command Shared"
+      // rate limited per service, so two logged for each
+      LoggingTestKit.error(message).withOccurrences(4).expect {
+        (1 to 3).foreach { n =>
+          failureLogging.logFailure(logA, "action", "com.example.A", "Shared", error, s"a-$n", message)
+          failureLogging.logFailure(logB, "action", "com.example.B", "Shared", error, s"b-$n", message)
+        }
+      }
+      LoggingTestKit
+        .custom { event =>
+          Set("com.example.A", "com.example.B").exists { service =>
+            event.loggerName == service &&
+            event.message.startsWith(
+              s"1 more failures with [java.lang.RuntimeException] in action [$service] for command [Shared]")
+          }
+        }
+        .withOccurrences(2)
+        .expect(())
+    }
+  }
+}
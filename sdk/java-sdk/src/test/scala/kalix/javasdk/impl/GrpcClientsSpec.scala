@@ -19,27 +19,50 @@ package kalix.javasdk.impl
 import akka.Done
 import akka.actor.ClassicActorSystemProvider
 import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.ActorSystem
 import akka.grpc.GrpcClientSettings
 import akka.grpc.javadsl.AkkaGrpcClient
+import akka.http.scaladsl.Http
+import akka.pattern.after
+import akka.testkit.SocketUtil
+import akka.testkit.TestKit
 import kalix.javasdk.actionspec.actionspec_api.ActionSpecService
 import kalix.javasdk.actionspec.actionspec_api.ActionSpecServiceClient
+import kalix.javasdk.hedging.hedging_api.HedgingService
+import kalix.javasdk.hedging.hedging_api.HedgingServiceClient
+import kalix.javasdk.hedging.hedging_api.HedgingServiceHandler
+import kalix.javasdk.hedging.hedging_api.Request
+import kalix.javasdk.hedging.hedging_api.Response
 import com.typesafe.config.ConfigFactory
+import io.grpc.{ CallCredentials, Metadata, Status }
 import org.scalatest.concurrent.ScalaFutures
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpecLike
 
 import java.util.concurrent.CompletionStage
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.Future
 import scala.concurrent.Promise
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
 import scala.jdk.FutureConverters.FutureOps
 
 // dummy instead of depending on actual generated Akka gRPC client to keep it simple
-trait PretendService {}
+trait PretendService {
+  def handledBy(): PretendServiceClient
+  def fail(): Unit
+}
 object PretendServiceClient {
   def create(settings: GrpcClientSettings, systemProvider: ClassicActorSystemProvider): PretendServiceClient =
     new PretendServiceClient(settings)
 }
 class PretendServiceClient(val settings: GrpcClientSettings) extends PretendService with AkkaGrpcClient {
   private val closePromise = Promise[Done]()
+
+  def handledBy(): PretendServiceClient = this
+
+  def fail(): Unit = throw new IllegalStateException("failed in the client")
+
   def close(): CompletionStage[Done] = {
     closePromise.success(Done)
     closed()
@@ -48,6 +71,20 @@ class PretendServiceClient(val settings: GrpcClientSettings) extends PretendServ
   def closed(): CompletionStage[Done] = closePromise.future.asJava
 }
 
+// the first attempt of each call is slow, any hedge of it answers right away
+class SlowFirstAttemptHedgingService(system: ActorSystem) extends HedgingService {
+  val attempts = new AtomicInteger()
+
+  private def handle(in: Request): Future[Response] =
+    if (attempts.incrementAndGet() == 1)
+      after(1.second, system.scheduler)(Future.successful(Response(s"original-${in.id}")))(system.dispatcher)
+    else Future.successful(Response(s"hedge-${in.id}"))
+
+  override def get(in: Request): Future[Response] = handle(in)
+  override def put(in: Request): Future[Response] = handle(in)
+  override def post(in: Request): Future[Response] = handle(in)
+}
+
 object GrpcClientsSpec {
   def config = ConfigFactory.parseString("""
      |akka.grpc.client.c {
@@ -60,6 +97,21 @@ object GrpcClientsSpec {
      |  deadline = 10m
      |  user-agent = "Akka-gRPC"
      |}
+     |akka.grpc.client.d {
+     |  deadline = 3s
+     |  hedging {
+     |    max-attempts = 2
+     |    delay = 50ms
+     |  }
+     |}
+     |akka.grpc.client.f {
+     |  circuit-breaker {
+     |    max-failures = 5
+     |    call-timeout = 10s
+     |    reset-timeout = 30s
+     |  }
+     |  max-in-flight = 10
+     |}
      |""".stripMargin)
 }
 
@@ -100,6 +152,156 @@ class GrpcClientsSpec
       }
     }
 
+    "apply the configured call settings to a project inter-service call" in {
+      val clientForD = GrpcClients(system).getGrpcClient(classOf[PretendService], "d")
+      clientForD match {
+        case client: PretendServiceClient =>
+          client.settings.serviceName should ===("d")
+          client.settings.defaultPort should ===(80)
+          client.settings.deadline should ===(3.seconds)
+      }
+      // no idempotent methods to hedge
+      GrpcClients(system).getHedgingMetrics("d") shouldBe None
+    }
+
+    "guard the calls to a service with a circuit breaker and bulkhead when configured" in {
+      val clientForF = GrpcClients(system).getGrpcClient(classOf[PretendService], "f")
+      clientForF match {
+        case client: PretendServiceClient =>
+          // still a project inter-service call
+          client.settings.serviceName should ===("f")
+          client.settings.defaultPort should ===(80)
+      }
+      val metrics = GrpcClients(system).getDownstreamGuardMetrics("f").get
+      metrics.state should ===("closed")
+      metrics.inFlight should ===(0)
+
+      GrpcClients(system).getDownstreamGuardMetrics("d") shouldBe None
+    }
+
+    "apply the given call settings" in {
+      val clientForE = GrpcClients(system).getGrpcClient(classOf[PretendService], "e")
+      val clientForEWithDeadline = GrpcClients(system)
+        .getGrpcClient(classOf[PretendService], "e", GrpcClients.CallSettings(Some(1.second), None))
+      (clientForEWithDeadline shouldNot be).theSameInstanceAs(clientForE)
+      clientForEWithDeadline match {
+        case client: PretendServiceClient =>
+          client.settings.deadline should ===(1.second)
+      }
+    }
+
+    "add the header to the calls and still apply the call settings of the service" in {
+      val clientForD = GrpcClients(system).getGrpcClient(classOf[PretendService], "d", 9000, "some-service")
+      clientForD match {
+        case client: PretendServiceClient =>
+          client.settings.serviceName should ===("d")
+          client.settings.defaultPort should ===(9000)
+          client.settings.deadline should ===(3.seconds)
+
+          val applied = Promise[Metadata]()
+          client.settings.callCredentials.get.applyRequestMetadata(
+            null,
+            (command: Runnable) => command.run(),
+            new CallCredentials.MetadataApplier {
+              override def apply(headers: Metadata): Unit = applied.success(headers)
+              override def fail(status: Status): Unit = applied.failure(status.asException())
+            })
+          val headers = applied.future.futureValue
+          headers.get(Metadata.Key.of("impersonate-kalix-service", Metadata.ASCII_STRING_MARSHALLER)) should ===(
+            "some-service")
+      }
+    }
+
+    "spread calls over a pool of clients when configured" in {
+      val pooledSystem = ActorSystem(
+        "GrpcClientsSpec-pooled",
+        ConfigFactory.parseString("kalix.grpc-client.channels-per-client = 2").withFallback(GrpcClientsSpec.config))
+      try {
+        val client = GrpcClients(pooledSystem).getGrpcClient(classOf[PretendService], "a")
+        // the same client for every lookup, the channel is selected for each call instead
+        GrpcClients(pooledSystem).getGrpcClient(classOf[PretendService], "a") shouldBe theSameInstanceAs(client)
+
+        val handledBy = (1 to 6).map(_ => client.handledBy())
+        handledBy.distinct.size should ===(2)
+        handledBy.groupBy(identity).values.map(_.size).toSet should ===(Set(3))
+        (handledBy(1) shouldNot be).theSameInstanceAs(handledBy(0))
+        handledBy(2) shouldBe theSameInstanceAs(handledBy(0))
+
+        // exceptions thrown by the pooled client are passed on as is
+        intercept[IllegalStateException](client.fail()).getMessage should ===("failed in the client")
+      } finally {
+        TestKit.shutdownActorSystem(pooledSystem)
+      }
+    }
+
+    "only select the methods marked as idempotent for hedging" in {
+      GrpcClients(system).idempotentMethods(classOf[HedgingService]).map(_.getName) should ===(List("Get", "Put"))
+      GrpcClients(system).idempotentMethods(classOf[ActionSpecService]) shouldBe empty
+    }
+
+    "generate a hedging service config for the idempotent methods" in {
+      val grpcClients = GrpcClients(system)
+      val serviceConfig = grpcClients.hedgingServiceConfig(
+        grpcClients.idempotentMethods(classOf[HedgingService]),
+        GrpcClients.HedgingSettings(3, 50.millis))
+
+      val methodConfigs = serviceConfig.get("methodConfig").asInstanceOf[java.util.List[java.util.Map[String, AnyRef]]]
+      methodConfigs.size should ===(1)
+      val methodConfig = methodConfigs.get(0)
+      methodConfig.get("name") should ===(
+        List(
+          Map[String, AnyRef]("service" -> "hedging.HedgingService", "method" -> "Get").asJava,
+          Map[String, AnyRef]("service" -> "hedging.HedgingService", "method" -> "Put").asJava).asJava)
+      methodConfig.get("hedgingPolicy") should ===(
+        Map[String, AnyRef]("maxAttempts" -> Double.box(3), "hedgingDelay" -> "0.05s").asJava)
+    }
+
+    "hedge slow calls to idempotent methods and count the hedges sent and won" in {
+      val port = SocketUtil.temporaryLocalPort()
+      val hedgingSystem = ActorSystem(
+        "GrpcClientsSpec-hedging",
+        ConfigFactory
+          .parseString(s"""
+            |akka.http.server.preview.enable-http2 = on
+            |akka.grpc.client.hedged {
+            |  host = "127.0.0.1"
+            |  port = $port
+            |  use-tls = false
+            |  hedging {
+            |    max-attempts = 2
+            |    delay = 100ms
+            |  }
+            |}
+            |""".stripMargin)
+          .withFallback(GrpcClientsSpec.config))
+      try {
+        val service = new SlowFirstAttemptHedgingService(hedgingSystem)
+        Http(hedgingSystem)
+          .newServerAt("127.0.0.1", port)
+          .bind(HedgingServiceHandler(service)(hedgingSystem))
+          .futureValue
+
+        val grpcClients = GrpcClients(hedgingSystem)
+        val client = grpcClients.getGrpcClient(classOf[HedgingService], "hedged")
+        client shouldBe a[HedgingServiceClient]
+
+        client.get(Request("1")).futureValue should ===(Response("hedge-1"))
+        service.attempts.get() should ===(2)
+        val metrics = grpcClients.getHedgingMetrics("hedged").get
+        metrics.hedgesSent should ===(1L)
+        metrics.hedgesWon should ===(1L)
+
+        // not idempotent, so no hedge even though the response comes after the hedging delay
+        service.attempts.set(0)
+        client.post(Request("2")).futureValue should ===(Response("original-2"))
+        service.attempts.get() should ===(1)
+        metrics.hedgesSent should ===(1L)
+        metrics.hedgesWon should ===(1L)
+      } finally {
+        TestKit.shutdownActorSystem(hedgingSystem)
+      }
+    }
+
     "create an instance of an actual generated gRPC client" in {
       // this is actually an Akka gRPC scala client, so no coverage for an actual generated Java Akka gRPC client here
       val client = GrpcClients(system).getGrpcClient(classOf[ActionSpecService], "actual")
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl
+
+import akka.NotUsed
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.typed.scaladsl.adapter._
+import akka.stream.javadsl.Source
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import io.grpc.Status
+import io.grpc.StatusRuntimeException
+import kalix.javasdk.Metadata
+import kalix.javasdk.SideEffect
+import kalix.javasdk.action.{ Action, MessageEnvelope }
+import kalix.javasdk.actionspec.ActionspecApi
+import kalix.javasdk.actionspec.actionspec_api.{ ActionSpecService, In, Out }
+import kalix.javasdk.impl.action.{ ActionEffectImpl, ActionRouter, ActionService, ActionsImpl }
+import kalix.javasdk.impl.metrics.{ ComponentMetrics, DefaultMetricsRegistry }
+import kalix.javasdk.impl.telemetry.Tracing
+import kalix.protocol.discovery.IdentificationInfo
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class LocalActionClientsSpec extends ScalaTestWithActorTestKit("""
+    kalix.metrics.enabled = on
+    """) with AnyWordSpecLike with Matchers {
+
+  private val classicSystem = system.toClassic
+  private val serviceDescriptor = ActionspecApi.getDescriptor.findServiceByName("ActionSpecService")
+  private val serviceName = serviceDescriptor.getFullName
+
+  @volatile private var lastMetadata: Metadata = _
+
+  class TestAction extends Action
+
+  // replies with the command name and the field of the message, as seen by the action
+  private val handler = new ActionRouter[TestAction](new TestAction) {
+    override def handleUnary(commandName: String, message: MessageEnvelope[Any]): Action.Effect[_] = {
+      lastMetadata = message.metadata()
+      val field = message.payload() match {
+        case in: In          => in.field
+        case any: ScalaPbAny => any.typeUrl
+      }
+      field match {
+        case "ignore" => ActionEffectImpl.IgnoreEffect()
+        case "unknown" =>
+          new Action.Effect[Out] {
+            override def addSideEffect(sideEffects: SideEffect*): Action.Effect[Out] = this
+            override def addSideEffects(sideEffects: java.util.Collection[SideEffect]): Action.Effect[Out] = this
+          }
+        case _ => ActionEffectImpl.ReplyEffect(Out(s"$commandName: $field"), None, Nil)
+      }
+    }
+    override def handleStreamedOut(
+        commandName: String,
+        message: MessageEnvelope[Any]): Source[Action.Effect[_], NotUsed] =
+      ???
+    override def handleStreamedIn(
+        commandName: String,
+        stream: Source[MessageEnvelope[Any], NotUsed]): Action.Effect[_] =
+      ???
+    override def handleStreamed(
+        commandName: String,
+        stream: Source[MessageEnvelope[Any], NotUsed]): Source[Action.Effect[_], NotUsed] =
+      ???
+  }
+
+  private val actions = {
+    val anySupport = new AnySupport(Array(ActionspecApi.getDescriptor), getClass.getClassLoader)
+    val service = new ActionService(_ => handler, serviceDescriptor, Array(), anySupport, None)
+    new ActionsImpl(classicSystem, Map(serviceName -> service), new AbstractContext(classicSystem) {})
+  }
+
+  // the proxy host and port are never set, so any call going to the proxy fails right away
+  private val grpcClients = GrpcClients(classicSystem)
+  private val localClients = new LocalActionClients(actions, grpcClients, Tracing(classicSystem))
+  private val client = localClients.clientFor(classOf[ActionSpecService]).get
+
+  "The local action clients" should {
+
+    "handle unary calls in process, matching the generated method names to the proto methods" in {
+      client.unary(In("hello")).futureValue shouldBe Out("Unary: hello")
+      client.unaryAny(ScalaPbAny("type.googleapis.com/actionspec.In")).futureValue shouldBe
+      Out("UnaryAny: type.googleapis.com/actionspec.In")
+    }
+
+    "reply with not found to an ignore, like the proxy" in {
+      val exception = client.unary(In("ignore")).failed.futureValue
+      exception shouldBe a[StatusRuntimeException]
+      exception.asInstanceOf[StatusRuntimeException].getStatus.getCode shouldBe Status.Code.NOT_FOUND
+    }
+
+    "fail with an unexpected error for an unknown effect" in {
+      val exception = client.unary(In("unknown")).failed.futureValue
+      exception shouldBe a[StatusRuntimeException]
+      val status = exception.asInstanceOf[StatusRuntimeException].getStatus
+      status.getCode shouldBe Status.Code.UNKNOWN
+      status.getDescription should startWith("Unexpected error [")
+    }
+
+    "pass streamed calls on to the client for the proxy" in {
+      val exception = intercept[IllegalStateException] {
+        client.streamedOut(In("hello"))
+      }
+      // thrown by the proxy client lookup, not wrapped by the reflective call
+      exception.getMessage should include("proxy hostname and port are not set")
+    }
+
+    "pass the principal of this service as metadata" in {
+      grpcClients.setIdentificationInfo(Some(IdentificationInfo(selfDeploymentName = "my-service")))
+      try {
+        client.unary(In("hello")).futureValue
+        lastMetadata.get(MetadataImpl.PrincipalsService).orElse(null) shouldBe "my-service"
+      } finally {
+        grpcClients.setIdentificationInfo(None)
+      }
+    }
+
+    "record the metrics of the commands handled in process" in {
+      val registry = ComponentMetrics(classicSystem).registry.asInstanceOf[DefaultMetricsRegistry]
+      val before =
+        registry.commandMetrics(ComponentMetrics.ActionComponent, serviceName, "Unary").fold(0L)(_.duration.count)
+      client.unary(In("hello")).futureValue
+      eventually {
+        registry
+          .commandMetrics(ComponentMetrics.ActionComponent, serviceName, "Unary")
+          .map(_.duration.count) shouldBe Some(before + 1)
+      }
+    }
+
+    "not handle calls to services that are not actions of this service" in {
+      localClients.clientFor(classOf[PretendService]) shouldBe None
+    }
+  }
+}
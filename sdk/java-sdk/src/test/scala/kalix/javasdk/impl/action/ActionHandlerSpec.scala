@@ -40,6 +40,8 @@ import kalix.protocol.component.Reply
 import com.google.protobuf
 import com.google.protobuf.any.{ Any => ScalaPbAny }
 import com.typesafe.config.ConfigFactory
+import io.grpc.Status
+import io.grpc.StatusRuntimeException
 import org.scalatest.BeforeAndAfterAll
 import org.scalatest.Inside
 import org.scalatest.OptionValues
@@ -69,7 +71,10 @@ class ActionHandlerSpec
   private val serviceName = serviceDescriptor.getFullName
   private val anySupport = new AnySupport(Array(ActionspecApi.getDescriptor), this.getClass.getClassLoader)
 
-  def create(handler: ActionRouter[_]): Actions = {
+  def create(handler: ActionRouter[_]): Actions =
+    createImpl(handler)
+
+  def createImpl(handler: ActionRouter[_]): ActionsImpl = {
     val actionFactory: ActionFactory = _ => handler
     val service = new ActionService(actionFactory, serviceDescriptor, Array(), anySupport, None)
 
@@ -285,6 +290,22 @@ class ActionHandlerSpec
 
     }
 
+    "complete an already completed async effect without an extra dispatcher hop" in {
+      val service = create(new AbstractHandler {
+
+        override def handleUnary(commandName: String, message: MessageEnvelope[Any]): Action.Effect[Any] =
+          createAsyncReplyEffect(Future.successful(createReplyEffect("out: " + extractInField(message))))
+      })
+
+      val futureReply = service.handleUnary(ActionCommand(serviceName, "Unary", createInPayload("in")))
+      // response mapping runs on the completing thread, so nothing is scheduled on the dispatcher
+      futureReply.isCompleted shouldBe true
+
+      inside(futureReply.value.value.get.response) { case ActionResponse.Response.Reply(Reply(payload, _, _)) =>
+        extractOutField(payload) should ===("out: in")
+      }
+    }
+
     "turn async failure into failure response" in {
       val service = create(new AbstractHandler {
 
@@ -301,6 +322,34 @@ class ActionHandlerSpec
       }
     }
 
+    "invoke unary commands in process" in {
+      val service = createImpl(new AbstractHandler {
+
+        override def handleUnary(commandName: String, message: MessageEnvelope[Any]): Action.Effect[Any] =
+          createReplyEffect("out: " + extractInField(message))
+      })
+
+      service.canHandleLocally(serviceDescriptor) shouldBe true
+      val in = ActionspecApi.In.newBuilder().setField("in").build()
+      val reply = Await.result(service.handleLocalUnary(serviceName, "Unary", in, MetadataImpl.Empty), 10.seconds)
+      reply.asInstanceOf[ActionspecApi.Out].getField should ===("out: in")
+    }
+
+    "turn error effects of in process commands into failed calls" in {
+      val service = createImpl(new AbstractHandler {
+
+        override def handleUnary(commandName: String, message: MessageEnvelope[Any]): Action.Effect[Any] =
+          ActionEffectImpl.ErrorEffect("not found", Some(Status.Code.NOT_FOUND), Nil)
+      })
+
+      val in = ActionspecApi.In.newBuilder().setField("in").build()
+      val failure = service.handleLocalUnary(serviceName, "Unary", in, MetadataImpl.Empty).failed.futureValue
+      inside(failure) { case ex: StatusRuntimeException =>
+        ex.getStatus.getCode should ===(Status.Code.NOT_FOUND)
+        ex.getStatus.getDescription should ===("not found")
+      }
+    }
+
   }
 
   private def createOutAny(field: String): Any =
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.eventsourcedentity
+
+import kalix.javasdk.impl.eventsourcedentity.RecoveryProfiler.{ EntityTypeRecovery, Recovery }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class RecoveryProfilerSpec extends AnyWordSpec with Matchers {
+
+  "The recovery profiler" should {
+    "aggregate the recoveries of an entity type" in {
+      val recovery = new EntityTypeRecovery(topN = 2)
+      recovery.record(Recovery("a", eventsReplayed = 0, bytesDecoded = 0, durationNanos = 500000))
+      recovery.record(Recovery("b", eventsReplayed = 120, bytesDecoded = 4000, durationNanos = 30000000))
+
+      recovery.getRecoveries shouldBe 2
+      recovery.getEventsReplayed shouldBe 120
+      recovery.getBytesDecoded shouldBe 4000
+      recovery.getMaxEventsReplayed shouldBe 120
+      recovery.getMaxRecoveryTimeMillis shouldBe 30.0
+      recovery.getEventsReplayedHistogram.get("<=0") shouldBe 1
+      recovery.getEventsReplayedHistogram.get("<=250") shouldBe 1
+      recovery.getRecoveryTimeMillisHistogram.get("<=1") shouldBe 1
+      recovery.getRecoveryTimeMillisHistogram.get("<=50") shouldBe 1
+    }
+
+    "keep the slowest recoveries, once per entity" in {
+      val recovery = new EntityTypeRecovery(topN = 2)
+      recovery.record(Recovery("a", 10, 100, durationNanos = 1000))
+      recovery.record(Recovery("b", 10, 100, durationNanos = 3000))
+      recovery.record(Recovery("a", 10, 100, durationNanos = 2000))
+      recovery.record(Recovery("c", 10, 100, durationNanos = 1500))
+
+      recovery.worstRecoveries.map(r => r.entityId -> r.durationNanos) shouldBe Vector("b" -> 3000, "a" -> 2000)
+
+      recovery.record(Recovery("c", 10, 100, durationNanos = 5000))
+      recovery.worstRecoveries.map(_.entityId) shouldBe Vector("c", "b")
+    }
+  }
+}
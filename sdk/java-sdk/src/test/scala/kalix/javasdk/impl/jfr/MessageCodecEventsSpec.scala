@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.jfr
+
+import java.nio.file.Files
+
+import scala.jdk.CollectionConverters._
+
+import com.example.shoppingcart.ShoppingCartApi
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import com.google.protobuf.ByteString
+import jdk.jfr.Recording
+import jdk.jfr.consumer.{ RecordedEvent, RecordingFile }
+import kalix.javasdk.impl.{ AnySupport, SerializationException }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class MessageCodecEventsSpec extends AnyWordSpec with Matchers {
+
+  private val anySupport =
+    new AnySupport(Array(ShoppingCartApi.getDescriptor), getClass.getClassLoader, "com.example")
+
+  private val addLineItem = ShoppingCartApi.AddLineItem
+    .newBuilder()
+    .setName("item")
+    .setProductId("id")
+    .setQuantity(10)
+    .build()
+
+  /**
+   * Runs the body with the given events enabled and returns the events recorded by this thread, other specs may be
+   * encoding messages in the same JVM at the same time.
+   */
+  private def recorded(eventName: String)(body: => Unit): Seq[RecordedEvent] = {
+    val recording = new Recording()
+    try {
+      recording.enable(eventName)
+      recording.start()
+      body
+      recording.stop()
+      val file = Files.createTempFile("kalix-message-codec", ".jfr")
+      try {
+        recording.dump(file)
+        val threadName = Thread.currentThread().getName
+        RecordingFile
+          .readAllEvents(file)
+          .asScala
+          .toSeq
+          .filter(event =>
+            event.getEventType.getName == eventName && event.getThread != null &&
+            event.getThread.getJavaName == threadName)
+      } finally Files.delete(file)
+    } finally recording.close()
+  }
+
+  "The message codec events" should {
+
+    "record the type url and size of encoded messages" in {
+      var encoded: ScalaPbAny = null
+      val events = recorded("kalix.MessageEncode") {
+        encoded = anySupport.encodeScala(addLineItem)
+      }
+      events should have size 1
+      events.head.getString("typeUrl") should ===(encoded.typeUrl)
+      events.head.getLong("size") should ===(encoded.value.size.toLong)
+      events.head.getBoolean("failed") shouldBe false
+    }
+
+    "record messages that could not be encoded as failed" in {
+      val events = recorded("kalix.MessageEncode") {
+        a[SerializationException] should be thrownBy anySupport.encodeScala(null)
+      }
+      events should have size 1
+      events.head.getString("typeUrl") shouldBe null
+      events.head.getBoolean("failed") shouldBe true
+    }
+
+    "record the type url and size of decoded messages" in {
+      val any = anySupport.encodeScala(addLineItem)
+      val events = recorded("kalix.MessageDecode") {
+        anySupport.decodeMessage(any) should ===(addLineItem)
+      }
+      events should have size 1
+      events.head.getString("typeUrl") should ===(any.typeUrl)
+      events.head.getLong("size") should ===(any.value.size.toLong)
+      events.head.getBoolean("failed") shouldBe false
+    }
+
+    "record messages that could not be decoded as failed" in {
+      val any = ScalaPbAny("com.example/com.example.DoesNotExist", ByteString.copyFromUtf8("nope"))
+      val events = recorded("kalix.MessageDecode") {
+        a[SerializationException] should be thrownBy anySupport.decodeMessage(any)
+      }
+      events should have size 1
+      events.head.getString("typeUrl") should ===(any.typeUrl)
+      events.head.getLong("size") should ===(4L)
+      events.head.getBoolean("failed") shouldBe true
+    }
+
+    "not record anything unless the events are enabled" in {
+      val events = recorded("kalix.MessageDecode") {
+        anySupport.encodeScala(addLineItem)
+      }
+      events shouldBe empty
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class DefaultMetricsRegistrySpec extends AnyWordSpec with Matchers {
+
+  "The default metrics registry" should {
+    "record command latencies in cumulative buckets" in {
+      val histogram = new DefaultMetricsRegistry.Histogram
+      histogram.record(50000) // 50µs
+      histogram.record(2000000) // 2ms
+      histogram.record(20000000000L) // 20s, above the largest bucket
+
+      val counts = histogram.cumulativeCounts
+      counts.head shouldBe 1
+      counts(3) shouldBe 1 // <= 1ms
+      counts(4) shouldBe 2 // <= 2.5ms
+      counts(counts.length - 2) shouldBe 2 // <= 10s
+      counts.last shouldBe 3
+      histogram.count shouldBe 3
+    }
+
+    "count commands, errors and active entities per service" in {
+      val registry = new DefaultMetricsRegistry
+      registry.recordCommand("value-entity", "com.example.Counter", "Increase", 1000000, failed = false)
+      registry.recordCommand("value-entity", "com.example.Counter", "Increase", 1000000, failed = true)
+      registry.activeEntitiesChanged("com.example.Counter", 1)
+      registry.activeEntitiesChanged("com.example.Counter", 1)
+      registry.activeEntitiesChanged("com.example.Counter", -1)
+
+      val metrics = registry.commandMetrics("value-entity", "com.example.Counter", "Increase").get
+      metrics.duration.count shouldBe 2
+      metrics.errors.sum() shouldBe 1
+      registry.activeEntityCount("com.example.Counter") shouldBe 1
+    }
+
+    "render the metrics in the Prometheus text format" in {
+      val registry = new DefaultMetricsRegistry
+      registry.recordCommand("action", "com.example.Echo", "Say\"Hi\"", 300000, failed = true)
+      registry.recordDecode("com.example.Echo", 1000)
+      registry.activeEntitiesChanged("com.example.Counter", 1)
+
+      val text = registry.prometheusText()
+      val labels = """component="action",service="com.example.Echo",command="Say\"Hi\"""""
+      text should include("# TYPE kalix_command_duration_seconds histogram")
+      text should include(s"""kalix_command_duration_seconds_bucket{$labels,le="0.00025"} 0""")
+      text should include(s"""kalix_command_duration_seconds_bucket{$labels,le="0.0005"} 1""")
+      text should include(s"""kalix_command_duration_seconds_bucket{$labels,le="+Inf"} 1""")
+      text should include(s"""kalix_command_duration_seconds_count{$labels} 1""")
+      text should include(s"""kalix_command_errors_total{$labels} 1""")
+      text should include(
+        """kalix_message_codec_duration_seconds_count{service="com.example.Echo",operation="decode"} 1""")
+      text should include("""kalix_active_entities{service="com.example.Counter"} 1""")
+    }
+
+    "count the KalixClient GET cache lookups per path and outcome" in {
+      val registry = new DefaultMetricsRegistry
+      registry.recordGetCacheLookup("/message/{msg}", "miss")
+      registry.recordGetCacheLookup("/message/{msg}", "hit")
+      registry.recordGetCacheLookup("/message/{msg}", "hit")
+
+      registry.getCacheLookups("/message/{msg}", "hit") shouldBe 2
+      registry.getCacheLookups("/message/{msg}", "coalesced") shouldBe 0
+      registry.prometheusText() should include(
+        """kalix_client_get_cache_lookups_total{path="/message/{msg}",outcome="miss"} 1""")
+    }
+
+    "render the hedging and downstream guard metrics of the clients" in {
+      val registry = new DefaultMetricsRegistry
+      registry.hedgeSent("com.example.Inventory")
+      registry.hedgeSent("com.example.Inventory")
+      registry.hedgeWon("com.example.Inventory")
+      registry.downstreamCallRejected("inventory", "bulkhead")
+      registry.circuitBreakerStateChanged("inventory", "open")
+
+      registry.rejectedCallCount("inventory", "bulkhead") shouldBe 1
+      registry.circuitBreakerState("inventory") shouldBe Some("open")
+      val text = registry.prometheusText()
+      text should include("""kalix_client_hedges_sent_total{service="com.example.Inventory"} 2""")
+      text should include("""kalix_client_hedges_won_total{service="com.example.Inventory"} 1""")
+      text should include("""kalix_client_calls_rejected_total{target="inventory",reason="bulkhead"} 1""")
+      text should include("""kalix_client_circuit_breaker_state{target="inventory",state="open"} 1""")
+      text should include("""kalix_client_circuit_breaker_state{target="inventory",state="closed"} 0""")
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import java.lang.management.ManagementFactory
+
+import javax.management.ObjectName
+
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.typed.scaladsl.adapter._
+import akka.stream.scaladsl.Flow
+import akka.stream.scaladsl.Keep
+import akka.stream.testkit.scaladsl.TestSink
+import akka.stream.testkit.scaladsl.TestSource
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class EntityInventorySpec
+    extends ScalaTestWithActorTestKit("""
+      kalix.entity-inventory.enabled = on
+      akka.http.server.http2.max-concurrent-streams = 10
+      """)
+    with AnyWordSpecLike
+    with Matchers {
+
+  private val inventory = EntityInventory(system.toClassic)
+
+  private def runEntity() = {
+    val flow = inventory.track(ComponentMetrics.ValueEntityComponent, "cart", Flow[String])
+    TestSource
+      .probe[String](system.toClassic)
+      .via(flow)
+      .toMat(TestSink.probe[String](system.toClassic))(Keep.both)
+      .run()
+  }
+
+  "The entity inventory" should {
+    "count the active entities from materialization until the flow completes" in {
+      val entities = (1 to 3).map(_ => runEntity())
+      val stats = inventory.stats(ComponentMetrics.ValueEntityComponent, "cart").get
+      stats.getActiveEntities shouldBe 3
+      stats.getMaxConcurrentStreams shouldBe 10
+
+      entities.take(2).foreach { case (in, out) =>
+        out.request(1)
+        in.sendComplete()
+        out.expectComplete()
+      }
+      eventually {
+        stats.getActiveEntities shouldBe 1
+      }
+      stats.getMaxActiveEntities shouldBe 3
+      stats.getActivations shouldBe 3
+      stats.getPassivations shouldBe 2
+      stats.getMeanLifetimeMillis should be > 0.0
+
+      stats.resetMaxActiveEntities()
+      stats.getMaxActiveEntities shouldBe 1
+    }
+
+    "expose the inventory over JMX" in {
+      val name = new ObjectName(
+        s"kalix:type=ActiveEntities,componentType=${ObjectName.quote(ComponentMetrics.ValueEntityComponent)}," +
+        s"entityType=${ObjectName.quote("cart")}")
+      ManagementFactory.getPlatformMBeanServer.getAttribute(name, "MaxConcurrentStreams") shouldBe 10L
+    }
+
+    "not count anything for a flow that is not materialized" in {
+      inventory.track(ComponentMetrics.EventSourcedEntityComponent, "unused", Flow[String])
+      inventory.stats(ComponentMetrics.EventSourcedEntityComponent, "unused").get.getActivations shouldBe 0
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class HotKeyTrackerSpec extends AnyWordSpec with Matchers {
+
+  "The count-min sketch" should {
+    "never estimate below the actual count" in {
+      val sketch = new CountMinSketch(depth = 4, width = 64)
+      (1 to 1000).foreach(n => sketch.add(s"entity-${n % 100}"))
+      (0 until 100).foreach(n => sketch.estimate(s"entity-$n") should be >= 10L)
+      sketch.estimate("entity-0") should be < 100L
+    }
+  }
+
+  "The hot key window" should {
+    "keep the most frequent entity ids" in {
+      val window = new HotKeyTracker.Window(topK = 2, sketchDepth = 4, sketchWidth = 1024)
+      (1 to 50).foreach(_ => window.add("hot"))
+      (1 to 20).foreach(_ => window.add("warm"))
+      (1 to 100).foreach(n => window.add(s"cold-$n"))
+
+      window.totalCommands shouldBe 170
+      window.topKeys.map(_._1) shouldBe Seq("hot", "warm")
+      window.topKeys.head._2 should be >= 50L
+    }
+  }
+}
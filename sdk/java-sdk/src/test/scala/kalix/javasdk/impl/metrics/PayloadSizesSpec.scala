@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import akka.actor.testkit.typed.scaladsl.LoggingTestKit
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.typed.scaladsl.adapter._
+import com.google.protobuf.ByteString
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import kalix.javasdk.impl.AnySupport
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class PayloadSizesSpec
+    extends ScalaTestWithActorTestKit("""
+      kalix.metrics.enabled = on
+      kalix.payload-sizes {
+        max-state-size = 100B
+        max-event-size = 0
+        warn-interval = 1h
+      }
+      """)
+    with AnyWordSpecLike
+    with Matchers {
+
+  private val payloadSizes = PayloadSizes(system.toClassic)
+  private val registry = ComponentMetrics(system.toClassic).registry.asInstanceOf[DefaultMetricsRegistry]
+
+  private def payload(size: Int) =
+    ScalaPbAny("type.googleapis.com/com.example.State", ByteString.copyFrom(new Array[Byte](size)))
+
+  "The payload sizes" should {
+    "record the size of the payloads encoded and decoded by the codec, per type url" in {
+      val codec = payloadSizes.measured(new AnySupport(Array.empty, getClass.getClassLoader))
+      val encoded = codec.encodeScala("hello")
+      codec.encodeJava("hello")
+      codec.decodeMessage(encoded)
+
+      registry.encodedSizes(encoded.typeUrl).get.count shouldBe 2
+      registry.encodedSizes(encoded.typeUrl).get.sum shouldBe encoded.value.size * 2L
+      registry.decodedSizes(encoded.typeUrl).get.count shouldBe 1
+      registry.prometheusText() should include(
+        s"""kalix_message_payload_size_bytes_count{type_url="${encoded.typeUrl}",operation="decode"} 1""")
+    }
+
+    "warn about oversized states at most once per interval" in {
+      LoggingTestKit.warn("Large state of [200] bytes for entity [cart-1] of entity type [carts]").expect {
+        payloadSizes.checkSize(PayloadSizes.StatePayload, "carts", "cart-1", payload(200))
+      }
+      LoggingTestKit.warn("Large state").withOccurrences(0).expect {
+        payloadSizes.checkSize(PayloadSizes.StatePayload, "carts", "cart-2", payload(300))
+      }
+    }
+
+    "not warn about payloads within the limit or without a limit" in {
+      LoggingTestKit.warn("Large").withOccurrences(0).expect {
+        payloadSizes.checkSize(PayloadSizes.StatePayload, "users", "user-1", payload(100))
+        payloadSizes.checkSize(PayloadSizes.EventPayload, "users", "user-1", payload(10000))
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.metrics
+
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.typed.scaladsl.adapter._
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class SlowHandlerWatchdogSpec
+    extends ScalaTestWithActorTestKit("""
+      kalix.slow-handler-watchdog {
+        enabled = on
+        threshold = 100ms
+        check-interval = 20ms
+      }
+      """)
+    with AnyWordSpecLike
+    with Matchers {
+
+  private val watchdog = SlowHandlerWatchdog(system.toClassic)
+
+  "The slow handler watchdog" should {
+    "count the handlers running for longer than the threshold, once per command" in {
+      val slow = watchdog.handlerStarted(ComponentMetrics.ValueEntityComponent, "com.example.Counter", "1", "Slow")
+      Thread.sleep(300)
+      slow.finished()
+
+      val fast = watchdog.handlerStarted(ComponentMetrics.ValueEntityComponent, "com.example.Counter", "1", "Fast")
+      fast.finished()
+      Thread.sleep(200)
+
+      watchdog.stallCount(ComponentMetrics.ValueEntityComponent, "com.example.Counter", "Slow") shouldBe 1
+      watchdog.stallCount(ComponentMetrics.ValueEntityComponent, "com.example.Counter", "Fast") shouldBe 0
+    }
+  }
+}
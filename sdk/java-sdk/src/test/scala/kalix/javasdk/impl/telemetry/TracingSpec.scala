@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.telemetry
+
+import scala.collection.mutable
+import scala.jdk.CollectionConverters._
+
+import akka.actor.ActorSystem
+import akka.testkit.TestKit
+import com.typesafe.config.ConfigFactory
+import io.opentelemetry.api.GlobalOpenTelemetry
+import io.opentelemetry.api.common.AttributeKey
+import io.opentelemetry.api.trace.{ SpanKind, StatusCode }
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator
+import io.opentelemetry.context.propagation.ContextPropagators
+import io.opentelemetry.sdk.OpenTelemetrySdk
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter
+import io.opentelemetry.sdk.trace.SdkTracerProvider
+import io.opentelemetry.sdk.trace.data.SpanData
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor
+import kalix.javasdk.impl.valueentity.ValueEntitiesImplSpec.ShoppingCart
+import kalix.javasdk.impl.valueentity.ValueEntityCommandFailuresSpec
+import kalix.protocol.component.{ Forward, Metadata, MetadataEntry, SideEffect }
+import org.scalatest.BeforeAndAfterEach
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class TracingSpec extends AnyWordSpec with Matchers with BeforeAndAfterEach {
+
+  private val TraceId = "0af7651916cd43dd8448eb211c80319c"
+  private val ParentSpanId = "b7ad6b7169203331"
+
+  private val spanExporter = InMemorySpanExporter.create()
+  private val openTelemetry = OpenTelemetrySdk
+    .builder()
+    .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build())
+    .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+    .build()
+
+  private val tracing = new Tracing(enabled = true, () => openTelemetry)
+  private val disabledTracing = new Tracing(enabled = false, () => openTelemetry)
+
+  override protected def afterEach(): Unit = spanExporter.reset()
+
+  private def entry(key: String, value: String): MetadataEntry =
+    MetadataEntry(key, MetadataEntry.Value.StringValue(value))
+
+  private val incomingMetadata = Some(
+    Metadata(
+      Seq(
+        entry("traceparent", s"00-$TraceId-$ParentSpanId-01"),
+        entry("tracestate", "congo=t61rcWkgMzE"),
+        entry("x-custom", "custom"))))
+
+  private def finishedSpans: Seq[SpanData] = spanExporter.getFinishedSpanItems.asScala.toSeq
+
+  private def finishedSpan(name: String): SpanData =
+    finishedSpans.find(_.getName == name).getOrElse(fail(s"No span [$name] in [${finishedSpans.map(_.getName)}]"))
+
+  private def values(metadata: Metadata, key: String): Seq[String] =
+    metadata.entries.filter(_.key.equalsIgnoreCase(key)).flatMap(_.value.stringValue)
+
+  "The Tracing" should {
+
+    "continue the trace from the traceparent and tracestate of the command metadata" in {
+      tracing.startCommandSpan("value-entity", "com.example.Cart", "AddItem", incomingMetadata).end(failed = false)
+
+      val span = finishedSpan("com.example.Cart/AddItem")
+      span.getKind should ===(SpanKind.SERVER)
+      span.getTraceId should ===(TraceId)
+      span.getParentSpanId should ===(ParentSpanId)
+      span.getParentSpanContext.isRemote shouldBe true
+      span.getSpanContext.getTraceState.get("congo") should ===("t61rcWkgMzE")
+      span.getAttributes.get(AttributeKey.stringKey("kalix.component.type")) should ===("value-entity")
+      span.getAttributes.get(AttributeKey.stringKey("rpc.method")) should ===("AddItem")
+      span.getStatus.getStatusCode should ===(StatusCode.UNSET)
+    }
+
+    "start a new trace when the command metadata has no trace context" in {
+      tracing.startCommandSpan("action", "com.example.Echo", "Say", None).end(failed = true)
+
+      val span = finishedSpan("com.example.Echo/Say")
+      span.getParentSpanContext.isValid shouldBe false
+      span.getStatus.getStatusCode should ===(StatusCode.ERROR)
+    }
+
+    "create the decode, handle and encode spans as children of the command span" in {
+      val span = tracing.startCommandSpan("value-entity", "com.example.Cart", "AddItem", incomingMetadata)
+      val command = span.child("decode")("decoded")
+      val reply = span.child("handle")(command + " and handled")
+      span.child("encode")(reply + " and encoded") should ===("decoded and handled and encoded")
+      span.end(failed = false)
+
+      val commandSpan = finishedSpan("com.example.Cart/AddItem")
+      Seq("decode", "handle", "encode").foreach { name =>
+        val child = finishedSpan(name)
+        child.getTraceId should ===(TraceId)
+        child.getParentSpanId should ===(commandSpan.getSpanId)
+      }
+    }
+
+    "record a failure in a child span and pass it on" in {
+      val span = tracing.startCommandSpan("value-entity", "com.example.Cart", "AddItem", incomingMetadata)
+      val failure = new IllegalStateException("boom")
+      val thrown = the[IllegalStateException] thrownBy span.child("handle")(throw failure)
+      thrown shouldBe theSameInstanceAs(failure)
+      span.end(failed = true)
+
+      val handle = finishedSpan("handle")
+      handle.getStatus.getStatusCode should ===(StatusCode.ERROR)
+      handle.getEvents.asScala.map(_.getName) should contain("exception")
+    }
+
+    "replace the trace entries of forwards and side effects instead of adding to them" in {
+      val span = tracing.startCommandSpan("action", "com.example.Echo", "Say", incomingMetadata)
+      val forward = span.injectInto(Forward("com.example.Other", "Call", None, incomingMetadata))
+      val sideEffects =
+        span.injectInto(Seq(SideEffect("com.example.Other", "Call", None, synchronous = false, incomingMetadata)))
+      span.end(failed = false)
+
+      val spanId = finishedSpan("com.example.Echo/Say").getSpanId
+      Seq(forward.getMetadata, sideEffects.head.getMetadata).foreach { metadata =>
+        values(metadata, "traceparent") should ===(Seq(s"00-$TraceId-$spanId-01"))
+        values(metadata, "tracestate") should ===(Seq("congo=t61rcWkgMzE"))
+        values(metadata, "x-custom") should ===(Seq("custom"))
+      }
+    }
+
+    "add the trace context of the current child span to the headers of calls" in {
+      val span = tracing.startCommandSpan("action", "com.example.Echo", "Say", None)
+      val headers = mutable.Map.empty[String, String]
+      span.child("handle")(tracing.injectCurrentContext((key, value) => headers.put(key, value)))
+      span.end(failed = false)
+
+      headers("traceparent") should include(finishedSpan("handle").getSpanId)
+    }
+
+    "not add headers to calls made outside of a command span" in {
+      val headers = mutable.Map.empty[String, String]
+      tracing.injectCurrentContext((key, value) => headers.put(key, value))
+      headers shouldBe empty
+    }
+
+    "end the command span of an entity as failed when the command fails to decode" in {
+      // the entities use the tracing extension, which records through the global OpenTelemetry
+      GlobalOpenTelemetry.resetForTest()
+      GlobalOpenTelemetry.set(openTelemetry)
+      val system = ActorSystem(
+        "TracingSpec",
+        ConfigFactory.parseString("kalix.telemetry.tracing.enabled = on").withFallback(ConfigFactory.load()))
+      try {
+        val codec = ValueEntityCommandFailuresSpec.failingCodec(failDecode = true)
+        ValueEntityCommandFailuresSpec.sendAddItem(system, codec).last.message.isFailure shouldBe true
+
+        val commandSpan = finishedSpan(s"${ShoppingCart.Name}/AddItem")
+        commandSpan.getStatus.getStatusCode should ===(StatusCode.ERROR)
+        val decode = finishedSpan("decode")
+        decode.getParentSpanId should ===(commandSpan.getSpanId)
+        decode.getStatus.getStatusCode should ===(StatusCode.ERROR)
+      } finally {
+        TestKit.shutdownActorSystem(system)
+        GlobalOpenTelemetry.resetForTest()
+      }
+    }
+
+    "neither record spans nor change metadata or headers when disabled" in {
+      val span = disabledTracing.startCommandSpan("action", "com.example.Echo", "Say", incomingMetadata)
+      val forward = Forward("com.example.Other", "Call", None, incomingMetadata)
+      span.injectInto(forward) shouldBe theSameInstanceAs(forward)
+
+      val headers = mutable.Map.empty[String, String]
+      span.child("handle")(disabledTracing.injectCurrentContext((key, value) => headers.put(key, value)))
+      // a span started by other instrumentation is current, it is still not passed on
+      val other = tracing.startCommandSpan("action", "com.example.Echo", "Other", None)
+      other.child("handle")(disabledTracing.injectCurrentContext((key, value) => headers.put(key, value)))
+      other.end(failed = false)
+      span.end(failed = false)
+
+      headers shouldBe empty
+      finishedSpans.map(_.getName) should not contain "com.example.Echo/Say"
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.timer
+
+import java.lang.reflect.{ InvocationHandler, Method, Proxy }
+import java.time.Duration
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scala.concurrent.{ Future, Promise }
+import scala.jdk.CollectionConverters._
+import scala.jdk.FutureConverters._
+
+import akka.Done
+import akka.actor.{ ActorSystem, ExtendedActorSystem }
+import akka.testkit.TestKit
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import com.google.protobuf.wrappers.StringValue
+import com.typesafe.config.ConfigFactory
+import kalix.javasdk.impl.{ AnySupport, MetadataImpl, RestDeferredCall }
+import kalix.javasdk.timer.{ SingleTimer => JavaSingleTimer }
+import kalix.timers.timers.{ SingleTimer, TimerService }
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+object TimerOperationsSpec {
+
+  /** Records the operations sent to the timer service, replying with the current reply */
+  final class FakeTimerService {
+    val operations = new ConcurrentLinkedQueue[String]()
+    @volatile var reply: () => Future[AnyRef] = () => Future.successful(null)
+
+    val client: TimerService =
+      Proxy
+        .newProxyInstance(
+          classOf[TimerService].getClassLoader,
+          Array(classOf[TimerService]),
+          new InvocationHandler {
+            override def invoke(proxy: AnyRef, method: Method, args: Array[AnyRef]): AnyRef =
+              method.getName match {
+                case "addSingle" =>
+                  operations.add("start " + args(0).asInstanceOf[SingleTimer].name)
+                  reply()
+                case "remove" =>
+                  operations.add("cancel " + args(0).asInstanceOf[StringValue].value)
+                  reply()
+                case other => throw new UnsupportedOperationException(other)
+              }
+          })
+        .asInstanceOf[TimerService]
+
+    def sent: List[String] = operations.asScala.toList
+  }
+}
+
+class TimerOperationsSpec extends AnyWordSpec with Matchers with ScalaFutures {
+  import TimerOperationsSpec._
+
+  private def withSystem(batchWindow: String, maxBatchSize: Int = 100)(test: ExtendedActorSystem => Unit): Unit = {
+    val system = ActorSystem(
+      "TimerOperationsSpec",
+      ConfigFactory
+        .parseString(s"""
+          |kalix.timers.batch-window = $batchWindow
+          |kalix.timers.max-batch-size = $maxBatchSize
+          |""".stripMargin)
+        .withFallback(ConfigFactory.load()))
+    try test(system.asInstanceOf[ExtendedActorSystem])
+    finally TestKit.shutdownActorSystem(system)
+  }
+
+  private def withTimerOperations(batchWindow: String, maxBatchSize: Int = 100)(
+      test: (TimerOperations, FakeTimerService) => Unit): Unit =
+    withSystem(batchWindow, maxBatchSize) { system =>
+      val timerService = new FakeTimerService
+      test(new TimerOperations(system, () => timerService.client), timerService)
+    }
+
+  private def timer(name: String): SingleTimer = SingleTimer(name)
+
+  private def javaTimer(name: String): JavaSingleTimer = {
+    val call = RestDeferredCall[ScalaPbAny, Done](
+      () => ScalaPbAny("type.googleapis.com/com.example.Tick"),
+      MetadataImpl.Empty,
+      "com.example.TimerAction",
+      "Tick",
+      () => Future.successful[Done](Done).asJava)
+    JavaSingleTimer.of(name, Duration.ofSeconds(10), call)
+  }
+
+  private def anySupport = new AnySupport(Array.empty, getClass.getClassLoader)
+
+  "The timer operations" should {
+
+    "send each operation right away without a batch window" in withTimerOperations("0ms") { (operations, service) =>
+      operations.startSingleTimer(timer("a")).futureValue shouldBe Done
+      service.sent shouldBe List("start a")
+      operations.cancel("a").futureValue shouldBe Done
+      service.sent shouldBe List("start a", "cancel a")
+    }
+
+    "send the operations within the batch window together" in withTimerOperations("200ms") { (operations, service) =>
+      val results = List(operations.startSingleTimer(timer("a")), operations.startSingleTimer(timer("b")))
+      service.sent shouldBe empty
+
+      results.foreach(_.futureValue shouldBe Done)
+      service.sent should contain theSameElementsAs List("start a", "start b")
+    }
+
+    "only send the last operation for each timer name within a batch" in withTimerOperations("200ms") {
+      (operations, service) =>
+        val results = List(
+          operations.startSingleTimer(timer("a")),
+          operations.cancel("a"),
+          operations.startSingleTimer(timer("b")),
+          operations.startSingleTimer(timer("a")))
+
+        results.foreach(_.futureValue shouldBe Done)
+        service.sent should contain theSameElementsAs List("start a", "start b")
+    }
+
+    "complete replaced operations with the result of the last one" in withTimerOperations("200ms") {
+      (operations, service) =>
+        service.reply = () => Future.failed(new RuntimeException("proxy unavailable"))
+        val replaced = operations.startSingleTimer(timer("a"))
+        val last = operations.cancel("a")
+
+        last.failed.futureValue.getMessage shouldBe "proxy unavailable"
+        replaced.failed.futureValue.getMessage shouldBe "proxy unavailable"
+        service.sent shouldBe List("cancel a")
+    }
+
+    "send operations right away when the batch queue is full" in withTimerOperations("1s", maxBatchSize = 1) {
+      (operations, service) =>
+        // the first batch doesn't complete, so the following operations queue up behind it
+        val pending = Promise[AnyRef]()
+        service.reply = () => pending.future
+        val results = (1 to 200).map(n => operations.startSingleTimer(timer(s"timer-$n")))
+
+        // more than were queued were sent without waiting for a batch
+        service.sent.size should be > 100
+        pending.success(null)
+        results.foreach(_.futureValue shouldBe Done)
+        service.sent.toSet.size shouldBe 200
+    }
+
+    "look up the timer service client for each operation" in withSystem("50ms") { system =>
+      val first = new FakeTimerService
+      val second = new FakeTimerService
+      @volatile var current = first
+      val operations = new TimerOperations(system, () => current.client)
+
+      operations.startSingleTimer(timer("a")).futureValue shouldBe Done
+      // for example the previous client was closed and GrpcClients created a new one
+      current = second
+      operations.cancel("a").futureValue shouldBe Done
+
+      first.sent shouldBe List("start a")
+      second.sent shouldBe List("cancel a")
+    }
+
+    "fail the operation rather than the batches when there is no timer service client" in withSystem("50ms") {
+      system =>
+        @volatile var discovered = false
+        val timerService = new FakeTimerService
+        val operations = new TimerOperations(
+          system,
+          () => if (discovered) timerService.client else throw new IllegalStateException("not discovered yet"))
+
+        operations.startSingleTimer(timer("a")).failed.futureValue shouldBe an[IllegalStateException]
+        discovered = true
+        operations.startSingleTimer(timer("b")).futureValue shouldBe Done
+        timerService.sent shouldBe List("start b")
+    }
+  }
+
+  "The timer scheduler" should {
+
+    "start several timers" in withTimerOperations("200ms") { (operations, service) =>
+      val scheduler = new TimerSchedulerImpl(anySupport, operations)
+      scheduler.startSingleTimers(List(javaTimer("a"), javaTimer("b")).asJava).toCompletableFuture.get()
+      service.sent should contain theSameElementsAs List("start a", "start b")
+    }
+
+    "cancel several timers" in withTimerOperations("0ms") { (operations, service) =>
+      val scheduler = new TimerSchedulerImpl(anySupport, operations)
+      scheduler.cancelAll(List("a", "b", "c").asJava).toCompletableFuture.get()
+      service.sent shouldBe List("cancel a", "cancel b", "cancel c")
+    }
+
+    "fail when any of the timers fails to start" in withTimerOperations("0ms") { (operations, service) =>
+      val scheduler = new TimerSchedulerImpl(anySupport, operations)
+      service.reply = () => Future.failed(new RuntimeException("proxy unavailable"))
+      scheduler.startSingleTimers(List(javaTimer("a")).asJava).asScala.failed.futureValue.getMessage shouldBe
+      "proxy unavailable"
+    }
+  }
+}
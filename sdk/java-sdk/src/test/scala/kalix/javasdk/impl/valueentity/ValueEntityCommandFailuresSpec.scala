@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.impl.valueentity
+
+import akka.actor.ActorSystem
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.typed.scaladsl.adapter._
+import akka.stream.Materializer
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import com.example.valueentity.shoppingcart.ShoppingCartApi
+import com.example.valueentity.shoppingcart.domain.ShoppingCartDomain
+import com.google.protobuf.{ Any => JavaPbAny }
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import kalix.javasdk.impl.AnySupport
+import kalix.javasdk.impl.MessageCodec
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.metrics.DefaultMetricsRegistry
+import kalix.javasdk.valueentity.CartEntity
+import kalix.javasdk.valueentity.CartEntityProvider
+import kalix.javasdk.valueentity.ValueEntityContext
+import kalix.protocol.value_entity.ValueEntityStreamIn
+import kalix.protocol.value_entity.ValueEntityStreamOut
+import kalix.testkit.valueentity.ValueEntityMessages
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+object ValueEntityCommandFailuresSpec {
+
+  // decodes and encodes with the actual codec, unless told to fail
+  final class FailingCodec(delegate: MessageCodec, failDecode: Boolean, failEncode: Boolean) extends MessageCodec {
+    override def decodeMessage(any: ScalaPbAny): Any =
+      if (failDecode) throw new IllegalArgumentException("decode failed")
+      else delegate.decodeMessage(any)
+
+    override def encodeScala(value: Any): ScalaPbAny =
+      if (failEncode) throw new IllegalArgumentException("encode failed")
+      else delegate.encodeScala(value)
+
+    override def encodeJava(value: Any): JavaPbAny =
+      if (failEncode) throw new IllegalArgumentException("encode failed")
+      else delegate.encodeJava(value)
+  }
+
+  def failingCodec(failDecode: Boolean = false, failEncode: Boolean = false): MessageCodec =
+    new FailingCodec(
+      new AnySupport(Array(ShoppingCartApi.getDescriptor, ShoppingCartDomain.getDescriptor), getClass.getClassLoader),
+      failDecode,
+      failEncode)
+
+  /** The shopping cart value entity, using the given codec */
+  def cartEntities(system: ActorSystem, messageCodec: MessageCodec): ValueEntitiesImpl = {
+    val provider = CartEntityProvider.of(new CartEntity(_))
+    val service = new ValueEntityService(
+      (context: ValueEntityContext) => provider.newRouter(context),
+      provider.serviceDescriptor,
+      provider.additionalDescriptors,
+      messageCodec,
+      provider.entityType,
+      provider.options)
+    new ValueEntitiesImpl(system, Map(service.descriptor.getFullName -> service))
+  }
+
+  /** Sends an AddItem command to a new shopping cart entity using the given codec, returning what the entity sent */
+  def sendAddItem(system: ActorSystem, messageCodec: MessageCodec): Seq[ValueEntityStreamOut] = {
+    import ValueEntitiesImplSpec.ShoppingCart
+    import ValueEntityMessages._
+    val addItem = ShoppingCart.Protocol.addItem("a", "Apple", 1)
+    val in = List(init(ShoppingCart.Name, "cart"), command(1, "cart", "AddItem", addItem)).map(ValueEntityStreamIn(_))
+    val out = cartEntities(system, messageCodec).handle(Source(in)).runWith(Sink.seq)(Materializer(system))
+    Await.result(out, 10.seconds)
+  }
+}
+
+class ValueEntityCommandFailuresSpec
+    extends ScalaTestWithActorTestKit("kalix.metrics.enabled = on")
+    with AnyWordSpecLike
+    with Matchers {
+  import ValueEntitiesImplSpec.ShoppingCart
+  import ValueEntityCommandFailuresSpec._
+
+  private val classicSystem = system.toClassic
+  private val registry = ComponentMetrics(classicSystem).registry.asInstanceOf[DefaultMetricsRegistry]
+
+  private def addItemMetrics =
+    registry.commandMetrics(ComponentMetrics.ValueEntityComponent, ShoppingCart.Name, "AddItem")
+
+  private def commands(): Long = addItemMetrics.fold(0L)(_.duration.count)
+
+  private def errors(): Long = addItemMetrics.fold(0L)(_.errors.sum())
+
+  "The value entities" should {
+
+    "record a command failing to decode as failed, once" in {
+      val (commandsBefore, errorsBefore) = (commands(), errors())
+      sendAddItem(classicSystem, failingCodec(failDecode = true)).last.message.isFailure shouldBe true
+      commands() should ===(commandsBefore + 1)
+      errors() should ===(errorsBefore + 1)
+    }
+
+    "record a command failing to encode its reply or state as failed, once" in {
+      val (commandsBefore, errorsBefore) = (commands(), errors())
+      sendAddItem(classicSystem, failingCodec(failEncode = true)).last.message.isFailure shouldBe true
+      commands() should ===(commandsBefore + 1)
+      errors() should ===(errorsBefore + 1)
+    }
+
+    "record a handled command as successful" in {
+      val (commandsBefore, errorsBefore) = (commands(), errors())
+      sendAddItem(classicSystem, failingCodec()).last.message.isReply shouldBe true
+      commands() should ===(commandsBefore + 1)
+      errors() should ===(errorsBefore)
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.javasdk.logging
+
+import ch.qos.logback.classic.Level
+import ch.qos.logback.classic.LoggerContext
+import ch.qos.logback.classic.spi.ILoggingEvent
+import ch.qos.logback.classic.spi.LoggingEvent
+import ch.qos.logback.contrib.jackson.JacksonJsonFormatter
+import ch.qos.logback.contrib.json.classic.JsonLayout
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters._
+
+class LogbackJsonLayoutSpec extends AnyWordSpec with Matchers {
+
+  private val loggerContext = new LoggerContext
+  loggerContext.setName("test-context")
+  private val logger = loggerContext.getLogger("kalix.javasdk.logging.Test")
+
+  // the map based layout that LogbackJsonLayout used to be
+  private def referenceLayout(prettyPrint: Boolean): JsonLayout = {
+    val layout = new JsonLayout {
+      override def addCustomDataToJsonMap(map: java.util.Map[String, AnyRef], event: ILoggingEvent): Unit =
+        add("severity", true, String.valueOf(event.getLevel), map)
+    }
+    layout.setIncludeLevel(false)
+    configure(layout, prettyPrint)
+  }
+
+  private def streamingLayout(prettyPrint: Boolean): JsonLayout =
+    configure(new LogbackJsonLayout, prettyPrint)
+
+  private def configure(layout: JsonLayout, prettyPrint: Boolean): JsonLayout = {
+    val formatter = new JacksonJsonFormatter
+    formatter.setPrettyPrint(prettyPrint)
+    layout.setJsonFormatter(formatter)
+    layout.setTimestampFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX")
+    layout.setTimestampFormatTimezoneId("Etc/UTC")
+    layout.setAppendLineSeparator(true)
+    layout.setContext(loggerContext)
+    layout.start()
+    layout
+  }
+
+  private def event(
+      level: Level,
+      message: String,
+      mdc: Map[String, String] = Map.empty,
+      error: Throwable = null,
+      args: Array[AnyRef] = null): LoggingEvent = {
+    val e = new LoggingEvent(classOf[LogbackJsonLayoutSpec].getName, logger, level, message, error, args)
+    e.setMDCPropertyMap(mdc.asJava)
+    e
+  }
+
+  private val events = Seq(
+    event(Level.INFO, "Simple message"),
+    event(Level.WARN, "Message with {} and \"quotes\"\n on two lines", args = Array("arguments")),
+    event(Level.DEBUG, "Message with MDC", mdc = Map("entityId" -> "cart-1", "correlationId" -> "abc")),
+    event(Level.ERROR, "Message with exception", error = new RuntimeException("boom", new IllegalStateException))
+  )
+
+  "The LogbackJsonLayout" should {
+    "write the same output as the map based layout" in {
+      val reference = referenceLayout(prettyPrint = false)
+      val streaming = streamingLayout(prettyPrint = false)
+      // more than once, to cover the reuse of the generator
+      (events ++ events).foreach { e =>
+        streaming.doLayout(e) shouldBe reference.doLayout(e)
+      }
+    }
+
+    "write the same pretty printed output as the map based layout" in {
+      val reference = referenceLayout(prettyPrint = true)
+      val streaming = streamingLayout(prettyPrint = true)
+      (events ++ events).foreach { e =>
+        streaming.doLayout(e) shouldBe reference.doLayout(e)
+      }
+    }
+
+    "write the severity instead of the level" in {
+      val output = streamingLayout(prettyPrint = false).doLayout(event(Level.WARN, "Warning"))
+      output should include(""""severity":"WARN"""")
+      output should not include (""""level"""")
+    }
+
+    "not require a json formatter" in {
+      val layout = new LogbackJsonLayout
+      layout.setContext(loggerContext)
+      layout.start()
+      layout.doLayout(event(Level.INFO, "No formatter")) should include(""""message":"No formatter"""")
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.scalasdk
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.util.{ Failure, Success, Try }
+
+import akka.stream.Materializer
+import akka.stream.scaladsl.{ Sink, Source }
+
+/**
+ * Executes a number of [[DeferredCall]]s with a bounded number of calls in flight, instead of executing them one at a
+ * time or all at once.
+ *
+ * The returned future can be used to create an async reply in an [[kalix.scalasdk.action.Action]] using
+ * {{{effects.asyncReply}}}, with the materializer of the {{{actionContext}}}.
+ */
+object DeferredCalls {
+
+  /**
+   * Execute the calls with at most `parallelism` of them in flight at the same time.
+   *
+   * @return
+   *   the results in the same order as the calls, or the first failure. No further calls are started once a call has
+   *   failed.
+   */
+  def executeAll[O](calls: Iterable[DeferredCall[_, O]], parallelism: Int)(implicit
+      materializer: Materializer): Future[Seq[O]] =
+    Source(calls.toList).mapAsync(parallelism)(_.execute()).runWith(Sink.seq)
+
+  /**
+   * Execute the calls with at most `parallelism` of them in flight at the same time, without keeping the order of the
+   * calls. A slow call does then not hold back the next ones.
+   *
+   * @return
+   *   the results in the order they completed, or the first failure. No further calls are started once a call has
+   *   failed.
+   */
+  def executeAllUnordered[O](calls: Iterable[DeferredCall[_, O]], parallelism: Int)(implicit
+      materializer: Materializer): Future[Seq[O]] =
+    Source(calls.toList).mapAsyncUnordered(parallelism)(_.execute()).runWith(Sink.seq)
+
+  /**
+   * Execute all the calls with at most `parallelism` of them in flight at the same time, a failed call does not stop
+   * the other ones.
+   *
+   * @return
+   *   the outcome of each call, in the same order as the calls.
+   */
+  def executeAllCollectingFailures[O](calls: Iterable[DeferredCall[_, O]], parallelism: Int)(implicit
+      materializer: Materializer): Future[Seq[Try[O]]] =
+    Source(calls.toList)
+      .mapAsync(parallelism) { call =>
+        Try(call.execute()) match {
+          case Success(result) => result.transform(Success(_))(ExecutionContext.parasitic)
+          case Failure(error)  => Future.successful(Failure(error))
+        }
+      }
+      .runWith(Sink.seq)
+}
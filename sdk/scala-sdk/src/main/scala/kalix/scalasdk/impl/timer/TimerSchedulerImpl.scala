@@ -24,30 +24,47 @@ import scala.jdk.DurationConverters.ScalaDurationOps
 import akka.Done
 import akka.actor.ActorSystem
 import com.google.protobuf.duration.{ Duration => ProtoDuration }
-import com.google.protobuf.wrappers.StringValue
 import kalix.javasdk.impl.GrpcDeferredCall
-import kalix.javasdk.impl.GrpcClients
 import kalix.javasdk.impl.MessageCodec
+import kalix.javasdk.impl.timer.TimerOperations
 import kalix.scalasdk.DeferredCall
 import kalix.scalasdk.impl.ScalaDeferredCallAdapter
+import kalix.scalasdk.timer.{ SingleTimer => ScalaSingleTimer }
 import kalix.scalasdk.timer.TimerScheduler
 import kalix.timers.timers.Call
 import kalix.timers.timers.SingleTimer
-import kalix.timers.timers.TimerService
 
 /** INTERNAL API */
 private[kalix] final class TimerSchedulerImpl(messageCodec: MessageCodec, system: ActorSystem) extends TimerScheduler {
 
+  private def timerOperations = TimerOperations(system)
+
   override def startSingleTimer[I, O](
       name: String,
       delay: FiniteDuration,
-      deferredCall: DeferredCall[I, O]): Future[Done] = {
+      deferredCall: DeferredCall[I, O]): Future[Done] =
+    timerOperations.startSingleTimer(toSingleTimer(name, delay, deferredCall))
+
+  override def cancel(name: String): Future[Done] =
+    timerOperations.cancel(name)
+
+  override def startSingleTimers(timers: Iterable[ScalaSingleTimer]): Future[Done] = {
+    val singleTimers = timers.map(timer => toSingleTimer(timer.name, timer.delay, timer.deferredCall)).toList
+    allDone(singleTimers.map(timerOperations.startSingleTimer))
+  }
 
-    val timerServiceClient = GrpcClients(system).getProxyGrpcClient(classOf[TimerService])
+  override def cancelAll(names: Iterable[String]): Future[Done] =
+    allDone(names.toList.map(timerOperations.cancel))
 
+  private def allDone(results: List[Future[Done]]): Future[Done] = {
+    implicit val ec: ExecutionContext = ExecutionContext.parasitic
+    Future.sequence(results).map(_ => Done)
+  }
+
+  private def toSingleTimer(name: String, delay: FiniteDuration, deferredCall: DeferredCall[_, _]): SingleTimer = {
     val deferredCallImpl =
       deferredCall match {
-        case ScalaDeferredCallAdapter(deferredCallImpl: GrpcDeferredCall[I, O] @unchecked) => deferredCallImpl
+        case ScalaDeferredCallAdapter(deferredCallImpl: GrpcDeferredCall[_, _]) => deferredCallImpl
         // should not happen as we always need to pass ScalaDeferredCallAdapter(DeferredCallImpl)
         case other =>
           throw new RuntimeException(
@@ -60,12 +77,6 @@ private[kalix] final class TimerSchedulerImpl(messageCodec: MessageCodec, system
         deferredCallImpl.methodName,
         Some(messageCodec.encodeScala(deferredCall.message)))
 
-    val singleTimer = SingleTimer(name, Some(call), Some(ProtoDuration(delay.toJava)))
-    timerServiceClient.addSingle(singleTimer).map(_ => Done)(ExecutionContext.parasitic)
-  }
-
-  override def cancel(name: String): Future[Done] = {
-    val timerServiceClient = GrpcClients(system).getProxyGrpcClient(classOf[TimerService])
-    timerServiceClient.remove(StringValue(name)).map(_ => Done)(ExecutionContext.parasitic)
+    SingleTimer(name, Some(call), Some(ProtoDuration(delay.toJava)))
   }
 }
@@ -50,4 +50,20 @@ trait TimerScheduler {
    */
   def cancel(name: String): Future[Done]
 
+  /**
+   * Schedule a number of single timers in Kalix, see [[startSingleTimer]] for the semantics of each timer.
+   *
+   * @return
+   *   a future completed when all the timers are scheduled, or failed if any of them failed
+   */
+  def startSingleTimers(timers: Iterable[SingleTimer]): Future[Done]
+
+  /**
+   * Cancel a number of existing timers. Names for which no timer is registered are ignored.
+   *
+   * @return
+   *   a future completed when all the timers are cancelled, or failed if any of them failed
+   */
+  def cancelAll(names: Iterable[String]): Future[Done]
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.scalasdk
+
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger }
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.stream.Materializer
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class DeferredCallsSpec extends ScalaTestWithActorTestKit with AnyWordSpecLike with Matchers {
+
+  private implicit val materializer: Materializer = Materializer(system)
+
+  private def deferredCall(result: => Future[String]): DeferredCall[String, String] =
+    new DeferredCall[String, String] {
+      override def message: String = ""
+      override def metadata: Metadata = Metadata.empty
+      override def execute(): Future[String] = result
+    }
+
+  "DeferredCalls" should {
+
+    "execute the calls keeping their order" in {
+      val slow = Promise[String]()
+      val calls = List(deferredCall(slow.future), deferredCall(Future.successful("b")))
+
+      val result = DeferredCalls.executeAll(calls, 2)
+      slow.success("a")
+
+      result.futureValue shouldBe Seq("a", "b")
+    }
+
+    "return the results in the order they completed when unordered" in {
+      val slow = Promise[String]()
+      val secondStarted = new AtomicBoolean()
+      val calls =
+        List(deferredCall(slow.future), deferredCall { secondStarted.set(true); Future.successful("b") })
+
+      val result = DeferredCalls.executeAllUnordered(calls, 2)
+      eventually {
+        secondStarted.get() shouldBe true
+      }
+      slow.success("a")
+
+      result.futureValue shouldBe Seq("b", "a")
+    }
+
+    "not have more calls than the parallelism in flight" in {
+      val inFlight = new AtomicInteger()
+      val maxInFlight = new AtomicInteger()
+      val pending = (1 to 10).map(_ => Promise[String]())
+      val calls = pending.map { promise =>
+        deferredCall {
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), (a, b) => Math.max(a, b))
+          promise.future.map { result =>
+            inFlight.decrementAndGet()
+            result
+          }(ExecutionContext.parasitic)
+        }
+      }
+
+      val result = DeferredCalls.executeAllUnordered(calls, 3)
+      pending.foreach(_.success("done"))
+
+      result.futureValue.size shouldBe 10
+      maxInFlight.get() should be <= 3
+    }
+
+    "fail on the first failed call" in {
+      val calls = List(deferredCall(Future.failed(new RuntimeException("boom"))), deferredCall(Future.successful("b")))
+
+      DeferredCalls.executeAll(calls, 1).failed.futureValue.getMessage shouldBe "boom"
+    }
+
+    "collect the outcome of all calls" in {
+      val calls = List(
+        deferredCall(Future.successful("a")),
+        deferredCall(Future.failed(new RuntimeException("boom"))),
+        deferredCall(throw new IllegalStateException("not even started")),
+        deferredCall(Future.successful("d")))
+
+      val outcomes = DeferredCalls.executeAllCollectingFailures(calls, 2).futureValue
+
+      outcomes.map(_.isSuccess) shouldBe Seq(true, false, false, true)
+      outcomes.head.get shouldBe "a"
+      outcomes(1).failed.get.getMessage shouldBe "boom"
+      outcomes(2).failed.get.getMessage shouldBe "not even started"
+      outcomes(3).get shouldBe "d"
+    }
+  }
+}
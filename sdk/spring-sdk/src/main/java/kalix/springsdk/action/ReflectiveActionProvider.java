@@ -77,7 +77,11 @@ public class ReflectiveActionProvider<A extends Action> implements ActionProvide
   @Override
   public ActionRouter<A> newRouter(ActionCreationContext context) {
     A action = factory.apply(context);
-    return new ReflectiveActionRouter<>(action, componentDescriptor.commandHandlers(), ComponentDescriptorFactory.findIgnore(action.getClass()));
+    return new ReflectiveActionRouter<>(
+        action,
+        componentDescriptor.commandHandlers(),
+        ComponentDescriptorFactory.findIgnore(action.getClass()),
+        context.materializer());
   }
 
   @Override
@@ -103,7 +103,7 @@ public class ReflectiveEventSourcedEntityProvider<S, E extends EventSourcedEntit
   public EventSourcedEntityRouter<S, E> newRouter(EventSourcedEntityContext context) {
     E entity = factory.apply(context);
     return new ReflectiveEventSourcedEntityRouter<>(
-        entity, componentDescriptor.commandHandlers(), eventHandlers.handlers());
+        entity, componentDescriptor.commandHandlers(), eventHandlers.methodHandles());
   }
 
   @Override
@@ -17,6 +17,7 @@
 package kalix.springsdk
 import kalix.javasdk.DeferredCall
 import com.google.protobuf.any.Any
+import reactor.core.publisher.Flux
 
 /**
  * Utility to send requests to other Kalix components by composing a DeferredCall. The target component endpoint should
@@ -227,4 +228,69 @@ trait KalixClient {
    *   a [[kalix.javasdk.DeferredCall]] to be used in forwards and timers or to be executed in place
    */
   def delete[R](uri: String, returnType: Class[R]): DeferredCall[Any, R]
+
+  /**
+   * Provides utility to do a GET HTTP request to a target endpoint returning a stream of elements, such as a view query
+   * returning a `Flux` or with `streamUpdates` enabled. Elements are decoded one at a time as the response arrives,
+   * whether it is a JSON array, newline delimited JSON or server-sent events, and are only read from the connection as
+   * fast as they are consumed, so that large results don't need to be kept in memory.
+   *
+   * The request is sent when the returned `Flux` is subscribed to. Unlike [[get]], the call can not be used in forwards
+   * or timers.
+   *
+   * Example of use:
+   * {{{
+   *     public Flux<Effect<Customer>> exportCustomers() {
+   *       return kalixClient.getStream("/customers/by_city/Lisbon", Customer.class)
+   *         .map(customer -> effects().reply(customer));
+   *     }
+   * }}}
+   *
+   * @param uri
+   *   The resource path where the target endpoint will be reached at. Query parameters can be passed in as part of the
+   *   URI but should be encoded if containing special characters.
+   * @param elementType
+   *   The type of the elements streamed by the target endpoint
+   * @tparam R
+   *   Type of the elements streamed as response from the target endpoint
+   * @return
+   *   a `Flux` of the decoded elements
+   */
+  def getStream[R](uri: String, elementType: Class[R]): Flux[R]
+
+  /**
+   * Provides utility to do a POST HTTP request to a target endpoint returning a stream of elements. Elements are decoded
+   * one at a time as the response arrives, see [[getStream]].
+   *
+   * @param uri
+   *   The resource path where the target endpoint will be reached at. Query parameters can be passed in as part of the
+   *   URI but should be encoded if containing special characters.
+   * @param body
+   *   The HTTP body type expected by the target endpoint
+   * @param elementType
+   *   The type of the elements streamed by the target endpoint
+   * @tparam P
+   *   Type used as a body for the request
+   * @tparam R
+   *   Type of the elements streamed as response from the target endpoint
+   * @return
+   *   a `Flux` of the decoded elements
+   */
+  def postStream[P, R](uri: String, body: P, elementType: Class[R]): Flux[R]
+
+  /**
+   * Provides utility to do a POST HTTP request without body to a target endpoint returning a stream of elements.
+   * Elements are decoded one at a time as the response arrives, see [[getStream]].
+   *
+   * @param uri
+   *   The resource path where the target endpoint will be reached at. Query parameters can be passed in as part of the
+   *   URI but should be encoded if containing special characters.
+   * @param elementType
+   *   The type of the elements streamed by the target endpoint
+   * @tparam R
+   *   Type of the elements streamed as response from the target endpoint
+   * @return
+   *   a `Flux` of the decoded elements
+   */
+  def postStream[R](uri: String, elementType: Class[R]): Flux[R]
 }
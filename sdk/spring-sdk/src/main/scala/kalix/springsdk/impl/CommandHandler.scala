@@ -16,6 +16,9 @@
 
 package kalix.springsdk.impl
 
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
 import java.lang.reflect.Method
 
 import com.fasterxml.jackson.annotation.JsonSubTypes
@@ -32,27 +35,29 @@ case class CommandHandler(
   val logger = LoggerFactory.getLogger(classOf[CommandHandler])
 
   /**
-   * This method will look up for a registered method that receives a super type of the incoming payload. It's only
-   * called when a direct method is not found.
-   *
-   * The incoming typeUrl is for one of the existing sub types, but the method itself is defined to receive a super
-   * type. Therefore we look up the method parameter to find out if one of its sub types matches the incoming typeUrl.
+   * Methods can be defined to receive a super type of the incoming payload. In that case the incoming typeUrl is for
+   * one of the existing sub types, listed in the `@JsonSubTypes` annotation of the method parameter. The typeUrls of
+   * all those sub types are resolved once, when the component descriptor is created, so that a lookup is a single map
+   * access. Direct matches take precedence over sub types.
    */
-  private def lookupMethodAcceptingSubType(inputTypeUrl: String): Option[MethodInvoker] = {
-    methodInvokers.values.find { javaMethod =>
-      val lastParam = javaMethod.method.getParameterTypes.last
-      if (lastParam.getAnnotation(classOf[JsonSubTypes]) != null) {
-        lastParam.getAnnotation(classOf[JsonSubTypes]).value().exists { subType =>
-          inputTypeUrl == messageCodec.typeUrlFor(subType.value())
+  private val invokersByTypeUrl: Map[String, MethodInvoker] = {
+    val subTypeInvokers =
+      methodInvokers.values.toSeq.flatMap { javaMethod =>
+        javaMethod.method.getParameterTypes.lastOption.toSeq.flatMap { lastParam =>
+          Option(lastParam.getAnnotation(classOf[JsonSubTypes])).toSeq.flatMap { subTypes =>
+            subTypes.value().toSeq.map(subType => messageCodec.typeUrlFor(subType.value()) -> javaMethod)
+          }
         }
-      } else false
-    }
+      }
+
+    // if more than one method accepts the same sub type, the first one wins
+    subTypeInvokers.foldLeft(Map.empty[String, MethodInvoker]) { case (acc, (typeUrl, invoker)) =>
+      if (acc.contains(typeUrl)) acc else acc.updated(typeUrl, invoker)
+    } ++ methodInvokers
   }
 
   def lookupInvoker(inputTypeUrl: String): Option[MethodInvoker] =
-    methodInvokers
-      .get(inputTypeUrl)
-      .orElse(lookupMethodAcceptingSubType(inputTypeUrl))
+    invokersByTypeUrl.get(inputTypeUrl)
 
   def getInvoker(inputTypeUrl: String): MethodInvoker =
     lookupInvoker(inputTypeUrl).getOrElse {
@@ -65,10 +70,60 @@ object MethodInvoker {
   def apply(javaMethod: Method, parameterExtractor: ParameterExtractor[InvocationContext, AnyRef]): MethodInvoker =
     MethodInvoker(javaMethod, Array(parameterExtractor))
 
+  /**
+   * Resolves a method handle for the given method, with all parameters and the return type adapted to Object. The
+   * receiver is the first parameter. Methods that are not accessible from here (for example public methods of a
+   * component class that is not public) are made accessible first, as they were with reflective invocation.
+   */
+  private[impl] def genericMethodHandle(method: Method): MethodHandle = {
+    val handle =
+      try MethodHandles.lookup().unreflect(method)
+      catch {
+        case _: IllegalAccessException =>
+          method.setAccessible(true)
+          MethodHandles.lookup().unreflect(method)
+      }
+    handle.asType(MethodType.genericMethodType(handle.`type`().parameterCount()))
+  }
 }
 
 case class MethodInvoker(method: Method, parameterExtractors: Array[ParameterExtractor[InvocationContext, AnyRef]]) {
 
+  // resolved once when the component descriptor is built, invocations use a fixed arity
+  // call instead of reflection with a new arguments array on every call
+  private val methodHandle: MethodHandle = MethodInvoker.genericMethodHandle(method)
+
+  /** Invokes a method taking a single parameter with the given argument, instead of extracting it */
+  def invokeWith(componentInstance: AnyRef, argument: AnyRef): AnyRef =
+    methodHandle.invoke(componentInstance, argument)
+
   def invoke(componentInstance: AnyRef, invocationContext: InvocationContext): AnyRef =
-    method.invoke(componentInstance, parameterExtractors.map(e => e.extract(invocationContext)): _*)
+    parameterExtractors.length match {
+      case 0 =>
+        methodHandle.invoke(componentInstance)
+      case 1 =>
+        methodHandle.invoke(componentInstance, parameterExtractors(0).extract(invocationContext))
+      case 2 =>
+        methodHandle.invoke(
+          componentInstance,
+          parameterExtractors(0).extract(invocationContext),
+          parameterExtractors(1).extract(invocationContext))
+      case 3 =>
+        methodHandle.invoke(
+          componentInstance,
+          parameterExtractors(0).extract(invocationContext),
+          parameterExtractors(1).extract(invocationContext),
+          parameterExtractors(2).extract(invocationContext))
+      case 4 =>
+        methodHandle.invoke(
+          componentInstance,
+          parameterExtractors(0).extract(invocationContext),
+          parameterExtractors(1).extract(invocationContext),
+          parameterExtractors(2).extract(invocationContext),
+          parameterExtractors(3).extract(invocationContext))
+      case _ =>
+        // methods with many parameters are rare, those go through the generic (allocating) path
+        methodHandle.invokeWithArguments(
+          (componentInstance +: parameterExtractors.map(e => e.extract(invocationContext))): _*)
+    }
 }
@@ -276,9 +276,13 @@ private[impl] object ComponentDescriptor {
       fieldDescriptor.setType(FieldDescriptorProto.Type.TYPE_MESSAGE)
       fieldDescriptor.setTypeName("google.protobuf.Any")
       inputMessageDescriptor.addField(fieldDescriptor)
+      // for stream in methods, each message in the stream carries one element of the Flux
+      val bodyType =
+        if (serviceMethod.streamIn) ServiceMethod.streamElementType(param)
+        else param.getParameterType
       idx -> new ExtractorCreator {
         override def apply(descriptor: Descriptors.Descriptor): ParameterExtractor[DynamicMessageContext, AnyRef] = {
-          new ParameterExtractors.BodyExtractor(descriptor.findFieldByNumber(1), param.getParameterType)
+          new ParameterExtractors.BodyExtractor(descriptor.findFieldByNumber(1), bodyType)
         }
       }
     }
@@ -41,6 +41,11 @@ private[impl] object EntityDescriptorFactory extends ComponentDescriptorFactory
     val kalixMethods =
       RestServiceIntrospector.inspectService(component).methods.map { restMethod =>
 
+        if (restMethod.streamIn)
+          throw ServiceIntrospectionException(
+            restMethod.javaMethod,
+            "Stream in calls are not supported for entities, they are only supported in Actions.")
+
         val entityKeyOnMethod = restMethod.javaMethod.getAnnotation(classOf[EntityKey])
         val generateEntityKey = restMethod.javaMethod.getAnnotation(classOf[GenerateEntityKey])
 
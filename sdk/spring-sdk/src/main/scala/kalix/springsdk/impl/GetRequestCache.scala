@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.springsdk.impl
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.util.Success
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import kalix.springsdk.impl.http.HttpEndpointMethodDefinition
+
+/**
+ * INTERNAL API
+ *
+ * Coalesces identical GET calls made through the KalixClient while they are in flight and keeps successful responses
+ * for a short time. Only applies to the path patterns that were explicitly configured.
+ *
+ * The raw response bodies are shared and cached, each caller decodes its own response instance, so that callers can't
+ * see changes made to the responses of other callers.
+ *
+ * @param recordLookup
+ *   called with the path pattern and the outcome of each lookup, one of [[GetRequestCache.Hit]],
+ *   [[GetRequestCache.Coalesced]] or [[GetRequestCache.Miss]]
+ */
+private[impl] final class GetRequestCache(
+    paths: Set[String],
+    ttl: Duration,
+    maxEntries: Int,
+    recordLookup: (String, String) => Unit) {
+  import GetRequestCache._
+
+  private val ttlNanos = ttl.toNanos
+
+  private val inFlight = new ConcurrentHashMap[String, Future[Array[Byte]]]()
+
+  // access ordered, so the eldest entry is the least recently used one
+  private val entries = new java.util.LinkedHashMap[String, Entry](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[String, Entry]): Boolean = size() > maxEntries
+  }
+
+  private val hits = new LongAdder
+  private val coalesced = new LongAdder
+  private val misses = new LongAdder
+
+  def isEnabled: Boolean = paths.nonEmpty
+
+  def appliesTo(httpDef: HttpEndpointMethodDefinition): Boolean =
+    httpDef.rule.pattern.isGet && paths.contains(httpDef.rule.getGet)
+
+  /**
+   * @param call
+   *   makes the call, with the raw response body as result
+   * @param decode
+   *   decodes the raw response body for one caller
+   */
+  def getOrCall[R](pathPattern: String, uriStr: String)(call: () => Future[Array[Byte]])(
+      decode: Array[Byte] => R): Future[R] = {
+    val body = cached(uriStr) match {
+      case Some(value) =>
+        hits.increment()
+        recordLookup(pathPattern, Hit)
+        Future.successful(value)
+
+      case None =>
+        val promise = Promise[Array[Byte]]()
+        inFlight.putIfAbsent(uriStr, promise.future) match {
+          case null =>
+            misses.increment()
+            recordLookup(pathPattern, Miss)
+            // a call throwing instead of returning a failed future must still complete and remove the entry
+            promise.completeWith(Future.delegate(call())(ExecutionContext.parasitic))
+            promise.future.onComplete { result =>
+              result match {
+                case Success(value) if ttlNanos > 0 => store(uriStr, value)
+                case _                              =>
+              }
+              inFlight.remove(uriStr, promise.future)
+            }(ExecutionContext.parasitic)
+            promise.future
+
+          case existing =>
+            coalesced.increment()
+            recordLookup(pathPattern, Coalesced)
+            existing
+        }
+    }
+    body.map(decode)(ExecutionContext.parasitic)
+  }
+
+  def stats: CacheStats = CacheStats(hits.sum(), coalesced.sum(), misses.sum())
+
+  private def cached(uriStr: String): Option[Array[Byte]] =
+    if (ttlNanos <= 0) None
+    else
+      entries.synchronized {
+        val entry = entries.get(uriStr)
+        if (entry eq null) None
+        else if (entry.expiresAt - System.nanoTime() > 0) Some(entry.value)
+        else {
+          entries.remove(uriStr)
+          None
+        }
+      }
+
+  private def store(uriStr: String, value: Array[Byte]): Unit =
+    entries.synchronized {
+      entries.put(uriStr, Entry(value, System.nanoTime() + ttlNanos))
+    }
+}
+
+/**
+ * INTERNAL API
+ */
+private[impl] object GetRequestCache {
+
+  val Hit = "hit"
+  val Coalesced = "coalesced"
+  val Miss = "miss"
+
+  private final case class Entry(value: Array[Byte], expiresAt: Long)
+
+  final case class CacheStats(hits: Long, coalesced: Long, misses: Long) {
+    def requests: Long = hits + coalesced + misses
+    def hitRate: Double = if (requests == 0) 0.0 else (hits + coalesced).toDouble / requests
+  }
+
+  /**
+   * Decodes a cached body the same way as the default WebClient codecs would decode the response: `String` and
+   * `byte[]` are the raw body, anything else is JSON.
+   */
+  def decodeBody[R](mapper: ObjectMapper, returnType: Class[R])(body: Array[Byte]): R =
+    if (body eq null) null.asInstanceOf[R]
+    else if (returnType == classOf[String]) new String(body, StandardCharsets.UTF_8).asInstanceOf[R]
+    else if (returnType == classOf[Array[Byte]]) body.clone().asInstanceOf[R]
+    else mapper.readValue(body, returnType)
+
+}
@@ -16,6 +16,10 @@
 
 package kalix.springsdk.impl
 
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Modifier
+
 import scala.jdk.CollectionConverters.CollectionHasAsScala
 import scala.jdk.OptionConverters.RichOption
 import com.typesafe.config.Config
@@ -28,6 +32,8 @@ import kalix.javasdk.eventsourcedentity.EventSourcedEntity
 import kalix.javasdk.eventsourcedentity.EventSourcedEntityContext
 import kalix.javasdk.eventsourcedentity.EventSourcedEntityProvider
 import kalix.javasdk.impl.GrpcClients
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.telemetry.Tracing
 import kalix.javasdk.replicatedentity.ReplicatedEntity
 import kalix.javasdk.valueentity.ValueEntity
 import kalix.javasdk.valueentity.ValueEntityContext
@@ -46,12 +52,15 @@ import kalix.springsdk.impl.KalixServer.KalixComponentProvider
 import kalix.springsdk.impl.KalixServer.MainClassProvider
 import kalix.springsdk.impl.KalixServer.ValueEntityContextFactoryBean
 import kalix.springsdk.impl.KalixServer.ViewCreationContextFactoryBean
+import kalix.springsdk.impl.KalixServer.directConstructor
 import kalix.springsdk.valueentity.ReflectiveValueEntityProvider
 import kalix.springsdk.view.ReflectiveViewProvider
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
+import org.springframework.beans.factory.Aware
 import org.springframework.beans.factory.BeanCreationException
 import org.springframework.beans.factory.FactoryBean
+import org.springframework.beans.factory.InitializingBean
 import org.springframework.beans.factory.config.BeanDefinition
 import org.springframework.beans.factory.config.ConfigurableBeanFactory
 import org.springframework.beans.factory.support.AbstractBeanDefinition
@@ -65,6 +74,53 @@ import org.springframework.core.`type`.filter.TypeFilter
 
 object KalixServer {
 
+  /**
+   * Components that only depend on the Kalix types that we provide ourselves don't need Spring to be created. For
+   * those, this method returns a function calling the constructor through a method handle resolved once per class.
+   * Components with other dependencies, more than one constructor or Spring lifecycle callbacks are left to the bean
+   * factory, and so are components that can't be accessed from here, which Spring makes accessible.
+   */
+  private[impl] def directConstructor[C](
+      clz: Class[_],
+      contextType: Class[C],
+      kalixClient: AnyRef,
+      kalixTypes: Class[_]*): Option[C => AnyRef] = {
+
+    def argFor(paramType: Class[_], context: C): AnyRef =
+      if (paramType == contextType) context.asInstanceOf[AnyRef]
+      else kalixClient
+
+    val hasLifecycleCallbacks =
+      classOf[Aware].isAssignableFrom(clz) || classOf[InitializingBean].isAssignableFrom(clz)
+
+    clz.getConstructors match {
+      case Array(ctor) if !hasLifecycleCallbacks && Modifier.isPublic(clz.getModifiers) =>
+        val paramTypes = ctor.getParameterTypes
+        if (paramTypes.forall(paramType => paramType == contextType || kalixTypes.contains(paramType))) {
+          val handle =
+            try {
+              Some(
+                MethodHandles
+                  .lookup()
+                  .unreflectConstructor(ctor)
+                  .asType(MethodType.genericMethodType(paramTypes.length)))
+            } catch {
+              case _: IllegalAccessException => None
+            }
+
+          handle.flatMap { handle =>
+            paramTypes match {
+              case Array()       => Some((_: C) => handle.invoke())
+              case Array(p0)     => Some((context: C) => handle.invoke(argFor(p0, context)))
+              case Array(p0, p1) => Some((context: C) => handle.invoke(argFor(p0, context), argFor(p1, context)))
+              case _             => None
+            }
+          }
+        } else None
+      case _ => None
+    }
+  }
+
   val kalixComponents: Seq[Class[_]] =
     classOf[Action] ::
     classOf[EventSourcedEntity[_]] ::
@@ -192,7 +248,7 @@ case class KalixServer(applicationContext: ApplicationContext, config: Config) {
   private val logger: Logger = LoggerFactory.getLogger(getClass)
 
   private val messageCodec = new SpringSdkMessageCodec
-  private val kalixClient = new RestKalixClientImpl(messageCodec)
+  private val kalixClient = new RestKalixClientImpl(messageCodec, RestKalixClientSettings(config))
   private val threadLocalActionContext = new ThreadLocal[ActionCreationContext]
   private val threadLocalEventSourcedEntityContext = new ThreadLocal[EventSourcedEntityContext]
   private val threadLocalValueEntityContext = new ThreadLocal[ValueEntityContext]
@@ -297,53 +353,82 @@ case class KalixServer(applicationContext: ApplicationContext, config: Config) {
       ctor.getParameterTypes.contains(contextType)
     }
 
-  private def actionProvider[A <: Action](clz: Class[A]): ActionProvider[A] =
+  private def actionProvider[A <: Action](clz: Class[A]): ActionProvider[A] = {
+    // resolved once per class, not for every created instance
+    val hasActionContext = hasContextConstructor(clz, classOf[ActionCreationContext])
+    val hasKalixClient = hasContextConstructor(clz, classOf[KalixClient])
+    val constructor = directConstructor(clz, classOf[ActionCreationContext], kalixClient, classOf[KalixClient])
+
     ReflectiveActionProvider.of(
       clz,
       messageCodec,
       context => {
-        if (hasContextConstructor(clz, classOf[ActionCreationContext]))
-          threadLocalActionContext.set(context)
-
-        if (hasContextConstructor(clz, classOf[KalixClient])) {
+        if (hasKalixClient) {
           val grpcClients = GrpcClients(context.materializer().system)
           grpcClients.getProxyHostname.foreach(kalixClient.setHost)
           grpcClients.getProxyPort.foreach(kalixClient.setPort)
           grpcClients.getIdentificationInfo.foreach(kalixClient.setIdentificationInfo)
-          threadLocalKalixClient.set(kalixClient)
+          kalixClient.setScheduler(context.materializer().system.scheduler)
+          kalixClient.setTracing(Tracing(context.materializer().system))
+          kalixClient.setMetrics(ComponentMetrics(context.materializer().system))
         }
 
-        kalixBeanFactory.getBean(clz)
+        constructor match {
+          case Some(create) => create(context).asInstanceOf[A]
+          case None =>
+            if (hasActionContext) threadLocalActionContext.set(context)
+            if (hasKalixClient) threadLocalKalixClient.set(kalixClient)
+            kalixBeanFactory.getBean(clz)
+        }
       })
+  }
 
   private def eventSourcedEntityProvider[S, E <: EventSourcedEntity[S]](
-      clz: Class[E]): EventSourcedEntityProvider[S, E] =
+      clz: Class[E]): EventSourcedEntityProvider[S, E] = {
+    val hasContext = hasContextConstructor(clz, classOf[EventSourcedEntityContext])
+    val constructor = directConstructor(clz, classOf[EventSourcedEntityContext], kalixClient)
+
     ReflectiveEventSourcedEntityProvider.of(
       clz,
       messageCodec,
-      context => {
-        if (hasContextConstructor(clz, classOf[EventSourcedEntityContext]))
-          threadLocalEventSourcedEntityContext.set(context)
-        kalixBeanFactory.getBean(clz)
-      })
+      context =>
+        constructor match {
+          case Some(create) => create(context).asInstanceOf[E]
+          case None =>
+            if (hasContext) threadLocalEventSourcedEntityContext.set(context)
+            kalixBeanFactory.getBean(clz)
+        })
+  }
+
+  private def valueEntityProvider[S, E <: ValueEntity[S]](clz: Class[E]): ValueEntityProvider[S, E] = {
+    val hasContext = hasContextConstructor(clz, classOf[ValueEntityContext])
+    val constructor = directConstructor(clz, classOf[ValueEntityContext], kalixClient)
 
-  private def valueEntityProvider[S, E <: ValueEntity[S]](clz: Class[E]): ValueEntityProvider[S, E] =
     ReflectiveValueEntityProvider.of(
       clz,
       messageCodec,
-      context => {
-        if (hasContextConstructor(clz, classOf[ValueEntityContext]))
-          threadLocalValueEntityContext.set(context)
-        kalixBeanFactory.getBean(clz)
-      })
+      context =>
+        constructor match {
+          case Some(create) => create(context).asInstanceOf[E]
+          case None =>
+            if (hasContext) threadLocalValueEntityContext.set(context)
+            kalixBeanFactory.getBean(clz)
+        })
+  }
+
+  private def viewProvider[S, V <: View[S]](clz: Class[V]): ViewProvider[S, V] = {
+    val hasContext = hasContextConstructor(clz, classOf[ViewCreationContext])
+    val constructor = directConstructor(clz, classOf[ViewCreationContext], kalixClient)
 
-  private def viewProvider[S, V <: View[S]](clz: Class[V]): ViewProvider[S, V] =
     ReflectiveViewProvider.of(
       clz,
       messageCodec,
-      context => {
-        if (hasContextConstructor(clz, classOf[ViewCreationContext]))
-          threadLocalViewContext.set(context)
-        kalixBeanFactory.getBean(clz)
-      })
+      context =>
+        constructor match {
+          case Some(create) => create(context).asInstanceOf[V]
+          case None =>
+            if (hasContext) threadLocalViewContext.set(context)
+            kalixBeanFactory.getBean(clz)
+        })
+  }
 }
@@ -16,42 +16,69 @@
 
 package kalix.springsdk.impl
 
+import akka.actor.Scheduler
 import akka.http.scaladsl.model.{ HttpMethod, HttpMethods, Uri }
 import com.google.protobuf.{ Descriptors, DynamicMessage }
 import com.google.protobuf.any.Any
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.typesafe.config.ConfigFactory
 import kalix.javasdk.DeferredCall
-import kalix.javasdk.impl.{ AnySupport, MetadataImpl, RestDeferredCall }
+import kalix.javasdk.impl.{ AnySupport, DownstreamGuard, MetadataImpl, RestDeferredCall }
+import kalix.javasdk.impl.metrics.ComponentMetrics
+import kalix.javasdk.impl.telemetry.Tracing
 import kalix.protocol.component.MetadataEntry
 import kalix.protocol.discovery.IdentificationInfo
 import kalix.springsdk.KalixClient
 import kalix.springsdk.impl.http.HttpEndpointMethodDefinition
 import kalix.springsdk.impl.http.HttpEndpointMethodDefinition.ANY_METHOD
 import org.slf4j.{ Logger, LoggerFactory }
-import org.springframework.http.{ HttpHeaders, HttpMethod => SpringHttpMethod, MediaType }
-import org.springframework.web.reactive.function.client.WebClient
+import org.springframework.http.{ HttpHeaders, HttpMethod => SpringHttpMethod, HttpStatus, MediaType }
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder
+import org.springframework.web.reactive.function.client.{ WebClient, WebClientResponseException }
+import reactor.core.publisher.{ Flux, Mono }
 
-import java.util.concurrent.CompletionStage
-import scala.concurrent.ExecutionContext.Implicits.global
-import scala.concurrent.{ Future, Promise }
+import java.util.concurrent.{ CompletionStage, ConcurrentHashMap }
+import scala.concurrent.{ ExecutionContext, Future, Promise }
 import scala.jdk.CollectionConverters.CollectionHasAsScala
 import scala.jdk.FutureConverters._
-import scala.util.Success
+import scala.util.{ Failure, Success, Try }
 
 /**
  * INTERNAL API
  */
-final class RestKalixClientImpl(messageCodec: SpringSdkMessageCodec) extends KalixClient {
+final class RestKalixClientImpl(messageCodec: SpringSdkMessageCodec, settings: RestKalixClientSettings)
+    extends KalixClient {
+
+  import RestKalixClientImpl._
+
+  def this(messageCodec: SpringSdkMessageCodec) =
+    this(messageCodec, RestKalixClientSettings(ConfigFactory.load()))
+
   private val logger: Logger = LoggerFactory.getLogger(getClass)
 
+  // continuations here only hand over to the WebClient or map results, no user code is run on them
+  private implicit val executionContext: ExecutionContext = ExecutionContext.parasitic
+
   private var services: Seq[HttpEndpointMethodDefinition] = Seq.empty
 
+  private val downstreamGuards = new ConcurrentHashMap[String, DownstreamGuard]()
+  private val scheduler: Promise[Scheduler] = Promise[Scheduler]()
+  private val tracing: Promise[Tracing] = Promise[Tracing]()
+  private val metrics: Promise[ComponentMetrics] = Promise[ComponentMetrics]()
+
+  private val getCache: GetRequestCache =
+    settings.createGetCache((pathPattern, outcome) =>
+      metrics.future.value.foreach(_.foreach(_.getCacheLookup(pathPattern, outcome))))
+
+  // cached responses are kept as raw bodies and decoded for each caller, the same way as the default WebClient codecs
+  private lazy val cachedResponseMapper: ObjectMapper = Jackson2ObjectMapperBuilder.json().build[ObjectMapper]()
+
   // at the time of creation, Proxy Discovery has not happened so we don't have this info
   private val host: Promise[String] = Promise[String]()
   private val port: Promise[Int] = Promise[Int]()
   private val identificationInfo: Promise[IdentificationInfo] = Promise[IdentificationInfo]()
 
   private val webClient: Future[WebClient] = {
-    import scala.concurrent.ExecutionContext.Implicits.global
     val baseUrl = for {
       h <- host.future
       p <- port.future
@@ -61,7 +88,11 @@ final class RestKalixClientImpl(messageCodec: SpringSdkMessageCodec) extends Kal
       .map(url => {
         WebClient.builder
           .baseUrl(url)
+          .clientConnector(settings.createConnector())
           .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+          // applied when the request is created, on the thread of the action making the call
+          .defaultRequest(request =>
+            tracing.future.value.foreach(_.foreach(_.injectCurrentContext((key, value) => request.header(key, value)))))
           .build
       })
   }
@@ -89,6 +120,9 @@ final class RestKalixClientImpl(messageCodec: SpringSdkMessageCodec) extends Kal
   def setPort(port: Int): Boolean = this.port.trySuccess(port)
   def setIdentificationInfo(identificationInfo: IdentificationInfo): Unit =
     this.identificationInfo.trySuccess(identificationInfo)
+  def setScheduler(scheduler: Scheduler): Boolean = this.scheduler.trySuccess(scheduler)
+  def setTracing(tracing: Tracing): Boolean = this.tracing.trySuccess(tracing)
+  def setMetrics(metrics: ComponentMetrics): Boolean = this.metrics.trySuccess(metrics)
 
   def registerComponent(descriptor: Descriptors.ServiceDescriptor): Unit = {
     services ++= HttpEndpointMethodDefinition.extractForService(descriptor)
@@ -117,19 +151,67 @@ final class RestKalixClientImpl(messageCodec: SpringSdkMessageCodec) extends Kal
         uriStr,
         body = None,
         httpDef,
-        () =>
-          webClient
-            .flatMap(
+        () => {
+          def call[T](bodyType: Class[T]): Future[T] =
+            webClient.flatMap(
               _.get()
                 .uri(uriStr)
                 .retrieve()
-                .bodyToMono(returnType)
+                .bodyToMono(bodyType)
                 .toFuture
                 .asScala)
-            .asJava)
+
+          if (getCache.isEnabled && getCache.appliesTo(httpDef))
+            getCache
+              .getOrCall(httpDef.rule.getGet, uriStr)(() => call(classOf[Array[Byte]]))(
+                GetRequestCache.decodeBody(cachedResponseMapper, returnType))
+              .asJava
+          else call(returnType).asJava
+        })
     }
   }
 
+  /** INTERNAL API */
+  private[impl] def getCacheStats: GetRequestCache.CacheStats = getCache.stats
+
+  /** INTERNAL API */
+  private[impl] def getDownstreamGuardMetrics(fullServiceName: String): Option[DownstreamGuard.Metrics] =
+    Option(downstreamGuards.get(fullServiceName)).map(_.metrics)
+
+  // the circuit breaker needs the scheduler, which is only known once the first action is created, and is given the
+  // metrics that are set at the same time
+  private def downstreamGuard(fullServiceName: String): Option[DownstreamGuard] =
+    if (!settings.downstreamGuard.isEnabled) None
+    else
+      scheduler.future.value.collect { case Success(actorScheduler) =>
+        val componentMetrics = metrics.future.value.flatMap(_.toOption)
+        downstreamGuards.computeIfAbsent(
+          fullServiceName,
+          name => new DownstreamGuard(name, settings.downstreamGuard, actorScheduler, componentMetrics))
+      }
+
+  private def guarded[R](fullServiceName: String, asyncCall: () => CompletionStage[R]): () => CompletionStage[R] =
+    () =>
+      downstreamGuard(fullServiceName) match {
+        case Some(guard) =>
+          guard
+            .call(asyncCall().asScala, isFailure)
+            .recoverWith { case rejected: DownstreamGuard.RejectedException =>
+              val status = HttpStatus.SERVICE_UNAVAILABLE.value
+              Future.failed(
+                WebClientResponseException.create(status, rejected.getMessage, HttpHeaders.EMPTY, Array.empty, null))
+            }
+            .asJava
+        case None => asyncCall()
+      }
+
+  // client errors are replies from a healthy component, only server errors and failing to get a reply count
+  private def isFailure(result: Try[_]): Boolean = result match {
+    case Failure(ex: WebClientResponseException) => ex.getStatusCode.is5xxServerError
+    case Failure(_)                              => true
+    case Success(_)                              => false
+  }
+
   override def post[P, R](uriStr: String, body: P, returnType: Class[R]): DeferredCall[Any, R] = {
     matchMethodOrThrow(HttpMethods.POST, uriStr) { httpDef =>
       requestToRestDefCall(
@@ -259,12 +341,49 @@ final class RestKalixClientImpl(messageCodec: SpringSdkMessageCodec) extends Kal
     }
   }
 
-  private def matchMethodOrThrow[R](httpMethod: HttpMethod, uriStr: String)(
-      createDefCall: => HttpEndpointMethodDefinition => RestDeferredCall[Any, R]) = {
+  override def getStream[R](uriStr: String, elementType: Class[R]): Flux[R] =
+    matchMethodOrThrow(HttpMethods.GET, uriStr) { _ =>
+      streamCall(elementType) {
+        _.get()
+          .uri(uriStr)
+          .accept(StreamMediaTypes: _*)
+          .retrieve()
+      }
+    }
+
+  override def postStream[P, R](uriStr: String, body: P, elementType: Class[R]): Flux[R] =
+    matchMethodOrThrow(HttpMethods.POST, uriStr) { _ =>
+      streamCall(elementType) {
+        _.post()
+          .uri(uriStr)
+          .bodyValue(body)
+          .accept(StreamMediaTypes: _*)
+          .retrieve()
+      }
+    }
+
+  override def postStream[R](uriStr: String, elementType: Class[R]): Flux[R] =
+    matchMethodOrThrow(HttpMethods.POST, uriStr) { _ =>
+      streamCall(elementType) {
+        _.post()
+          .uri(uriStr)
+          .accept(StreamMediaTypes: _*)
+          .retrieve()
+      }
+    }
+
+  // bodyToFlux decodes a JSON array element by element, and reads from the connection only on demand
+  private def streamCall[R](elementType: Class[R])(request: WebClient => WebClient.ResponseSpec): Flux[R] =
+    Mono
+      .fromCompletionStage(webClient.asJava)
+      .flatMapMany(client => request(client).bodyToFlux(elementType))
+
+  private def matchMethodOrThrow[T](httpMethod: HttpMethod, uriStr: String)(
+      createCall: => HttpEndpointMethodDefinition => T): T = {
     val uri = Uri(uriStr)
     services
       .find(d => (d.methodPattern == ANY_METHOD || httpMethod == d.methodPattern) && d.matches(uri.path))
-      .map { createDefCall(_) }
+      .map { createCall(_) }
       .getOrElse(throw HttpMethodNotFoundException(httpMethod, uri.path.toString()))
   }
 
@@ -273,21 +392,36 @@ final class RestKalixClientImpl(messageCodec: SpringSdkMessageCodec) extends Kal
       body: Option[P],
       httpDef: HttpEndpointMethodDefinition,
       asyncCall: () => CompletionStage[R]): RestDeferredCall[Any, R] = {
-    var uri = Uri(uriStr)
-    val inputBuilder = DynamicMessage.newBuilder(httpDef.methodDescriptor.getInputType)
-    httpDef.parsePathParametersInto(uri.path, inputBuilder)
-    httpDef.parseRequestParametersInto(uri.query().toMultiMap, inputBuilder)
-    val wrappedBody = buildWrappedBody(httpDef, inputBuilder, body)
+    // parsing the uri and encoding the body into the protobuf input message is only needed when the call
+    // is handed over to the proxy, a plain execute goes straight through the WebClient
+    def wrappedBody(): Any = {
+      val uri = Uri(uriStr)
+      val inputBuilder = DynamicMessage.newBuilder(httpDef.methodDescriptor.getInputType)
+      httpDef.parsePathParametersInto(uri.path, inputBuilder)
+      httpDef.parseRequestParametersInto(uri.query().toMultiMap, inputBuilder)
+      buildWrappedBody(httpDef, inputBuilder, body)
+    }
 
+    val fullServiceName = httpDef.methodDescriptor.getService.getFullName
     RestDeferredCall[Any, R](
-      message = wrappedBody,
+      messageFactory = () => wrappedBody(),
       metadata = buildMetadata(),
-      fullServiceName = httpDef.methodDescriptor.getService.getFullName,
+      fullServiceName = fullServiceName,
       methodName = httpDef.methodDescriptor.getName,
-      asyncCall = asyncCall)
+      asyncCall = guarded(fullServiceName, asyncCall))
   }
 
 }
 
+/**
+ * INTERNAL API
+ */
+object RestKalixClientImpl {
+
+  /** Media types accepted for streamed responses, all of them are decoded element by element */
+  val StreamMediaTypes: Seq[MediaType] =
+    Seq(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM)
+}
+
 final case class HttpMethodNotFoundException(httpMethod: HttpMethod, uriStr: String)
     extends RuntimeException(s"No matching service for method=$httpMethod path=$uriStr")
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.springsdk.impl
+
+import java.time.Duration
+
+import scala.jdk.CollectionConverters.CollectionHasAsScala
+
+import com.typesafe.config.Config
+import kalix.javasdk.impl.DownstreamGuard
+import org.springframework.http.client.reactive.ReactorClientHttpConnector
+import reactor.netty.http.HttpProtocol
+import reactor.netty.http.client.HttpClient
+import reactor.netty.resources.{ ConnectionProvider, LoopResources }
+
+/**
+ * INTERNAL API
+ */
+final case class RestKalixClientSettings(
+    protocol: HttpProtocol,
+    keepAlive: Boolean,
+    workerThreads: Int,
+    maxConnections: Int,
+    pendingAcquireMaxCount: Int,
+    pendingAcquireTimeout: Duration,
+    maxIdleTime: Duration,
+    evictInBackground: Duration,
+    poolMetrics: Boolean,
+    getCachePaths: Set[String],
+    getCacheTtl: Duration,
+    getCacheMaxEntries: Int,
+    downstreamGuard: DownstreamGuard.Settings) {
+
+  /**
+   * Creates the connector with its own connection pool and event loops, so that calls to the proxy don't share them
+   * with whatever else the user function is doing.
+   */
+  def createConnector(): ReactorClientHttpConnector = {
+    val connectionProvider =
+      ConnectionProvider
+        .builder("kalix-client")
+        .maxConnections(maxConnections)
+        .pendingAcquireMaxCount(pendingAcquireMaxCount)
+        .pendingAcquireTimeout(pendingAcquireTimeout)
+        .maxIdleTime(maxIdleTime)
+        .evictInBackground(evictInBackground)
+        .metrics(poolMetrics)
+        .build()
+
+    val loopResources = LoopResources.create("kalix-client", workerThreads, true)
+
+    val httpClient =
+      HttpClient
+        .create(connectionProvider)
+        .runOn(loopResources)
+        .keepAlive(keepAlive)
+        .protocol(protocol)
+
+    new ReactorClientHttpConnector(httpClient)
+  }
+
+  def createGetCache(recordLookup: (String, String) => Unit): GetRequestCache =
+    new GetRequestCache(getCachePaths, getCacheTtl, getCacheMaxEntries, recordLookup)
+}
+
+/**
+ * INTERNAL API
+ */
+object RestKalixClientSettings {
+
+  def apply(config: Config): RestKalixClientSettings = {
+    val clientConfig = config.getConfig("kalix.spring-sdk.kalix-client")
+    val poolConfig = clientConfig.getConfig("connection-pool")
+    val getCacheConfig = clientConfig.getConfig("get-cache")
+    val circuitBreakerConfig = clientConfig.getConfig("circuit-breaker")
+
+    val protocol = clientConfig.getString("protocol") match {
+      case "http1" => HttpProtocol.HTTP11
+      case "h2c"   => HttpProtocol.H2C
+      case other =>
+        throw new IllegalArgumentException(
+          s"Unknown protocol [$other] for kalix.spring-sdk.kalix-client.protocol, must be one of [http1, h2c]")
+    }
+
+    val workerThreads = clientConfig.getInt("worker-threads") match {
+      case 0 => LoopResources.DEFAULT_IO_WORKER_COUNT
+      case n => n
+    }
+
+    RestKalixClientSettings(
+      protocol = protocol,
+      keepAlive = clientConfig.getBoolean("keep-alive"),
+      workerThreads = workerThreads,
+      maxConnections = poolConfig.getInt("max-connections"),
+      pendingAcquireMaxCount = poolConfig.getInt("pending-acquire-max-count"),
+      pendingAcquireTimeout = poolConfig.getDuration("pending-acquire-timeout"),
+      maxIdleTime = poolConfig.getDuration("max-idle-time"),
+      evictInBackground = poolConfig.getDuration("evict-in-background"),
+      poolMetrics = poolConfig.getBoolean("metrics"),
+      getCachePaths = getCacheConfig.getStringList("paths").asScala.toSet,
+      getCacheTtl = getCacheConfig.getDuration("ttl"),
+      getCacheMaxEntries = getCacheConfig.getInt("max-entries"),
+      downstreamGuard = DownstreamGuard.Settings(
+        circuitBreaker =
+          if (circuitBreakerConfig.getBoolean("enabled"))
+            Some(DownstreamGuard.Settings.circuitBreakerSettings(circuitBreakerConfig))
+          else None,
+        maxInFlight = Some(clientConfig.getInt("max-in-flight")).filter(_ > 0)))
+  }
+}
@@ -25,6 +25,7 @@ import com.google.protobuf.any.{ Any => ScalaPbAny }
 import com.google.protobuf.{ Any => JavaPbAny }
 import kalix.javasdk.JsonSupport
 import kalix.javasdk.impl.MessageCodec
+import kalix.javasdk.impl.jfr.MessageEncodeEvent
 
 private[springsdk] class SpringSdkMessageCodec extends MessageCodec {
 
@@ -34,10 +35,19 @@ private[springsdk] class SpringSdkMessageCodec extends MessageCodec {
    * In the Spring SDK, output data are encoded to Json.
    */
   override def encodeScala(value: Any): ScalaPbAny =
-    ScalaPbAny.fromJavaProto(JsonSupport.encodeJson(value, lookupTypeHint(value)))
-
-  override def encodeJava(value: Any): JavaPbAny =
-    JsonSupport.encodeJson(value, lookupTypeHint(value))
+    ScalaPbAny.fromJavaProto(encodeJava(value))
+
+  override def encodeJava(value: Any): JavaPbAny = {
+    val event = MessageEncodeEvent.start()
+    var encoded: JavaPbAny = null
+    try {
+      encoded = JsonSupport.encodeJson(value, lookupTypeHint(value))
+      encoded
+    } finally {
+      if (encoded eq null) event.finish(null, 0, true)
+      else event.finish(encoded.getTypeUrl, encoded.getValue.size, false)
+    }
+  }
 
   private def lookupTypeHint(value: Any): String =
     lookupTypeHint(value.getClass)
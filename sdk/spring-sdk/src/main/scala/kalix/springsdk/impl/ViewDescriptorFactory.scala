@@ -132,6 +132,11 @@ private[impl] object ViewDescriptorFactory extends ComponentDescriptorFactory {
 
       val queryMethod: SyntheticRequestServiceMethod = annotatedQueryMethods.head
 
+      if (queryMethod.streamIn)
+        throw ServiceIntrospectionException(
+          queryMethod.javaMethod,
+          "Stream in calls are not supported for views, they are only supported in Actions.")
+
       val queryOutputType = {
         val returnType = queryMethod.javaMethod.getReturnType
         if (returnType == classOf[Flux[_]]) {
@@ -17,7 +17,9 @@
 package kalix.springsdk.impl.action
 
 import akka.NotUsed
+import akka.stream.Materializer
 import akka.stream.javadsl.Source
+import akka.stream.scaladsl.Sink
 import com.google.protobuf.any.{ Any => ScalaPbAny }
 import kalix.javasdk.action.Action
 import kalix.javasdk.action.MessageEnvelope
@@ -30,7 +32,8 @@ import reactor.core.publisher.Flux
 class ReflectiveActionRouter[A <: Action](
     action: A,
     commandHandlers: Map[String, CommandHandler],
-    ignoreUnknown: Boolean)
+    ignoreUnknown: Boolean,
+    materializer: Materializer)
     extends ActionRouter[A](action) {
 
   private def commandHandlerLookup(commandName: String) =
@@ -87,11 +90,39 @@ class ReflectiveActionRouter[A <: Action](
   }
 
   override def handleStreamedIn(commandName: String, stream: Source[MessageEnvelope[Any], NotUsed]): Action.Effect[_] =
-    throw new IllegalArgumentException("Stream in calls are not supported")
+    invokeWithStream(commandName, stream).asInstanceOf[Action.Effect[_]]
 
-  // TODO: to implement
   override def handleStreamed(
       commandName: String,
-      stream: Source[MessageEnvelope[Any], NotUsed]): Source[Action.Effect[_], NotUsed] =
-    throw new IllegalArgumentException("Stream in calls are not supported")
+      stream: Source[MessageEnvelope[Any], NotUsed]): Source[Action.Effect[_], NotUsed] = {
+    val response = invokeWithStream(commandName, stream).asInstanceOf[Flux[Action.Effect[_]]]
+    Source.fromPublisher(response)
+  }
+
+  /**
+   * Passes the incoming stream as a Flux of decoded request bodies to the stream in method. The Flux is backed by the
+   * incoming stream, so demand from the user code is propagated upstream.
+   */
+  private def invokeWithStream(commandName: String, stream: Source[MessageEnvelope[Any], NotUsed]): AnyRef = {
+
+    val commandHandler = commandHandlerLookup(commandName)
+
+    // stream in methods are always synthetic request methods, those have a single invoker
+    val methodInvoker = commandHandler.methodInvokers.values.head
+    val bodyExtractor = methodInvoker.parameterExtractors.head
+
+    val publisher =
+      stream.asScala
+        .map { message =>
+          val context =
+            InvocationContext(
+              message.payload().asInstanceOf[ScalaPbAny],
+              commandHandler.requestMessageDescriptor,
+              message.metadata())
+          bodyExtractor.extract(context)
+        }
+        .runWith(Sink.asPublisher[AnyRef](fanout = false))(materializer)
+
+    methodInvoker.invokeWith(action, Flux.from(publisher))
+  }
 }
@@ -17,7 +17,9 @@
 package kalix.springsdk.impl.eventsourcedentity
 
 import kalix.springsdk.annotations.EventHandler
+import kalix.springsdk.impl.MethodInvoker
 
+import java.lang.invoke.MethodHandle
 import java.lang.reflect.{ Method, Modifier, ParameterizedType, Type }
 
 object EventSourcedHandlersExtractor {
@@ -64,7 +66,15 @@ object EventSourcedHandlersExtractor {
 
 private[springsdk] final case class EventSourceEntityHandlers private (
     handlers: Map[Class[_], Method],
-    errors: List[HandlerValidationError])
+    errors: List[HandlerValidationError]) {
+
+  /**
+   * The event handlers resolved to method handles, so that applying events, including replayed ones, doesn't go
+   * through reflective calls.
+   */
+  lazy val methodHandles: Map[Class[_], MethodHandle] =
+    handlers.transform { case (_, method) => MethodInvoker.genericMethodHandle(method) }
+}
 
 private[springsdk] final case class HandlerValidationError(methods: List[Method], description: String) {
   override def toString: String =
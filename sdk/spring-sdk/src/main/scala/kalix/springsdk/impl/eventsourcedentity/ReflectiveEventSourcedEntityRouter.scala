@@ -21,12 +21,12 @@ import kalix.javasdk.eventsourcedentity.{ CommandContext, EventSourcedEntity }
 import kalix.javasdk.impl.eventsourcedentity.EventSourcedEntityRouter
 import kalix.springsdk.impl.{ CommandHandler, InvocationContext }
 
-import java.lang.reflect.Method
+import java.lang.invoke.MethodHandle
 
 class ReflectiveEventSourcedEntityRouter[S, E <: EventSourcedEntity[S]](
     override protected val entity: E,
     commandHandlers: Map[String, CommandHandler],
-    eventHandlerMethods: Map[Class[_], Method])
+    eventHandlerMethods: Map[Class[_], MethodHandle])
     extends EventSourcedEntityRouter[S, E](entity) {
 
   private def commandHandlerLookup(commandName: String) =
@@ -40,7 +40,7 @@ class ReflectiveEventSourcedEntityRouter[S, E <: EventSourcedEntity[S]](
     entity._internalSetCurrentState(state)
 
     eventHandlerLookup(event.getClass)
-      .invoke(entity, event.asInstanceOf[event.type])
+      .invoke(entity, event.asInstanceOf[AnyRef])
       .asInstanceOf[S]
   }
 
@@ -17,18 +17,21 @@
 package kalix.springsdk.impl.reflection
 
 import java.lang.reflect.Method
+import java.lang.reflect.ParameterizedType
 
 import scala.annotation.tailrec
 
 import com.google.protobuf.Descriptors
 import com.google.protobuf.any.{ Any => ScalaPbAny }
 import kalix.springsdk.impl.AclDescriptorFactory
+import kalix.springsdk.impl.InvalidComponentException
 import kalix.springsdk.impl.path.PathPattern
 import kalix.springsdk.impl.path.PathPatternParser
 import kalix.springsdk.impl.reflection.RestServiceIntrospector.PathParameter
 import kalix.springsdk.impl.reflection.RestServiceIntrospector.RestMethodParameter
 import kalix.springsdk.impl.reflection.RestServiceIntrospector.isEmpty
 import kalix.springsdk.impl.reflection.RestServiceIntrospector.validateRequestMapping
+import org.springframework.core.MethodParameter
 import org.springframework.web.bind.annotation.RequestBody
 import org.springframework.web.bind.annotation.RequestMapping
 import org.springframework.web.bind.annotation.RequestMethod
@@ -38,19 +41,30 @@ object ServiceMethod {
   def isStreamOut(method: Method): Boolean =
     method.getReturnType == classOf[Flux[_]]
 
-  // this is more for early validation. We don't support stream-in over http,
-  // we block it before deploying anything
-  def isStreamIn(method: Method): Boolean = {
-    val paramWithRequestBody =
-      method.getParameters.collect {
-        case param if param.getAnnotation(classOf[RequestBody]) != null => param
-      }
-
-    if (paramWithRequestBody.exists(_.getType == classOf[Flux[_]]))
-      throw new IllegalArgumentException("Stream in calls are not supported")
-    else
-      false
+  def isStreamIn(method: Method): Boolean =
+    method.getParameters.exists { param =>
+      param.getAnnotation(classOf[RequestBody]) != null && param.getType == classOf[Flux[_]]
+    }
 
+  /**
+   * The element type of a stream in parameter, eg: `Message` for a `Flux<Message>`. The elements are decoded from JSON
+   * into that class, so generic element types such as `Flux<List<Message>>` are rejected.
+   */
+  def streamElementType(param: MethodParameter): Class[_] = {
+    def invalid(reason: String) =
+      InvalidComponentException(
+        s"Stream in method [${param.getMethod.getDeclaringClass.getName}.${param.getMethod.getName}] $reason, " +
+        "the Flux must have a non generic class as element type, eg: Flux<Message>.")
+
+    param.getGenericParameterType match {
+      case flux: ParameterizedType =>
+        // only one type parameter, safe to pick the head
+        flux.getActualTypeArguments.head match {
+          case elementType: Class[_] => elementType
+          case other                 => throw invalid(s"has unsupported element type [${other.getTypeName}]")
+        }
+      case _ => throw invalid("takes a raw Flux")
+    }
   }
 }
 sealed trait ServiceMethod {
@@ -165,6 +179,11 @@ case class SyntheticRequestServiceMethod(
       javaMethod,
       "Missing request method mapping. Kalix Spring SDK methods must have a request method defined.")
   }
+  if (streamIn && params.size > 1) {
+    throw ServiceIntrospectionException(
+      javaMethod,
+      "Invalid stream in method. Stream in methods can only have a single @RequestBody Flux parameter.")
+  }
 
   private val pathFromAnnotation: String = {
     val classPath = classMapping match {
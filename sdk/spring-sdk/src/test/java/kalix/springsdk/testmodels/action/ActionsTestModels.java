@@ -16,10 +16,17 @@
 
 package kalix.springsdk.testmodels.action;
 
+import java.time.Clock;
+import java.util.List;
+import java.util.stream.Collectors;
 import kalix.JwtMethodOptions.JwtMethodMode;
 import kalix.javasdk.action.Action;
+import kalix.javasdk.action.ActionCreationContext;
+import kalix.springsdk.KalixClient;
 import kalix.springsdk.annotations.JWT;
 import kalix.springsdk.testmodels.Message;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
@@ -161,4 +168,61 @@ public class ActionsTestModels {
       return messages.map(msg -> effects().reply(msg));
     }
   }
+
+  public static class StreamInTakeTwoAction extends Action {
+    @PostMapping("/message")
+    public Action.Effect<Message> message(@RequestBody Flux<Message> messages) {
+      return effects()
+          .asyncReply(
+              messages
+                  .take(2)
+                  .map(msg -> msg.value)
+                  .collect(Collectors.joining(","))
+                  .map(Message::new)
+                  .toFuture());
+    }
+  }
+
+  public static class StreamInGenericElementAction extends Action {
+    @PostMapping("/message")
+    public Action.Effect<Message> message(@RequestBody Flux<List<Message>> messages) {
+      return effects().reply(new Message("hello"));
+    }
+  }
+
+  public static class ActionWithContextAndClient extends Action {
+    public final ActionCreationContext context;
+    public final KalixClient kalixClient;
+
+    public ActionWithContextAndClient(ActionCreationContext context, KalixClient kalixClient) {
+      this.context = context;
+      this.kalixClient = kalixClient;
+    }
+  }
+
+  public static class ActionWithoutDependencies extends Action {}
+
+  public static class ActionWithOtherDependency extends Action {
+    public ActionWithOtherDependency(KalixClient kalixClient, Clock clock) {}
+  }
+
+  public static class ActionWithTwoConstructors extends Action {
+    public ActionWithTwoConstructors() {}
+
+    public ActionWithTwoConstructors(ActionCreationContext context) {}
+  }
+
+  public static class BeanNameAwareAction extends Action implements BeanNameAware {
+    @Override
+    public void setBeanName(String name) {}
+  }
+
+  public static class InitializingAction extends Action implements InitializingBean {
+    @Override
+    public void afterPropertiesSet() {}
+  }
+
+  static class NonPublicAction extends Action {
+    public NonPublicAction() {}
+  }
 }
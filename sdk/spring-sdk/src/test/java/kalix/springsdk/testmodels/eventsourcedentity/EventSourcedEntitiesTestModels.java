@@ -202,4 +202,29 @@ public class EventSourcedEntitiesTestModels {
           .thenReply(__ -> "ok");
     }
   }
+
+  @EntityKey("id")
+  @EntityType("counter")
+  public static class ReplayingCounterEntity extends EventSourcedEntity<Integer> {
+
+    @EventHandler
+    public Integer receivedIntegerEvent(Integer event) {
+      return event * 10;
+    }
+
+    @EventHandler
+    public Integer receiveStringEvent(String event) {
+      throw new IllegalArgumentException(event);
+    }
+  }
+
+  @EntityKey("id")
+  @EntityType("counter")
+  static class NonPublicCounterEntity extends EventSourcedEntity<Integer> {
+
+    @EventHandler
+    public Integer receivedIntegerEvent(Integer event) {
+      return event + 1;
+    }
+  }
 }
@@ -24,6 +24,7 @@ import kalix.springsdk.testmodels.Done;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import reactor.core.publisher.Flux;
 
 public class ValueEntitiesTestModels {
 
@@ -57,4 +58,14 @@ public class ValueEntitiesTestModels {
       return effects().reply(Done.instance);
     }
   }
+
+  @EntityKey("userId")
+  @EntityType("user")
+  @RequestMapping("/user/{userId}")
+  public static class ValueEntityWithStreamIn extends ValueEntity<User> {
+    @PostMapping("/create")
+    public ValueEntity.Effect<Done> createEntity(@RequestBody Flux<CreateUser> createUsers) {
+      return effects().reply(Done.instance);
+    }
+  }
 }
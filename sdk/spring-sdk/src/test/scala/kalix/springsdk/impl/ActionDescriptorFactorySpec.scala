@@ -34,6 +34,7 @@ import kalix.springsdk.testmodels.action.ActionsTestModels.PostWithoutParamWithJ
 import kalix.springsdk.testmodels.action.ActionsTestModels.PutWithOneParam
 import kalix.springsdk.testmodels.action.ActionsTestModels.PutWithoutParam
 import kalix.springsdk.testmodels.action.ActionsTestModels.StreamInAction
+import kalix.springsdk.testmodels.action.ActionsTestModels.StreamInGenericElementAction
 import kalix.springsdk.testmodels.action.ActionsTestModels.StreamInOutAction
 import kalix.springsdk.testmodels.action.ActionsTestModels.StreamOutAction
 import kalix.springsdk.testmodels.subscriptions.PubSubTestModels.ActionWithMethodLevelAcl
@@ -298,14 +299,28 @@ class ActionDescriptorFactorySpec extends AnyWordSpec with ComponentDescriptorSu
     }
 
     "generate stream in methods" in {
-      intercept[IllegalArgumentException] {
-        descriptorFor[StreamInAction]
+      assertDescriptor[StreamInAction] { desc =>
+        val methodDescriptor = desc.serviceDescriptor.findMethodByName("Message")
+        methodDescriptor.isServerStreaming shouldBe false
+        methodDescriptor.isClientStreaming shouldBe true
+
+        val method = desc.commandHandlers("Message")
+        assertRequestFieldJavaType(method, "json_body", JavaType.MESSAGE)
       }
     }
 
+    "reject stream in methods with a generic element type" in {
+      val exception = intercept[InvalidComponentException] {
+        descriptorFor[StreamInGenericElementAction]
+      }
+      exception.getMessage should include("java.util.List<kalix.springsdk.testmodels.Message>")
+    }
+
     "generate stream in/out methods" in {
-      intercept[IllegalArgumentException] {
-        descriptorFor[StreamInOutAction]
+      assertDescriptor[StreamInOutAction] { desc =>
+        val methodDescriptor = desc.serviceDescriptor.findMethodByName("Message")
+        methodDescriptor.isServerStreaming shouldBe true
+        methodDescriptor.isClientStreaming shouldBe true
       }
     }
 
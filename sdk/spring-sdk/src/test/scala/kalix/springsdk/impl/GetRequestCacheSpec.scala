@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.springsdk.impl
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.{ Future, Promise }
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import kalix.springsdk.testmodels.Message
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class GetRequestCacheSpec extends AnyWordSpec with Matchers {
+
+  private val pattern = "/message/{msg}"
+
+  private def body(value: String): Array[Byte] = value.getBytes(StandardCharsets.UTF_8)
+
+  private def decode(bytes: Array[Byte]): Message = new Message(new String(bytes, StandardCharsets.UTF_8))
+
+  private def newCache(ttl: Duration, maxEntries: Int = 10): (GetRequestCache, ListBuffer[(String, String)]) = {
+    val lookups = ListBuffer.empty[(String, String)]
+    val cache = new GetRequestCache(Set(pattern), ttl, maxEntries, (path, outcome) => lookups += path -> outcome)
+    (cache, lookups)
+  }
+
+  "The GET request cache" should {
+
+    "decode cached String and byte[] bodies as is, like the WebClient codecs" in {
+      val (cache, _) = newCache(Duration.ofMinutes(1))
+      val mapper = new ObjectMapper()
+      val asString = GetRequestCache.decodeBody(mapper, classOf[String]) _
+      val asBytes = GetRequestCache.decodeBody(mapper, classOf[Array[Byte]]) _
+      def call(): Future[Array[Byte]] = Future.successful(body("\"quoted\""))
+
+      cache.getOrCall(pattern, "/message/json")(call)(asString).value.get.get shouldBe "\"quoted\""
+      asString(body("not json")) shouldBe "not json"
+
+      val bytes = cache.getOrCall(pattern, "/message/json")(call)(asBytes).value.get.get
+      val otherBytes = cache.getOrCall(pattern, "/message/json")(call)(asBytes).value.get.get
+      bytes shouldBe body("\"quoted\"")
+      (otherBytes shouldNot be).theSameInstanceAs(bytes)
+
+      GetRequestCache.decodeBody(mapper, classOf[Message])(body("""{"value":"hello"}""")).value shouldBe "hello"
+    }
+
+    "share one call between identical calls in flight" in {
+      val (cache, lookups) = newCache(Duration.ZERO)
+      val response = Promise[Array[Byte]]()
+      var calls = 0
+      def call(): Future[Array[Byte]] = { calls += 1; response.future }
+
+      val first = cache.getOrCall(pattern, "/message/hello")(call)(decode)
+      val second = cache.getOrCall(pattern, "/message/hello")(call)(decode)
+      calls shouldBe 1
+
+      response.success(body("hello"))
+      first.value.get.get.value shouldBe "hello"
+      second.value.get.get.value shouldBe "hello"
+
+      // nothing is cached when ttl is zero, so a new call is made once the first one completed
+      cache.getOrCall(pattern, "/message/hello")(call)(decode)
+      calls shouldBe 2
+      cache.stats shouldBe GetRequestCache.CacheStats(hits = 0, coalesced = 1, misses = 2)
+      lookups.toList shouldBe List(
+        pattern -> GetRequestCache.Miss,
+        pattern -> GetRequestCache.Coalesced,
+        pattern -> GetRequestCache.Miss)
+    }
+
+    "serve completed responses from the cache" in {
+      val (cache, lookups) = newCache(Duration.ofMinutes(1))
+      var calls = 0
+      def call(): Future[Array[Byte]] = { calls += 1; Future.successful(body("hello")) }
+
+      cache.getOrCall(pattern, "/message/hello")(call)(decode)
+      cache.getOrCall(pattern, "/message/hello")(call)(decode).value.get.get.value shouldBe "hello"
+      cache.getOrCall(pattern, "/message/other")(call)(decode)
+
+      calls shouldBe 2
+      cache.stats.hitRate shouldBe (1.0 / 3)
+      lookups.count(_._2 == GetRequestCache.Hit) shouldBe 1
+    }
+
+    "decode a separate response instance for each caller" in {
+      val (cache, _) = newCache(Duration.ofMinutes(1))
+      val response = Promise[Array[Byte]]()
+
+      val first = cache.getOrCall(pattern, "/message/hello")(() => response.future)(decode)
+      val coalesced = cache.getOrCall(pattern, "/message/hello")(() => response.future)(decode)
+      response.success(body("hello"))
+      val cached = cache.getOrCall(pattern, "/message/hello")(() => response.future)(decode)
+
+      val responses = List(first, coalesced, cached).map(_.value.get.get)
+      responses.map(_.value) shouldBe List("hello", "hello", "hello")
+      (responses(0) eq responses(1)) shouldBe false
+      (responses(1) eq responses(2)) shouldBe false
+    }
+
+    "not cache failed calls" in {
+      val (cache, _) = newCache(Duration.ofMinutes(1))
+      var calls = 0
+      def call(): Future[Array[Byte]] = { calls += 1; Future.failed(new RuntimeException("boom")) }
+
+      cache.getOrCall(pattern, "/message/hello")(call)(decode)
+      cache.getOrCall(pattern, "/message/hello")(call)(decode)
+      calls shouldBe 2
+    }
+
+    "fail and release the call when it throws instead of returning a failed future" in {
+      val (cache, _) = newCache(Duration.ofMinutes(1))
+      def throwingCall(): Future[Array[Byte]] = throw new IllegalStateException("no client yet")
+
+      val failed = cache.getOrCall(pattern, "/message/hello")(throwingCall)(decode)
+      failed.value.get.failed.get shouldBe an[IllegalStateException]
+
+      // not left in flight, so the next call is made instead of waiting forever
+      val next = cache.getOrCall(pattern, "/message/hello")(() => Future.successful(body("hello")))(decode)
+      next.value.get.get.value shouldBe "hello"
+    }
+
+    "evict the least recently used responses" in {
+      val (cache, _) = newCache(Duration.ofMinutes(1), maxEntries = 2)
+      var calls = 0
+      def call(): Future[Array[Byte]] = { calls += 1; Future.successful(body("hello")) }
+
+      cache.getOrCall(pattern, "/message/a")(call)(decode)
+      cache.getOrCall(pattern, "/message/b")(call)(decode)
+      cache.getOrCall(pattern, "/message/a")(call)(decode)
+      cache.getOrCall(pattern, "/message/c")(call)(decode) // evicts b
+      calls shouldBe 3
+
+      cache.getOrCall(pattern, "/message/a")(call)(decode)
+      calls shouldBe 3
+      cache.getOrCall(pattern, "/message/b")(call)(decode)
+      calls shouldBe 4
+    }
+  }
+}
@@ -16,6 +16,10 @@
 
 package kalix.springsdk.impl
 
+import java.lang.reflect.Proxy
+
+import kalix.javasdk.action.ActionCreationContext
+import kalix.springsdk.KalixClient
 import kalix.springsdk.KalixConfiguration
 import kalix.springsdk.badwiring.action
 import kalix.springsdk.badwiring.action.IllDefinedAction
@@ -25,6 +29,7 @@ import kalix.springsdk.badwiring.valueentity
 import kalix.springsdk.badwiring.valueentity.IllDefinedValueEntity
 import kalix.springsdk.badwiring.view
 import kalix.springsdk.badwiring.view.IllDefinedView
+import kalix.springsdk.testmodels.action.ActionsTestModels._
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 import org.springframework.beans.factory.BeanCreationException
@@ -73,4 +78,46 @@ class KalixServerSpec extends AnyWordSpec with Matchers {
     }
   }
 
+  "The direct constructor of a component" should {
+
+    def stub[T](iface: Class[T]): T =
+      Proxy.newProxyInstance(getClass.getClassLoader, Array(iface), (_, _, _) => null).asInstanceOf[T]
+
+    val kalixClient = stub(classOf[KalixClient])
+    val context = stub(classOf[ActionCreationContext])
+
+    def directConstructor(clz: Class[_]): Option[ActionCreationContext => AnyRef] =
+      KalixServer.directConstructor(clz, classOf[ActionCreationContext], kalixClient, classOf[KalixClient])
+
+    "pass the context and the KalixClient to the constructor" in {
+      val create = directConstructor(classOf[ActionWithContextAndClient]).get
+      val action = create(context).asInstanceOf[ActionWithContextAndClient]
+      action.context shouldBe theSameInstanceAs(context)
+      action.kalixClient shouldBe theSameInstanceAs(kalixClient)
+      (create(context) shouldNot be).theSameInstanceAs(action)
+    }
+
+    "create components without constructor parameters" in {
+      directConstructor(classOf[ActionWithoutDependencies]).get(context) shouldBe an[ActionWithoutDependencies]
+    }
+
+    "leave components with other dependencies to the bean factory" in {
+      directConstructor(classOf[ActionWithOtherDependency]) shouldBe None
+    }
+
+    "leave components with several constructors to the bean factory" in {
+      directConstructor(classOf[ActionWithTwoConstructors]) shouldBe None
+    }
+
+    "leave components with Spring lifecycle callbacks to the bean factory" in {
+      directConstructor(classOf[BeanNameAwareAction]) shouldBe None
+      directConstructor(classOf[InitializingAction]) shouldBe None
+    }
+
+    "leave components that are not public to the bean factory" in {
+      val nonPublic = Class.forName("kalix.springsdk.testmodels.action.ActionsTestModels$NonPublicAction")
+      directConstructor(nonPublic) shouldBe None
+    }
+  }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.springsdk.impl
+
+import kalix.javasdk.eventsourcedentity.EventSourcedEntity
+import kalix.springsdk.impl.eventsourcedentity.{ EventSourcedHandlersExtractor, ReflectiveEventSourcedEntityRouter }
+import kalix.springsdk.impl.reflection.ParameterExtractor
+import kalix.springsdk.testmodels.eventsourcedentity.EventSourcedEntitiesTestModels.ReplayingCounterEntity
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class MethodInvokerSpec extends AnyWordSpec with Matchers {
+
+  private val nonPublicEntityClass =
+    Class.forName("kalix.springsdk.testmodels.eventsourcedentity.EventSourcedEntitiesTestModels$NonPublicCounterEntity")
+
+  "MethodInvoker" should {
+
+    "invoke a method through its method handle" in {
+      val method = classOf[ReplayingCounterEntity].getMethod("receivedIntegerEvent", classOf[Integer])
+      val invoker = MethodInvoker(method, Array.empty[ParameterExtractor[InvocationContext, AnyRef]])
+      invoker.invokeWith(new ReplayingCounterEntity, Integer.valueOf(2)) shouldBe 20
+    }
+
+    "propagate exceptions thrown by the user code without wrapping them" in {
+      val method = classOf[ReplayingCounterEntity].getMethod("receiveStringEvent", classOf[String])
+      val invoker = MethodInvoker(method, Array.empty[ParameterExtractor[InvocationContext, AnyRef]])
+      val exception = intercept[IllegalArgumentException] {
+        invoker.invokeWith(new ReplayingCounterEntity, "boom")
+      }
+      exception.getMessage shouldBe "boom"
+    }
+
+    "invoke public methods of a component class that is not public" in {
+      val method = nonPublicEntityClass.getMethod("receivedIntegerEvent", classOf[Integer])
+      val constructor = nonPublicEntityClass.getDeclaredConstructor()
+      constructor.setAccessible(true)
+      val invoker = MethodInvoker(method, Array.empty[ParameterExtractor[InvocationContext, AnyRef]])
+      invoker.invokeWith(constructor.newInstance().asInstanceOf[AnyRef], Integer.valueOf(1)) shouldBe 2
+    }
+  }
+
+  "The event sourced entity router" should {
+
+    "replay events through the event handler method handles" in {
+      val entity = new ReplayingCounterEntity
+      val handlers = EventSourcedHandlersExtractor.handlersFrom(classOf[ReplayingCounterEntity])
+      val router = new ReflectiveEventSourcedEntityRouter[Integer, ReplayingCounterEntity](
+        entity,
+        Map.empty,
+        handlers.methodHandles)
+
+      val replayed = Seq(1, 2, 3).foldLeft(Option.empty[Integer]) { (state, event) =>
+        Some(router.handleEvent(state.orNull, Integer.valueOf(event)))
+      }
+      replayed shouldBe Some(30)
+    }
+
+    "propagate exceptions thrown by event handlers during replay" in {
+      val handlers = EventSourcedHandlersExtractor.handlersFrom(classOf[ReplayingCounterEntity])
+      val router = new ReflectiveEventSourcedEntityRouter[Integer, ReplayingCounterEntity](
+        new ReplayingCounterEntity,
+        Map.empty,
+        handlers.methodHandles)
+
+      intercept[IllegalArgumentException] {
+        router.handleEvent(Integer.valueOf(1), "invalid")
+      }.getMessage shouldBe "invalid"
+    }
+
+    "replay events for an entity class that is not public" in {
+      val constructor = nonPublicEntityClass.getDeclaredConstructor()
+      constructor.setAccessible(true)
+      val handlers = EventSourcedHandlersExtractor.handlersFrom(nonPublicEntityClass)
+      handlers.errors shouldBe empty
+      val router = new ReflectiveEventSourcedEntityRouter(
+        constructor.newInstance().asInstanceOf[EventSourcedEntity[Integer]],
+        Map.empty,
+        handlers.methodHandles)
+
+      router.handleEvent(Integer.valueOf(41), Integer.valueOf(41)) shouldBe 42
+    }
+  }
+}
@@ -20,7 +20,7 @@ import com.google.protobuf.{ ByteString, Descriptors, DynamicMessage }
 import com.google.protobuf.any.{ Any => ScalaPbAny }
 import com.google.protobuf.{ Any => JavaPbAny }
 import kalix.javasdk.{ DeferredCall, JsonSupport }
-import kalix.javasdk.impl.{ AnySupport, RestDeferredCall }
+import kalix.javasdk.impl.{ AnySupport, MetadataImpl, RestDeferredCall }
 import kalix.protocol.discovery.IdentificationInfo
 import kalix.springsdk.testmodels.action.ActionsTestModels.{
   GetClassLevel,
@@ -36,7 +36,10 @@ import org.scalatest
 import org.scalatest.BeforeAndAfterEach
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
+import reactor.core.publisher.Mono
+import reactor.netty.http.server.HttpServer
 
+import java.util.concurrent.CompletableFuture
 import scala.jdk.CollectionConverters.{ CollectionHasAsScala, MapHasAsScala }
 
 class RestKalixClientImplSpec extends AnyWordSpec with Matchers with BeforeAndAfterEach with ComponentDescriptorSuite {
@@ -168,6 +171,67 @@ class RestKalixClientImplSpec extends AnyWordSpec with Matchers with BeforeAndAf
         }
       }
     }
+
+    "only build the wrapped message when it is accessed" in {
+      var built = 0
+      val defCall = RestDeferredCall[ScalaPbAny, String](
+        messageFactory = () => { built += 1; ScalaPbAny.defaultInstance },
+        metadata = MetadataImpl.Empty,
+        fullServiceName = "TestService",
+        methodName = "Test",
+        asyncCall = () => CompletableFuture.completedFuture("done"))
+
+      defCall.execute().toCompletableFuture.get() shouldBe "done"
+      built shouldBe 0
+
+      defCall.message shouldBe ScalaPbAny.defaultInstance
+      defCall.message shouldBe ScalaPbAny.defaultInstance
+      built shouldBe 1
+    }
+
+    "fail a streamed GET request for an unknown path right away" in {
+      intercept[HttpMethodNotFoundException] {
+        restKalixClient.getStream("/unknown", classOf[Message])
+      }
+    }
+
+    "decode the elements of a streamed GET request one by one" in {
+      val actionWithGetNoParams = ComponentDescriptor.descriptorFor(classOf[GetWithoutParam], messageCodec)
+      restKalixClient.registerComponent(actionWithGetNoParams.serviceDescriptor)
+
+      withServer("""[{"value":"a"},{"value":"b"},{"value":"c"}]""", "application/json") { port =>
+        restKalixClient.setHost("localhost")
+        restKalixClient.setPort(port)
+
+        val values = restKalixClient.getStream("/message", classOf[Message]).map(_.value).collectList().block()
+        values.asScala.toSeq shouldBe Seq("a", "b", "c")
+      }
+    }
+
+    "decode the elements of a streamed POST request sent as server-sent events" in {
+      val actionWithPostNoParams = ComponentDescriptor.descriptorFor(classOf[PostWithoutParam], messageCodec)
+      restKalixClient.registerComponent(actionWithPostNoParams.serviceDescriptor)
+
+      withServer("data:{\"value\":\"a\"}\n\ndata:{\"value\":\"b\"}\n\n", "text/event-stream") { port =>
+        restKalixClient.setHost("localhost")
+        restKalixClient.setPort(port)
+
+        val values =
+          restKalixClient.postStream("/message", new Message("in"), classOf[Message]).map(_.value).collectList().block()
+        values.asScala.toSeq shouldBe Seq("a", "b")
+      }
+    }
+  }
+
+  private def withServer[T](responseBody: String, contentType: String)(block: Int => T): T = {
+    val server = HttpServer
+      .create()
+      .host("localhost")
+      .port(0)
+      .handle((_, response) => response.header("Content-Type", contentType).sendString(Mono.just(responseBody)))
+      .bindNow()
+    try block(server.port())
+    finally server.disposeNow()
   }
 
   private def assertRestDeferredCall[M, R](defCall: DeferredCall[M, R])(
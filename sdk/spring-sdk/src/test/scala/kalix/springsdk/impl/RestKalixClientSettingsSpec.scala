@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.springsdk.impl
+
+import java.time.Duration
+
+import com.typesafe.config.ConfigFactory
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+import reactor.netty.http.HttpProtocol
+import reactor.netty.resources.LoopResources
+
+class RestKalixClientSettingsSpec extends AnyWordSpec with Matchers {
+
+  "The Rest Kalix Client settings" should {
+
+    "be read from the reference configuration" in {
+      val settings = RestKalixClientSettings(ConfigFactory.load())
+      settings.protocol shouldBe HttpProtocol.HTTP11
+      settings.keepAlive shouldBe true
+      settings.workerThreads shouldBe LoopResources.DEFAULT_IO_WORKER_COUNT
+      settings.maxConnections shouldBe 500
+      settings.pendingAcquireMaxCount shouldBe 1000
+      settings.pendingAcquireTimeout shouldBe Duration.ofSeconds(45)
+      settings.poolMetrics shouldBe false
+      settings.downstreamGuard.isEnabled shouldBe false
+    }
+
+    "allow the transport to be tuned" in {
+      val config = ConfigFactory
+        .parseString("""
+          kalix.spring-sdk.kalix-client {
+            protocol = h2c
+            worker-threads = 2
+            connection-pool.max-connections = 16
+          }
+          """)
+        .withFallback(ConfigFactory.load())
+
+      val settings = RestKalixClientSettings(config)
+      settings.protocol shouldBe HttpProtocol.H2C
+      settings.workerThreads shouldBe 2
+      settings.maxConnections shouldBe 16
+    }
+
+    "enable the circuit breaker and max in flight per target component" in {
+      val config = ConfigFactory
+        .parseString("""
+          kalix.spring-sdk.kalix-client {
+            circuit-breaker.enabled = on
+            max-in-flight = 50
+          }
+          """)
+        .withFallback(ConfigFactory.load())
+
+      val settings = RestKalixClientSettings(config)
+      settings.downstreamGuard.circuitBreaker.map(_.maxFailures) shouldBe Some(5)
+      settings.downstreamGuard.maxInFlight shouldBe Some(50)
+    }
+
+    "reject an unknown protocol" in {
+      val config = ConfigFactory
+        .parseString("kalix.spring-sdk.kalix-client.protocol = http3")
+        .withFallback(ConfigFactory.load())
+
+      intercept[IllegalArgumentException] {
+        RestKalixClientSettings(config)
+      }
+    }
+  }
+}
@@ -18,9 +18,11 @@ package kalix.springsdk.impl
 
 import com.google.protobuf.Any
 import com.google.protobuf.Descriptors.FieldDescriptor.JavaType
+import kalix.springsdk.impl.reflection.ServiceIntrospectionException
 import kalix.springsdk.testmodels.valueentity.ValueEntitiesTestModels.PostWithEntityKeys
 import kalix.springsdk.testmodels.valueentity.ValueEntitiesTestModels.ValueEntityWithMethodLevelAcl
 import kalix.springsdk.testmodels.valueentity.ValueEntitiesTestModels.ValueEntityWithServiceLevelAcl
+import kalix.springsdk.testmodels.valueentity.ValueEntitiesTestModels.ValueEntityWithStreamIn
 import org.scalatest.wordspec.AnyWordSpec
 
 class ValueEntityDescriptorFactorySpec extends AnyWordSpec with ComponentDescriptorSuite {
@@ -55,6 +57,12 @@ class ValueEntityDescriptorFactorySpec extends AnyWordSpec with ComponentDescrip
         service shouldBe "test"
       }
     }
+
+    "not allow stream in methods" in {
+      intercept[ServiceIntrospectionException] {
+        descriptorFor[ValueEntityWithStreamIn]
+      }
+    }
   }
 
 }
@@ -19,6 +19,8 @@ package kalix.springsdk.impl
 import com.google.protobuf.Descriptors.FieldDescriptor.JavaType
 import kalix.JwtMethodOptions.JwtMethodMode
 import kalix.springsdk.impl.reflection.ServiceIntrospectionException
+import kalix.springsdk.testmodels.eventsourcedentity.EmployeeCreated
+import kalix.springsdk.testmodels.eventsourcedentity.EmployeeEmailUpdated
 import kalix.springsdk.testmodels.subscriptions.PubSubTestModels.EventStreamSubscriptionView
 import kalix.springsdk.testmodels.subscriptions.PubSubTestModels.SubscribeOnTypeToEventSourcedEvents
 import kalix.springsdk.testmodels.view.ViewTestModels.IllDefineUserByEmailWithStreamUpdates
@@ -345,6 +347,14 @@ class ViewDescriptorFactorySpec extends AnyWordSpec with ComponentDescriptorSuit
 
         val rule = findHttpRule(desc, "GetEmployeeByEmail")
         rule.getPost shouldBe "/employees/by-email/{email}"
+
+        // sub types of the handler parameter are resolved to the same invoker
+        val onEvent = desc.commandHandlers("OnEvent")
+        val messageCodec = new SpringSdkMessageCodec
+        val created = onEvent.lookupInvoker(messageCodec.typeUrlFor(classOf[EmployeeCreated]))
+        val emailUpdated = onEvent.lookupInvoker(messageCodec.typeUrlFor(classOf[EmployeeEmailUpdated]))
+        created.map(_.method.getName) shouldBe Some("onEvent")
+        emailUpdated shouldBe created
       }
     }
 
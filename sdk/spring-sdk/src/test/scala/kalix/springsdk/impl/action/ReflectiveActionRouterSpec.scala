@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 Lightbend Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kalix.springsdk.impl.action
+
+import scala.concurrent.duration._
+
+import akka.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import akka.actor.typed.scaladsl.adapter._
+import akka.stream.Materializer
+import akka.stream.testkit.scaladsl.TestSink
+import akka.stream.testkit.scaladsl.TestSource
+import com.google.protobuf.DynamicMessage
+import com.google.protobuf.any.{ Any => ScalaPbAny }
+import kalix.javasdk.JsonSupport
+import kalix.javasdk.action.Action
+import kalix.javasdk.action.MessageEnvelope
+import kalix.javasdk.impl.action.ActionEffectImpl
+import kalix.springsdk.impl.ComponentDescriptor
+import kalix.springsdk.impl.SpringSdkMessageCodec
+import kalix.springsdk.testmodels.Message
+import kalix.springsdk.testmodels.action.ActionsTestModels.StreamInOutAction
+import kalix.springsdk.testmodels.action.ActionsTestModels.StreamInTakeTwoAction
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class ReflectiveActionRouterSpec extends ScalaTestWithActorTestKit with AnyWordSpecLike with Matchers {
+
+  private val messageCodec = new SpringSdkMessageCodec
+
+  private class TestRouter[A <: Action](action: A) {
+    private val descriptor = ComponentDescriptor.descriptorFor(action.getClass, messageCodec)
+    private val requestDescriptor = descriptor.commandHandlers("Message").requestMessageDescriptor
+
+    val router =
+      new ReflectiveActionRouter[A](action, descriptor.commandHandlers, ignoreUnknown = false, Materializer(system))
+
+    def envelope(value: String): MessageEnvelope[Any] = {
+      val message = DynamicMessage
+        .newBuilder(requestDescriptor)
+        .setField(requestDescriptor.findFieldByNumber(1), JsonSupport.encodeJson(new Message(value)))
+        .build()
+      MessageEnvelope.of(ScalaPbAny().withValue(message.toByteString))
+    }
+  }
+
+  private def replyValue(effect: Action.Effect[_]): String =
+    effect match {
+      case ActionEffectImpl.ReplyEffect(message: Message, _, _) => message.value
+      case ActionEffectImpl.AsyncEffect(future, _)              => replyValue(future.futureValue)
+      case other                                                => fail(s"Unexpected effect [$other]")
+    }
+
+  "The ReflectiveActionRouter" should {
+
+    "pass the incoming stream to a stream in method as a Flux" in {
+      val testRouter = new TestRouter(new StreamInTakeTwoAction)
+      val (in, source) = TestSource.probe[MessageEnvelope[Any]](system.toClassic).preMaterialize()
+
+      val effect = testRouter.router.handleStreamedIn("Message", source.asJava)
+
+      // demand comes from the Flux subscribed by the method, and is bounded
+      in.expectRequest() should be <= 16L
+      in.sendNext(testRouter.envelope("one"))
+      in.sendNext(testRouter.envelope("two"))
+      // the method only takes two elements, cancelling the incoming stream
+      in.expectCancellation()
+
+      replyValue(effect) shouldBe "one,two"
+    }
+
+    "map the incoming stream to the outgoing stream of a bidirectional streaming method" in {
+      val testRouter = new TestRouter(new StreamInOutAction)
+      val (in, source) = TestSource.probe[MessageEnvelope[Any]](system.toClassic).preMaterialize()
+
+      val out = testRouter.router
+        .handleStreamed("Message", source.asJava)
+        .asScala
+        .runWith(TestSink.probe[Action.Effect[_]](system.toClassic))
+
+      in.sendNext(testRouter.envelope("one"))
+      in.sendNext(testRouter.envelope("two"))
+
+      out.request(1)
+      replyValue(out.expectNext()) shouldBe "one"
+      // no more replies than requested downstream
+      out.expectNoMessage(100.millis)
+      out.request(1)
+      replyValue(out.expectNext()) shouldBe "two"
+
+      in.sendComplete()
+      out.request(1)
+      out.expectComplete()
+    }
+  }
+}